@@ -0,0 +1,296 @@
+import com.kotolex.benchmarks.SyntheticSite;
+import com.kotolex.engines.ForkJoinCrawlEngine;
+import com.kotolex.engines.VirtualThreadCrawlEngine;
+import com.kotolex.interfaces.CrawlEngine;
+import com.kotolex.interfaces.CrawlListener;
+import com.kotolex.pages.PooledWebPage;
+import com.kotolex.pages.Timeouts;
+import com.kotolex.pages.WebPage;
+import com.kotolex.services.HttpConnectionPool;
+import com.kotolex.services.ShardCoordinator;
+import com.kotolex.services.ShardNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Нагрузочная проверка полного обхода на синтетическом сайте (SyntheticSite) от тысячи до миллиона страниц:
+ * печатает время обхода, максимум потоков, пик занятой кучи и число запросов к сайту по видам адресов, а затем
+ * сверяет найденные сломанные ссылки и посещенные страницы с ожидаемыми. При расхождении процесс завершается с
+ * кодом 1.
+ * Настройки через системные свойства: load.pages (1000), load.fanout (10), доли ссылок load.broken (0.01),
+ * load.slow, load.hang, load.redirect, load.binary (0), load.binarySize (1 МБ), задержки в миллисекундах
+ * load.latency (0), load.slowDelay (500), load.hangDelay (таймаут чтения + 3 с), load.readTimeout (2000),
+ * load.engine (forkjoin или virtual), load.threads (по умолчанию движка, в режиме async - сколько запросов
+ * одновременно ожидают ответа), load.mode (sync или async),
+ * load.pooled (false - WebPage, true - PooledWebPage), load.compact (false), load.seed (42).
+ * Режим async использует таймауты AsyncWebPage по умолчанию, поэтому load.readTimeout в нем не действует.
+ * При load.shards больше 1 сайт проверяют столько же отдельных JVM (ShardNode), а этот процесс координирует их
+ * (ShardCoordinator) и сверяет общие результаты, вывод узлов пишется в файлы jlink-shard-N.log во временной папке
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see SyntheticSite
+ */
+public final class CrawlLoadHarness {
+    /**
+     * Свойства, которые передаются процессам-узлам
+     */
+    private static final List<String> WORKER_PROPERTIES = Arrays.asList("load.readTimeout", "load.engine",
+            "load.threads", "load.pooled", "load.compact");
+
+    private CrawlLoadHarness() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (System.getProperty("load.worker") != null) {
+            worker();
+            return;
+        }
+        boolean async = System.getProperty("load.mode", "sync").equals("async");
+        int shards = Integer.getInteger("load.shards", 1);
+        if (async && shards > 1) {
+            throw new IllegalArgumentException("Sharded mode is supported only with load.mode=sync");
+        }
+        Duration readTimeout = async ? Timeouts.DEFAULT.read() : readTimeout();
+        Duration hangDelay = Duration.ofMillis(Long.getLong("load.hangDelay", readTimeout.toMillis() + 3000));
+        boolean hangIsBroken = hangDelay.compareTo(readTimeout) > 0;
+        SyntheticSite site = new SyntheticSite()
+                .pages(Integer.getInteger("load.pages", 1000))
+                .fanOut(Integer.getInteger("load.fanout", 10))
+                .ratios(ratio("load.broken", "0.01"), ratio("load.slow", "0"), ratio("load.hang", "0"),
+                        ratio("load.redirect", "0"), ratio("load.binary", "0"))
+                .binarySize(Integer.getInteger("load.binarySize", 1024 * 1024))
+                .latency(Duration.ofMillis(Long.getLong("load.latency", 0)))
+                .delays(Duration.ofMillis(Long.getLong("load.slowDelay", 500)), hangDelay)
+                .seed(Long.getLong("load.seed", 42))
+                .start();
+        try {
+            if (shards > 1) {
+                runSharded(site, shards, hangIsBroken);
+                return;
+            }
+            WebSiteLinksList list = new WebSiteLinksList(site.startUrl(), true, engine());
+            if (async && Integer.getInteger("load.threads", 0) > 0) {
+                list.setMaxInFlight(Integer.getInteger("load.threads"));
+            }
+            try (HttpConnectionPool pool = configure(list, readTimeout)) {
+                Set<String> broken = ConcurrentHashMap.newKeySet();
+                AtomicInteger visited = new AtomicInteger(0);
+                list.setCrawlListener(new CrawlListener() {
+                    @Override
+                    public void onVisited(String url) {
+                        visited.getAndIncrement();
+                    }
+
+                    @Override
+                    public void onBroken(String link, String referrer) {
+                        broken.add(link);
+                    }
+                });
+                run(list, site, async, broken, visited, hangIsBroken);
+            }
+        } finally {
+            site.close();
+        }
+    }
+
+    private static void run(WebSiteLinksList list, SyntheticSite site, boolean async, Set<String> broken,
+                            AtomicInteger visitedPages, boolean hangIsBroken) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peakHeap = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 20, TimeUnit.MILLISECONDS);
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        if (async) {
+            list.checkLinksAsync();
+        } else {
+            list.checkLinks();
+        }
+        long wall = System.nanoTime() - start;
+        sampler.shutdownNow();
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+        printWallTime(site, wall);
+        System.out.println("Crawler threads: " + (async ? list.metrics().maxInFlightRequests() + " requests in flight"
+                : String.valueOf(list.getMaxThreads())) + ", JVM peak threads (with site): "
+                + threads.getPeakThreadCount());
+        System.out.println(String.format(Locale.ROOT, "Peak heap: %.1f MB, retained after crawl: %.1f MB",
+                peakHeap.get() / 1048576.0, Math.max(0, heapAfter - heapBefore) / 1048576.0));
+        printRequests(site);
+        verify(site, broken, list.brokenLinksCount(), visitedPages.get(), hangIsBroken);
+    }
+
+    /**
+     * Проверка несколькими процессами: узлы запускаются как отдельные JVM с тем же classpath, этот процесс
+     * координирует их и сверяет объединенные результаты
+     */
+    private static void runSharded(SyntheticSite site, int shards, boolean hangIsBroken)
+            throws IOException, InterruptedException {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                nodes.add("127.0.0.1:" + socket.getLocalPort());
+            }
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < shards; i++) {
+            List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                    "-Dload.worker=" + i, "-Dload.nodes=" + String.join(",", nodes),
+                    "-Dload.site=" + site.startUrl()));
+            for (String property : WORKER_PROPERTIES) {
+                if (System.getProperty(property) != null) {
+                    command.add("-D" + property + "=" + System.getProperty(property));
+                }
+            }
+            command.add(CrawlLoadHarness.class.getName());
+            File log = new File(System.getProperty("java.io.tmpdir"), "jlink-shard-" + i + ".log");
+            workers.add(new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(log)).start());
+        }
+        ShardCoordinator coordinator = new ShardCoordinator(nodes);
+        try {
+            coordinator.awaitTermination();
+        } finally {
+            for (Process worker : workers) {
+                if (!worker.waitFor(30, TimeUnit.SECONDS)) {
+                    worker.destroyForcibly();
+                }
+            }
+        }
+        long wall = System.nanoTime() - start;
+        printWallTime(site, wall);
+        System.out.println("Shards: " + shards + ", checked links: " + coordinator.checkedCount() + ", logs: "
+                + new File(System.getProperty("java.io.tmpdir"), "jlink-shard-*.log"));
+        printRequests(site);
+        Set<String> broken = coordinator.brokenLinksWithPath().stream()
+                .map((line) -> line.substring(0, line.indexOf(" - "))).collect(Collectors.toSet());
+        verify(site, broken, coordinator.brokenLinksCount(), coordinator.visitedCount(), hangIsBroken);
+    }
+
+    /**
+     * Процесс-узел распределенной проверки, запускается из runSharded
+     */
+    private static void worker() throws IOException {
+        List<String> nodes = Arrays.asList(System.getProperty("load.nodes").split(","));
+        WebSiteLinksList list = new WebSiteLinksList(System.getProperty("load.site"), true, engine());
+        try (HttpConnectionPool pool = configure(list, readTimeout())) {
+            list.setShard(new ShardNode(Integer.getInteger("load.worker"), nodes));
+            list.checkLinks();
+        }
+    }
+
+    /**
+     * Настраивает страницы и хранение ссылок проверки по свойствам
+     *
+     * @return пул соединений для PooledWebPage, null для WebPage
+     */
+    private static HttpConnectionPool configure(WebSiteLinksList list, Duration readTimeout) {
+        Timeouts timeouts = new Timeouts(Duration.ofSeconds(5), readTimeout);
+        HttpConnectionPool pool = null;
+        if (Boolean.getBoolean("load.pooled")) {
+            HttpConnectionPool connections = new HttpConnectionPool(512, 512, 30, timeouts);
+            pool = connections;
+            list.setPageFactory((link, method) -> new PooledWebPage(link, method, connections));
+        } else {
+            list.setPageFactory((link, method) -> new WebPage(link, method, timeouts));
+        }
+        list.setCompactDedup(Boolean.getBoolean("load.compact"));
+        return pool;
+    }
+
+    private static void printWallTime(SyntheticSite site, long wall) {
+        System.out.println();
+        System.out.println("Synthetic site: " + site.pageCount() + " pages");
+        System.out.println(String.format(Locale.ROOT, "Wall time: %.2f s, %.0f pages per second", wall / 1e9,
+                site.pageCount() / (wall / 1e9)));
+    }
+
+    private static void printRequests(SyntheticSite site) {
+        System.out.println("Site requests: " + site.totalRequests() + " (HEAD " + site.headRequests() + ") "
+                + site.requests() + String.format(Locale.ROOT, ", %.1f MB sent", site.bytesSent() / 1048576.0));
+    }
+
+    /**
+     * Сверяет сломанные ссылки и количество посещенных страниц с ожидаемыми, при расхождении завершает процесс с
+     * кодом 1
+     */
+    private static void verify(SyntheticSite site, Set<String> broken, int brokenCount, int visited,
+                               boolean hangIsBroken) {
+        Set<String> expected = hangIsBroken ? site.expectedBroken() : withoutHung(site.expectedBroken());
+        Set<String> missed = new HashSet<>(expected);
+        missed.removeAll(broken);
+        Set<String> unexpected = new HashSet<>(broken);
+        unexpected.removeAll(expected);
+        boolean failed = false;
+        if (!missed.isEmpty() || !unexpected.isEmpty() || brokenCount != expected.size()) {
+            System.out.println("FAILED: expected " + expected.size() + " broken links, found " + brokenCount
+                    + ", missed " + sample(missed) + ", unexpected " + sample(unexpected));
+            failed = true;
+        }
+        if (visited != site.pageCount()) {
+            System.out.println("FAILED: expected " + site.pageCount() + " visited pages, but was " + visited);
+            failed = true;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+        System.out.println("OK: " + expected.size() + " broken links and " + visited + " visited pages as expected");
+    }
+
+    private static CrawlEngine engine() {
+        int threads = Integer.getInteger("load.threads", 0);
+        if (System.getProperty("load.engine", "forkjoin").equals("virtual")) {
+            return threads > 0 ? new VirtualThreadCrawlEngine(threads) : new VirtualThreadCrawlEngine();
+        }
+        return threads > 0 ? new ForkJoinCrawlEngine(threads) : new ForkJoinCrawlEngine();
+    }
+
+    private static Duration readTimeout() {
+        return Duration.ofMillis(Long.getLong("load.readTimeout", 2000));
+    }
+
+    private static double ratio(String property, String defaultValue) {
+        return Double.parseDouble(System.getProperty(property, defaultValue));
+    }
+
+    private static Set<String> withoutHung(Set<String> links) {
+        links.removeIf((link) -> link.contains("/hang/"));
+        return links;
+    }
+
+    private static String sample(Set<String> links) {
+        return links.size() <= 5 ? links.toString() : links.stream().limit(5).collect(Collectors.toList()) + "...";
+    }
+}
@@ -0,0 +1,133 @@
+package com.kotolex.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Запуск всех бенчмарков с профайлером памяти и сравнение с сохраненной базой: для каждого бенчмарка печатается
+ * пропускная способность и байты на операцию (gc.alloc.rate.norm) и их изменение относительно базы. Падение
+ * пропускной способности или рост памяти больше порога считается регрессией, тогда процесс завершается с кодом 1
+ * и сборка, запустившая бенчмарки, падает.
+ * Настройки через системные свойства: bench.include (регулярное выражение, по умолчанию все бенчмарки модуля),
+ * bench.baseline (файл базы, по умолчанию baseline.tsv), bench.threshold (порог в процентах, по умолчанию 10),
+ * bench.save (true - сохранить результаты как новую базу), bench.quick (true - короткий прогон для проверки, что
+ * бенчмарки работают, результаты такого прогона не стоит сравнивать с базой)
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path baseline = Paths.get(System.getProperty("bench.baseline", "baseline.tsv"));
+        double threshold = Double.parseDouble(System.getProperty("bench.threshold", "10"));
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("bench.include", BenchmarkRunner.class.getPackage().getName() + ".*"))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json");
+        if (Boolean.getBoolean("bench.quick")) {
+            options.warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(2).measurementTime(TimeValue.seconds(1));
+        }
+        Map<String, double[]> results = summarize(new Runner(options.build()).run());
+        Map<String, double[]> previous = Files.exists(baseline) ? read(baseline) : new TreeMap<>();
+        List<String> regressions = new ArrayList<>();
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-70s %14s %9s %14s %9s", "Benchmark", "ops/s", "change",
+                "B/op", "change"));
+        results.forEach((name, score) -> {
+            double[] base = previous.get(name);
+            double throughputChange = base == null ? 0 : change(score[0], base[0]);
+            double allocationChange = base == null ? 0 : change(score[1], base[1]);
+            boolean regressed = throughputChange < -threshold || allocationChange > threshold;
+            if (regressed) {
+                regressions.add(name);
+            }
+            System.out.println(String.format(Locale.ROOT, "%-70s %14.1f %9s %14.0f %9s%s", name, score[0],
+                    base == null ? "new" : percent(throughputChange), score[1],
+                    base == null ? "new" : percent(allocationChange), regressed ? "  REGRESSION" : ""));
+        });
+        if (Boolean.getBoolean("bench.save")) {
+            write(baseline, results);
+            System.out.println("Baseline saved to " + baseline.toAbsolutePath());
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println(regressions.size() + " regression(s) over " + threshold + "% against " + baseline);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Собирает пропускную способность и байты на операцию по имени бенчмарка с параметрами
+     */
+    private static Map<String, double[]> summarize(Collection<RunResult> runs) {
+        Map<String, double[]> results = new TreeMap<>();
+        for (RunResult run : runs) {
+            Result<?> allocation = run.getSecondaryResults().get(ALLOCATION);
+            results.put(name(run.getParams()), new double[]{run.getPrimaryResult().getScore(),
+                    allocation == null ? 0 : allocation.getScore()});
+        }
+        return results;
+    }
+
+    private static String name(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.',
+                benchmark.lastIndexOf('.') - 1) + 1));
+        for (String key : params.getParamsKeys()) {
+            name.append(':').append(key).append('=').append(params.getParam(key));
+        }
+        return name.toString();
+    }
+
+    private static double change(double current, double base) {
+        return base == 0 ? 0 : (current - base) * 100 / base;
+    }
+
+    private static String percent(double change) {
+        return String.format(Locale.ROOT, "%+.1f%%", change);
+    }
+
+    private static Map<String, double[]> read(Path file) throws IOException {
+        Map<String, double[]> results = new TreeMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length == 3 && !line.startsWith("#")) {
+                results.put(parts[0], new double[]{Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+            }
+        }
+        return results;
+    }
+
+    private static void write(Path file, Map<String, double[]> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# benchmark\tops/s\tB/op");
+        results.forEach((name, score) -> lines.add(name + '\t' + score[0] + '\t' + score[1]));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+}
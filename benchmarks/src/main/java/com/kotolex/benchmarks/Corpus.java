@@ -0,0 +1,58 @@
+package com.kotolex.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Набор сохраненных страниц для бенчмарков, лежит в ресурсах corpus/: landing.html (~20 КБ, меню, скрипты,
+ * srcset), article.html (~120 КБ, длинный текст, относительные и протокол-относительные ссылки, ссылки внутри
+ * code и комментариев) и catalog.html (~370 КБ, сетка товаров, большие JSON в скриптах, длинные строки)
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+final class Corpus {
+    /**
+     * Адрес, от которого разрешаются относительные ссылки страниц
+     */
+    static final String BASE_URL = "https://www.example.com/blog/2024/";
+
+    private Corpus() {
+    }
+
+    /**
+     * Загружает страницу из ресурсов
+     *
+     * @param name - имя файла страницы
+     * @return байты страницы в UTF-8
+     */
+    static byte[] load(String name) {
+        try (InputStream stream = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("No corpus page " + name);
+            }
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сжимает страницу gzip, как ее отдал бы сервер с Content-Encoding: gzip
+     *
+     * @param page - байты страницы
+     * @return сжатые байты
+     */
+    static byte[] gzip(byte[] page) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(page.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
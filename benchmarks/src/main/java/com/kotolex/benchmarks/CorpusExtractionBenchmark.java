@@ -0,0 +1,103 @@
+package com.kotolex.benchmarks;
+
+import com.kotolex.pages.PageResponse;
+import com.kotolex.parsers.StreamingUrlList;
+import com.kotolex.parsers.UrlList;
+import com.kotolex.services.UrlCanonicalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Извлечение ссылок из сохраненных страниц разного размера: старый путь (токены Scanner и UrlList), потоковый
+ * StreamingUrlList, полный путь ответа страницы (PageResponse с распаковкой gzip и ограничением тела) и
+ * приведение найденных ссылок к каноническому виду. Расход памяти на страницу - с профайлером -prof gc
+ * (gc.alloc.rate.norm)
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see Corpus
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusExtractionBenchmark {
+    @Param({"landing.html", "article.html", "catalog.html"})
+    private String page;
+    private byte[] bytes;
+    private byte[] gzipped;
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+
+    @Setup
+    public void setUp() {
+        bytes = Corpus.load(page);
+        gzipped = Corpus.gzip(bytes);
+    }
+
+    @Benchmark
+    public List<String> scannerTokensWithUrlList() {
+        List<String> tokens = new LinkedList<>();
+        Scanner scanner = new Scanner(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+        while (scanner.hasNext()) {
+            tokens.add(scanner.next());
+        }
+        scanner.close();
+        return new UrlList(tokens).links();
+    }
+
+    @Benchmark
+    public List<String> streaming() {
+        return new StreamingUrlList(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+                Corpus.BASE_URL).links();
+    }
+
+    @Benchmark
+    public List<String> responseIdentity() {
+        return responseLinks(bytes, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public List<String> responseGzip() {
+        return responseLinks(gzipped, Map.of("Content-Encoding", List.of("gzip")));
+    }
+
+    @Benchmark
+    public List<String> streamingCanonicalized() {
+        List<String> links = streaming();
+        List<String> canonical = new ArrayList<>(links.size());
+        for (String link : links) {
+            canonical.add(canonicalizer.canonicalize(link));
+        }
+        return canonical;
+    }
+
+    private List<String> responseLinks(byte[] body, Map<String, List<String>> headers) {
+        try (PageResponse response = new PageResponse(Corpus.BASE_URL, 200, headers,
+                () -> new ByteArrayInputStream(body), () -> {
+        })) {
+            return new StreamingUrlList(response.reader(PageResponse.DEFAULT_BODY_LIMIT), Corpus.BASE_URL).links();
+        }
+    }
+}
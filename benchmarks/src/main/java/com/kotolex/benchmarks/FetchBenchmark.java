@@ -0,0 +1,124 @@
+package com.kotolex.benchmarks;
+
+import com.kotolex.pages.AsyncWebPage;
+import com.kotolex.pages.PageResponse;
+import com.kotolex.pages.PooledWebPage;
+import com.kotolex.pages.WebPage;
+import com.kotolex.parsers.StreamingUrlList;
+import com.kotolex.parsers.UrlList;
+import com.kotolex.services.HttpConnectionPool;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка и разбор страницы через локальный http-сервер в том же процессе, чтобы сеть не вносила шума:
+ * старый путь (WebPage.content() и UrlList) против потокового разбора ответа WebPage, PooledWebPage и
+ * AsyncWebPage. Сервер отдает страницы корпуса как есть или сжатыми gzip, если клиент это поддерживает
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see Corpus
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchBenchmark {
+    @Param({"landing.html", "catalog.html"})
+    private String page;
+    /**
+     * Сжимает ли сервер ответ
+     */
+    @Param({"false", "true"})
+    private boolean gzip;
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private HttpConnectionPool pool;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] plain = Corpus.load(page);
+        byte[] compressed = Corpus.gzip(plain);
+        // без этого маленькие ответы ждут подтверждения заголовков (алгоритм Нейгла) и замеряется задержка TCP
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverThreads);
+        server.createContext("/", (exchange) -> {
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean compress = gzip && accepted != null && accepted.contains("gzip");
+            byte[] body = compress ? compressed : plain;
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            if (compress) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            exchange.sendResponseHeaders(200, head ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (!head) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/" + page;
+        pool = new HttpConnectionPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public List<String> webPageContentWithUrlList() {
+        return new UrlList(new WebPage(url).content()).links();
+    }
+
+    @Benchmark
+    public List<String> webPageStreaming() {
+        try (PageResponse response = new WebPage(url).fetch()) {
+            return new StreamingUrlList(response.reader(), url).links();
+        }
+    }
+
+    @Benchmark
+    public List<String> pooledWebPageStreaming() {
+        try (PageResponse response = new PooledWebPage(url, "GET", pool).fetch()) {
+            return new StreamingUrlList(response.reader(), url).links();
+        }
+    }
+
+    @Benchmark
+    public List<String> asyncWebPageStreaming() {
+        try (PageResponse response = new AsyncWebPage(url).fetchAsync().join()) {
+            return new StreamingUrlList(response.reader(), url).links();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.kotolex.benchmarks;
+
+import com.kotolex.parsers.StreamingUrlList;
+import com.kotolex.parsers.UrlList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение извлечения ссылок: разбиение страницы на токены Scanner с UrlList (как это делал WebPage.content())
+ * против потокового StreamingUrlList. Расход памяти на страницу смотреть с профайлером: -prof gc (gc.alloc.rate.norm)
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+    /**
+     * Количество ссылок на странице, размер страницы растет пропорционально
+     */
+    @Param({"50", "500", "5000"})
+    private int links;
+    private byte[] page;
+    private CharBuffer chars;
+
+    @Setup
+    public void setUp() {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Benchmark page</title>\n");
+        html.append("<link rel=\"stylesheet\" href=\"http://example.com/main.css\">\n</head><body>\n");
+        for (int i = 0; i < links; i++) {
+            html.append("<div class=\"item item-").append(i).append("\"><p>Lorem ipsum dolor sit amet, consectetur ")
+                    .append("adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>\n")
+                    .append("<a class=\"link\" href=\"http://example.com/page/").append(i).append("\">Page ").append(i)
+                    .append("</a> <img src=\"http://example.com/img/").append(i % 100).append(".png\" alt=\"image\">\n")
+                    .append("</div>\n");
+        }
+        html.append("</body></html>\n");
+        page = html.toString().getBytes(StandardCharsets.UTF_8);
+        chars = CharBuffer.wrap(html.toString());
+    }
+
+    @Benchmark
+    public List<String> scannerTokensWithUrlList() {
+        List<String> tokens = new LinkedList<>();
+        Scanner scanner = new Scanner(new ByteArrayInputStream(page));
+        while (scanner.hasNext()) {
+            tokens.add(scanner.next());
+        }
+        scanner.close();
+        return new UrlList(tokens).links();
+    }
+
+    @Benchmark
+    public List<String> streamingFromBytes() {
+        return new StreamingUrlList(new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8)).links();
+    }
+
+    @Benchmark
+    public List<String> streamingFromCharBuffer() {
+        return new StreamingUrlList(chars.duplicate()).links();
+    }
+}
@@ -0,0 +1,393 @@
+package com.kotolex.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Синтетический сайт на локальном http-сервере для нагрузочной проверки обхода. Страницы не хранятся, а строятся
+ * при запросе из номера страницы и seed, поэтому сайт на миллион страниц не занимает памяти и одинаков при каждом
+ * запуске. Страница i всегда ссылается на страницы 2i+1 и 2i+2, так что весь сайт достижим с /p/0.html, остальные
+ * ссылки страницы по заданным долям ведут на случайные страницы, несуществующие адреса (404), медленные и зависающие
+ * адреса, редиректы на страницы и большие бинарные файлы. Ожидаемый набор сломанных ссылок вычисляется тем же
+ * способом (expectedBroken), что позволяет проверить результат обхода
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class SyntheticSite implements AutoCloseable {
+    /**
+     * Вид ссылки страницы
+     */
+    public enum Kind {
+        PAGE, BROKEN, SLOW, HANG, REDIRECT, BINARY
+    }
+
+    private static final byte[] FILLER = ("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod "
+            + "tempor incididunt ut labore et dolore magna aliqua.</p>\n").getBytes(StandardCharsets.UTF_8);
+    private int pages = 1000;
+    private int fanOut = 10;
+    private double broken = 0.01;
+    private double slow;
+    private double hang;
+    private double redirect;
+    private double binary;
+    private Duration latency = Duration.ZERO;
+    private Duration slowDelay = Duration.ofMillis(500);
+    private Duration hangDelay = Duration.ofSeconds(10);
+    private int binarySize = 1024 * 1024;
+    private long seed = 42;
+    private HttpServer server;
+    private ExecutorService threads;
+    private final Map<Kind, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final AtomicLong heads = new AtomicLong(0);
+    private final AtomicLong bytesSent = new AtomicLong(0);
+
+    public SyntheticSite pages(int pages) {
+        if (pages < 1) {
+            throw new IllegalArgumentException("Site must have at least one page");
+        }
+        this.pages = pages;
+        return this;
+    }
+
+    /**
+     * @param fanOut - ссылок на странице, не меньше 2 (две ссылки на дочерние страницы)
+     * @return этот же сайт, для цепочки вызовов
+     */
+    public SyntheticSite fanOut(int fanOut) {
+        if (fanOut < 2) {
+            throw new IllegalArgumentException("Fan-out must be at least 2, but was " + fanOut);
+        }
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Задает доли ссылок каждого вида среди ссылок страницы, кроме двух ссылок на дочерние страницы, остальные
+     * ссылки ведут на случайные страницы
+     *
+     * @param broken   - доля ссылок на несуществующие адреса
+     * @param slow     - доля ссылок на медленные адреса, отвечающие через slowDelay
+     * @param hang     - доля ссылок на зависающие адреса, отвечающие через hangDelay
+     * @param redirect - доля ссылок на редиректы к случайной странице
+     * @param binary   - доля ссылок на бинарные файлы размером binarySize
+     * @return этот же сайт, для цепочки вызовов
+     */
+    public SyntheticSite ratios(double broken, double slow, double hang, double redirect, double binary) {
+        if (broken < 0 || slow < 0 || hang < 0 || redirect < 0 || binary < 0
+                || broken + slow + hang + redirect + binary > 1) {
+            throw new IllegalArgumentException("Ratios must be non-negative and add up to at most 1");
+        }
+        this.broken = broken;
+        this.slow = slow;
+        this.hang = hang;
+        this.redirect = redirect;
+        this.binary = binary;
+        return this;
+    }
+
+    /**
+     * @param latency - задержка перед каждым ответом
+     * @return этот же сайт, для цепочки вызовов
+     */
+    public SyntheticSite latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param slowDelay - задержка медленных адресов, должна быть меньше таймаута чтения проверки
+     * @param hangDelay - задержка зависающих адресов, должна быть больше таймаута чтения проверки
+     * @return этот же сайт, для цепочки вызовов
+     */
+    public SyntheticSite delays(Duration slowDelay, Duration hangDelay) {
+        this.slowDelay = slowDelay;
+        this.hangDelay = hangDelay;
+        return this;
+    }
+
+    public SyntheticSite binarySize(int binarySize) {
+        this.binarySize = binarySize;
+        return this;
+    }
+
+    public SyntheticSite seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Запускает сервер на свободном порту локального адреса
+     *
+     * @return этот же сайт
+     * @throws IOException если сервер не удалось запустить
+     */
+    public SyntheticSite start() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        threads = Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "synthetic-site");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return адрес стартовой страницы
+     */
+    public String startUrl() {
+        return url("/p/0.html");
+    }
+
+    public int pageCount() {
+        return pages;
+    }
+
+    /**
+     * Возвращает вид ссылки slot на странице page
+     */
+    public Kind kind(int page, int slot) {
+        if (slot < 2) {
+            return Kind.PAGE;
+        }
+        double value = (mix(page, slot, 0) >>> 11) * 0x1.0p-53;
+        double bound = broken;
+        if (value < bound) {
+            return Kind.BROKEN;
+        }
+        bound += slow;
+        if (value < bound) {
+            return Kind.SLOW;
+        }
+        bound += hang;
+        if (value < bound) {
+            return Kind.HANG;
+        }
+        bound += redirect;
+        if (value < bound) {
+            return Kind.REDIRECT;
+        }
+        bound += binary;
+        return value < bound ? Kind.BINARY : Kind.PAGE;
+    }
+
+    /**
+     * Возвращает путь ссылки slot на странице page
+     */
+    public String path(int page, int slot) {
+        switch (kind(page, slot)) {
+            case BROKEN:
+                return "/missing/" + page + "-" + slot;
+            case SLOW:
+                return "/slow/" + page + "-" + slot;
+            case HANG:
+                return "/hang/" + page + "-" + slot;
+            case REDIRECT:
+                return "/r/" + page + "-" + slot;
+            case BINARY:
+                return "/bin/" + page + "-" + slot + ".bin";
+            default:
+                long child = 2L * page + 1 + slot;
+                return "/p/" + (slot < 2 && child < pages ? child : target(page, slot)) + ".html";
+        }
+    }
+
+    /**
+     * Возвращает ссылки, которые должны оказаться сломанными: несуществующие и зависающие адреса всех страниц
+     *
+     * @return абсолютные ссылки
+     */
+    public Set<String> expectedBroken() {
+        Set<String> expected = new HashSet<>();
+        for (int page = 0; page < pages; page++) {
+            for (int slot = 2; slot < fanOut; slot++) {
+                Kind kind = kind(page, slot);
+                if (kind == Kind.BROKEN || kind == Kind.HANG) {
+                    expected.add(url(path(page, slot)));
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * @return количество запросов по видам адресов
+     */
+    public Map<Kind, Long> requests() {
+        Map<Kind, Long> result = new java.util.EnumMap<>(Kind.class);
+        requests.forEach((kind, count) -> result.put(kind, count.get()));
+        return result;
+    }
+
+    public long totalRequests() {
+        return requests.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public long headRequests() {
+        return heads.get();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            threads.shutdownNow();
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private int target(int page, int slot) {
+        return (int) Long.remainderUnsigned(mix(page, slot, 1), pages);
+    }
+
+    /**
+     * Псевдослучайное число для ссылки по алгоритму SplitMix64, зависит только от seed, страницы и ссылки
+     */
+    private long mix(int page, int slot, int salt) {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) page << 20) + ((long) slot << 2) + salt + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            if (head) {
+                heads.getAndIncrement();
+            }
+            pause(latency);
+            if (path.startsWith("/p/") && path.endsWith(".html")) {
+                count(Kind.PAGE);
+                int page = parsePage(path);
+                if (page < 0) {
+                    send(exchange, 404, "text/html", new byte[0], head);
+                } else {
+                    send(exchange, 200, "text/html; charset=utf-8", page(page), head);
+                }
+            } else if (path.startsWith("/missing/")) {
+                count(Kind.BROKEN);
+                send(exchange, 404, "text/html", new byte[0], head);
+            } else if (path.startsWith("/slow/")) {
+                count(Kind.SLOW);
+                pause(slowDelay);
+                send(exchange, 200, "text/html", FILLER, head);
+            } else if (path.startsWith("/hang/")) {
+                count(Kind.HANG);
+                pause(hangDelay);
+                send(exchange, 200, "text/html", FILLER, head);
+            } else if (path.startsWith("/r/")) {
+                count(Kind.REDIRECT);
+                String[] parts = path.substring(3).split("-");
+                exchange.getResponseHeaders().set("Location",
+                        "/p/" + target(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])) + ".html");
+                exchange.sendResponseHeaders(301, -1);
+            } else if (path.startsWith("/bin/")) {
+                count(Kind.BINARY);
+                sendBinary(exchange, head);
+            } else {
+                send(exchange, 404, "text/html", new byte[0], head);
+            }
+        } catch (IOException | RuntimeException e) {
+            // клиент закрыл соединение, например по таймауту или после заголовков
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] page(int page) {
+        StringBuilder html = new StringBuilder(64 * fanOut + 4 * FILLER.length)
+                .append("<!DOCTYPE html>\n<html><head><title>Page ").append(page).append("</title></head><body>\n");
+        for (int slot = 0; slot < fanOut; slot++) {
+            html.append("<a href=\"").append(path(page, slot)).append("\">link ").append(slot).append("</a>\n");
+            if (slot % 3 == 0) {
+                html.append(new String(FILLER, StandardCharsets.UTF_8));
+            }
+        }
+        return html.append("</body></html>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int parsePage(String path) {
+        try {
+            int page = Integer.parseInt(path.substring(3, path.length() - 5));
+            return page >= 0 && page < pages ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String type, byte[] body, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            bytesSent.getAndAdd(body.length);
+        }
+    }
+
+    private void sendBinary(HttpExchange exchange, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(binarySize));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, binarySize);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int left = binarySize; left > 0; left -= chunk.length) {
+                int length = Math.min(left, chunk.length);
+                out.write(chunk, 0, length);
+                bytesSent.getAndAdd(length);
+            }
+        }
+    }
+
+    private void count(Kind kind) {
+        requests.computeIfAbsent(kind, (k) -> new AtomicLong(0)).getAndIncrement();
+    }
+
+    private void pause(Duration delay) {
+        if (delay.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
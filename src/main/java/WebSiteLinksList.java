@@ -1,16 +1,62 @@
-import com.kotolex.interfaces.UrlLinksList;
+import com.kotolex.engines.ForkJoinCrawlEngine;
+import com.kotolex.engines.VirtualThreadCrawlEngine;
+import com.kotolex.interfaces.CrawlEngine;
+import com.kotolex.interfaces.CrawlListener;
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.interfaces.LinkStatusCache;
+import com.kotolex.interfaces.PageFactory;
+import com.kotolex.interfaces.UrlSet;
+import com.kotolex.pages.AsyncRedirectWebPage;
+import com.kotolex.pages.AsyncWebPage;
+import com.kotolex.pages.CachedWebPage;
+import com.kotolex.pages.MeteredWebPage;
+import com.kotolex.pages.PageResponse;
+import com.kotolex.pages.PoliteWebPage;
+import com.kotolex.pages.PooledWebPage;
+import com.kotolex.pages.ProbePolicy;
+import com.kotolex.pages.ProbingWebPage;
 import com.kotolex.pages.RedirectWebPage;
+import com.kotolex.pages.ResilientWebPage;
+import com.kotolex.pages.RetryPolicy;
 import com.kotolex.pages.WebPage;
-import com.kotolex.parsers.UrlList;
+import com.kotolex.parsers.EscalationPolicy;
+import com.kotolex.parsers.ParsingMode;
+import com.kotolex.parsers.StreamingUrlList;
 import com.kotolex.parsers.UrlListWithSelenium;
+import com.kotolex.services.ConcurrentUrlSet;
+import com.kotolex.services.CrawlMetrics;
+import com.kotolex.services.CrawlJournal;
+import com.kotolex.services.DiskFrontier;
+import com.kotolex.services.DriverPool;
+import com.kotolex.services.FingerprintUrlSet;
+import com.kotolex.services.HostScheduler;
+import com.kotolex.services.RecrawlCache;
+import com.kotolex.services.RobotsTxt;
+import com.kotolex.services.ShardNode;
 import com.kotolex.services.SimpleConsole;
+import com.kotolex.services.SitemapReader;
+import com.kotolex.services.UrlCanonicalizer;
 
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -21,185 +67,1404 @@ import java.util.stream.Collectors;
  * но не будет перехода на www.blog.example.com
  *
  * @author kotolex
- * @version 1.04
+ * @version 1.19
  */
 public final class WebSiteLinksList {
+    /**
+     * Сколько элементов очереди по умолчанию держится в памяти при работе с контрольной точкой
+     */
+    private static final int DEFAULT_FRONTIER_LIMIT = 100_000;
+    /**
+     * Сколько задач из очереди одновременно передается движку обхода
+     */
+    private static final int SCHEDULING_WINDOW = 1024;
+    /**
+     * Сколько запросов checkLinksAsync по умолчанию ожидают ответа одновременно
+     */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    /**
+     * Получатель событий по умолчанию, ничего не делает
+     */
+    private static final CrawlListener NO_LISTENER = new CrawlListener() {
+    };
     /**
      * Карта, содержащая сломанную ссылку и страницу, где она расположена
      */
     private final ConcurrentHashMap<String, String> broken;
     /**
-     * Сет посещенных ссылок, то есть ссылок внутри домена на которые был осуществлен переход
+     * Сет посещенных ссылок, то есть ссылок внутри домена на которые был осуществлен переход
+     *
+     * @see UrlSet
+     */
+    private UrlSet visited;
+    /**
+     * Сет всех проверенных ссылок
+     */
+    private UrlSet checked;
+    /**
+     * Движок, исполняющий задачи Visitor и Inspector
+     *
+     * @see CrawlEngine
+     */
+    private final CrawlEngine engine;
+    /**
+     * Основной домен для проверки
+     */
+    private final String mainDomain;
+
+    /**
+     * Способ извлечения ссылок: простой, с помощью com.kotolex.parsers.UrlListWithSelenium или гибридный
+     *
+     * @see ParsingMode
+     * @see UrlListWithSelenium
+     */
+    private ParsingMode mode = ParsingMode.SIMPLE;
+    /**
+     * Правила, по которым в гибридном режиме страница разбирается с помощью UrlListWithSelenium
+     */
+    private EscalationPolicy escalationPolicy = new EscalationPolicy();
+    /**
+     * Количество страниц, разобранных в гибридном режиме с помощью UrlListWithSelenium
+     */
+    private final AtomicInteger escalated = new AtomicInteger(0);
+    /**
+     * Фабрика страниц, через которые идут запросы, по умолчанию WebPage
+     *
+     * @see PageFactory
+     */
+    private PageFactory pages = WebPage::new;
+    /**
+     * Политика проверки ссылок, по умолчанию сначала HEAD, затем при необходимости GET
+     *
+     * @see ProbingWebPage
+     */
+    private ProbePolicy probePolicy = new ProbePolicy();
+    /**
+     * Пул драйверов для проверки с помощью UrlListWithSelenium, создается при первом обращении
+     *
+     * @see DriverPool
+     */
+    private DriverPool driverPool;
+    /**
+     * Хранить ли вместо ссылок их отпечатки
+     *
+     * @see FingerprintUrlSet
+     */
+    private boolean compact;
+    /**
+     * Папка контрольной точки, null если ход проверки не сохраняется
+     */
+    private Path checkpointDir;
+    private int frontierLimit = DEFAULT_FRONTIER_LIMIT;
+    /**
+     * Журнал и очередь работы, открыты только во время checkLinks с контрольной точкой
+     *
+     * @see CrawlJournal
+     * @see DiskFrontier
+     */
+    private volatile CrawlJournal journal;
+    private volatile DiskFrontier frontier;
+    /**
+     * Количество задач, переданных из очереди движку и еще не завершенных
+     */
+    private final AtomicInteger scheduled = new AtomicInteger(0);
+    /**
+     * Данные страниц с прошлой проверки для условных запросов, null если повторная проверка не инкрементальная
+     *
+     * @see RecrawlCache
+     */
+    private RecrawlCache recrawlCache;
+    /**
+     * Количество страниц, не изменившихся с прошлой проверки (ответ 304)
+     */
+    private final AtomicInteger notModified = new AtomicInteger(0);
+    /**
+     * Кэш кодов состояния проверяемых ссылок, null если ссылки всегда запрашиваются
+     *
+     * @see LinkStatusCache
+     */
+    private LinkStatusCache statusCache;
+    /**
+     * Планировщик запросов к хостам, null если число и частота запросов не ограничены
+     *
+     * @see HostScheduler
+     */
+    private HostScheduler hostScheduler;
+    /**
+     * Планировщик текущей проверки: заданный hostScheduler или созданный для Crawl-delay из robots.txt только на эту
+     * проверку, null если число и частота запросов не ограничены
+     */
+    private HostScheduler runScheduler;
+    /**
+     * Политика повторов и дублирующих запросов, по умолчанию один повтор после временной ошибки
+     *
+     * @see RetryPolicy
+     */
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    /**
+     * Задана ли политика повторов явно, checkLinksAsync ее не поддерживает
+     */
+    private boolean customRetryPolicy;
+    /**
+     * Сколько байт html-страницы разбирается, остаток страницы не загружается
+     */
+    private long maxBodySize = PageResponse.DEFAULT_BODY_LIMIT;
+    /**
+     * Сколько запросов checkLinksAsync ожидают ответа одновременно, остальные ждут своей очереди
+     */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    /**
+     * Метрики проверки: времена запросов и разбора, скорость, очередь, байты разобранных страниц
+     *
+     * @see CrawlMetrics
+     */
+    private CrawlMetrics metrics = new CrawlMetrics();
+    /**
+     * Период вывода снимка метрик в консоль, null если снимок не выводится
+     */
+    private Duration metricsReportPeriod;
+    /**
+     * Приведение ссылок к каноническому виду, выполняется до проверки на повтор и на вхождение в домен
+     *
+     * @see UrlCanonicalizer
+     */
+    private UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+    /**
+     * Стартовая страница в каноническом виде и область сайта, в пределах которой идет переход по ссылкам
+     */
+    private volatile String startUrl;
+    private volatile String scope;
+    /**
+     * Количество ссылок, которые оказались повторами только после приведения к каноническому виду
+     */
+    private final AtomicInteger canonicalDuplicates = new AtomicInteger(0);
+    /**
+     * Все встреченные записи ссылок и их канонические виды, чтобы сэкономленный запрос учитывался один раз на каждую
+     * новую запись уже найденной ссылки, а не на каждое ее повторение
+     */
+    private UrlSet spellings;
+    private UrlSet canonicalForms;
+    /**
+     * Получатель событий проверки
+     *
+     * @see CrawlListener
+     */
+    private CrawlListener listener = NO_LISTENER;
+    /**
+     * Узел распределенной проверки, null если сайт проверяется одним процессом
+     *
+     * @see ShardNode
+     */
+    private ShardNode shard;
+    /**
+     * Сет ссылок, уже переданных другим узлам
+     */
+    private UrlSet forwarded;
+    /**
+     * Сет ссылок, уже записанных в журнал как поставленные в очередь, чтобы каждая ссылка писалась и ставилась
+     * в очередь контрольной точки один раз, сколько бы страниц на нее ни ссылалось
+     */
+    private UrlSet journaled;
+    /**
+     * Читать ли перед проверкой robots.txt и карты сайта
+     */
+    private boolean bootstrap;
+    /**
+     * Правила robots.txt сайта, null если robots.txt не читался
+     *
+     * @see RobotsTxt
+     */
+    private volatile RobotsTxt robots;
+    /**
+     * Количество ссылок, поставленных в проверку из карт сайта, и ссылок, запрещенных robots.txt
+     */
+    private final AtomicInteger seeded = new AtomicInteger(0);
+    private final AtomicInteger disallowed = new AtomicInteger(0);
+
+    private WebSiteLinksList(String mainDomain, CrawlEngine engine) {
+        this.mainDomain = mainDomain;
+        this.engine = engine;
+        visited = new ConcurrentUrlSet();
+        checked = new ConcurrentUrlSet();
+        forwarded = new ConcurrentUrlSet();
+        journaled = new ConcurrentUrlSet();
+        spellings = new ConcurrentUrlSet();
+        canonicalForms = new ConcurrentUrlSet();
+        broken = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Публичный коструктор
+     *
+     * @param mainDomain - главная страница домена для проверки
+     * @param simpleType - проверять простым способом или с помощью Селениум. true - проверка
+     *                   простым способом - ссылки извлекаются потоковым парсером, относительные ссылки
+     *                   разрешаются относительно страницы. false -  проверка с помощью UrlListWithSelenium,
+     *                   учитываются и ссылки, созданные скриптами. Второй способ дольше, но точнее.
+     * @see UrlListWithSelenium
+     */
+    public WebSiteLinksList(String mainDomain, boolean simpleType) {
+        this(mainDomain, simpleType, new ForkJoinCrawlEngine());
+    }
+
+    /**
+     * Публичный коструктор с указанием способа извлечения ссылок
+     *
+     * @param mainDomain - главная страница домена для проверки
+     * @param mode       - способ извлечения ссылок, в том числе гибридный
+     * @see ParsingMode
+     */
+    public WebSiteLinksList(String mainDomain, ParsingMode mode) {
+        this(mainDomain, mode, new ForkJoinCrawlEngine());
+    }
+
+    /**
+     * Публичный коструктор с указанием движка обхода
+     *
+     * @param mainDomain - главная страница домена для проверки
+     * @param simpleType - проверять простым способом или с помощью Селениум
+     * @param engine     - движок, исполняющий задачи проверки, например ForkJoinCrawlEngine с нужным числом потоков
+     *                   или VirtualThreadCrawlEngine с ограничением одновременных проверок
+     * @see ForkJoinCrawlEngine
+     * @see VirtualThreadCrawlEngine
+     */
+    public WebSiteLinksList(String mainDomain, boolean simpleType, CrawlEngine engine) {
+        this(mainDomain, simpleType ? ParsingMode.SIMPLE : ParsingMode.SELENIUM, engine);
+    }
+
+    /**
+     * Публичный коструктор с указанием способа извлечения ссылок и движка обхода
+     *
+     * @param mainDomain - главная страница домена для проверки
+     * @param mode       - способ извлечения ссылок
+     * @param engine     - движок, исполняющий задачи проверки
+     * @see ParsingMode
+     */
+    public WebSiteLinksList(String mainDomain, ParsingMode mode, CrawlEngine engine) {
+        this(mainDomain, engine);
+        this.mode = mode;
+    }
+
+    /**
+     * Устанавливает реализацию страниц для запросов в режиме checkLinks, например PooledWebPage::new для работы
+     * через пул постоянных соединений
+     *
+     * @param pages - фабрика страниц
+     * @see PooledWebPage
+     */
+    public void setPageFactory(PageFactory pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Устанавливает политику проверки кода ссылок в режиме checkLinks, например, чтобы проверять определенные типы
+     * содержимого только через GET
+     *
+     * @param probePolicy - политика проверки
+     * @see ProbePolicy
+     */
+    public void setProbePolicy(ProbePolicy probePolicy) {
+        this.probePolicy = probePolicy;
+    }
+
+    /**
+     * Устанавливает пул драйверов для проверки с помощью UrlListWithSelenium, например с другим размером
+     *
+     * @param driverPool - пул драйверов
+     * @see DriverPool
+     */
+    public synchronized void setDriverPool(DriverPool driverPool) {
+        this.driverPool = driverPool;
+    }
+
+    /**
+     * Включает компактный режим для очень больших сайтов: вместо самих ссылок хранятся их 64-битные отпечатки.
+     * В этом режиме списки checkedLinks() и visitedLinks() недоступны
+     *
+     * @param compact - true для компактного режима
+     * @see FingerprintUrlSet
+     */
+    public void setCompactDedup(boolean compact) {
+        this.compact = compact;
+        visited = newUrlSet();
+        checked = newUrlSet();
+        forwarded = newUrlSet();
+        journaled = newUrlSet();
+        spellings = newUrlSet();
+        canonicalForms = newUrlSet();
+    }
+
+    /**
+     * Задает правила приведения ссылок к каноническому виду
+     *
+     * @param canonicalizer - правила приведения
+     * @see UrlCanonicalizer
+     */
+    public void setCanonicalizer(UrlCanonicalizer canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Задает объект метрик, например чтобы заранее зарегистрировать его в JMX. Значения сбрасываются в начале
+     * каждой проверки
+     *
+     * @param metrics - метрики проверки
+     * @see CrawlMetrics#registerMBean(String)
+     */
+    public void setMetrics(CrawlMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Включает периодический вывод снимка метрик в консоль во время проверки
+     *
+     * @param period - период вывода, null чтобы отключить
+     */
+    public void setMetricsReport(Duration period) {
+        this.metricsReportPeriod = period;
+    }
+
+    /**
+     * Задает получателя событий, которому по ходу проверки передаются найденные, проверенные и сломанные ссылки
+     * и посещенные страницы
+     *
+     * @param listener - получатель событий, null чтобы отключить
+     * @see com.kotolex.services.JsonLinesCrawlWriter
+     * @see com.kotolex.services.CsvCrawlWriter
+     */
+    public void setCrawlListener(CrawlListener listener) {
+        this.listener = listener == null ? NO_LISTENER : listener;
+    }
+
+    /**
+     * Включает в режиме checkLinks начальную загрузку: перед проверкой читается robots.txt сайта, запрещенные им
+     * ссылки сайта не запрашиваются, а Crawl-delay передается планировщику запросов (если планировщик не задан,
+     * создается планировщик по умолчанию). Затем карты сайта из robots.txt (или /sitemap.xml), включая вложенные и
+     * сжатые, потоково читаются, и все их страницы в пределах сайта сразу ставятся в проверку, так что проверка
+     * сразу идет на всех потоках и находит страницы, на которые нет ссылок
+     *
+     * @param bootstrap - true чтобы читать robots.txt и карты сайта
+     * @see RobotsTxt
+     * @see SitemapReader
+     */
+    public void setBootstrap(boolean bootstrap) {
+        this.bootstrap = bootstrap;
+    }
+
+    /**
+     * Включает распределенный режим checkLinks: сайт проверяют несколько процессов, каждый из которых проверяет и
+     * посещает только ссылки своей части по хэшу, а найденные ссылки других частей пересылает их владельцам.
+     * checkLinks завершается по команде ShardCoordinator, который и собирает общие результаты, собственные
+     * результаты процесса относятся только к его части ссылок. Несовместим с контрольной точкой и checkLinksAsync
+     *
+     * @param shard - узел этого процесса, null чтобы проверять сайт одним процессом
+     * @see com.kotolex.services.ShardCoordinator
+     */
+    public void setShard(ShardNode shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Включает сохранение хода проверки в режиме checkLinks. Все события обхода пишутся в журнал в папке dir,
+     * а ожидающая работа, не поместившаяся в память, - в файл там же. Если в папке остался журнал незавершенной
+     * проверки (после падения или прерывания), checkLinks продолжит с места остановки. После успешного завершения
+     * журнал удаляется
+     *
+     * @param dir - папка контрольной точки
+     * @see CrawlJournal
+     */
+    public void setCheckpoint(Path dir) {
+        setCheckpoint(dir, DEFAULT_FRONTIER_LIMIT);
+    }
+
+    /**
+     * Включает сохранение хода проверки с указанием, сколько ожидающих задач держать в памяти
+     *
+     * @param dir           - папка контрольной точки
+     * @param frontierLimit - сколько ожидающих ссылок держать в памяти, остальные хранятся на диске
+     * @see DiskFrontier
+     */
+    public void setCheckpoint(Path dir, int frontierLimit) {
+        if (frontierLimit <= 0) {
+            throw new IllegalArgumentException("Frontier limit must be positive, but was " + frontierLimit);
+        }
+        this.checkpointDir = dir;
+        this.frontierLimit = frontierLimit;
+    }
+
+    /**
+     * Включает инкрементальную проверку в режиме checkLinks: для каждой страницы домена в файле сохраняются ETag,
+     * Last-Modified и найденные ссылки. При следующей проверке страницы запрашиваются условно (If-None-Match,
+     * If-Modified-Since), и на ответ 304 ссылки берутся из файла без загрузки и парсинга страницы.
+     * Файл обновляется после каждой завершенной проверки
+     *
+     * @param cacheFile - файл с данными страниц
+     * @see RecrawlCache
+     */
+    public void setIncremental(Path cacheFile) {
+        this.recrawlCache = new RecrawlCache(cacheFile);
+    }
+
+    /**
+     * Устанавливает кэш кодов состояния для режима checkLinks. Ссылки, код которых есть в кэше, не запрашиваются.
+     * Один кэш можно использовать для проверки нескольких сайтов, кэш с файлом сохраняется после каждой проверки
+     *
+     * @param statusCache - кэш кодов состояния, например TieredLinkStatusCache
+     * @see CachedWebPage
+     */
+    public void setStatusCache(LinkStatusCache statusCache) {
+        this.statusCache = statusCache;
+    }
+
+    /**
+     * Включает вежливый режим для checkLinks: все запросы идут через планировщик, который ограничивает число
+     * одновременных запросов и частоту запросов к каждому хосту, подстраивает их по ответам сервера и повторяет
+     * запросы, получившие 429 или 503, после паузы из Retry-After
+     *
+     * @param hostScheduler - планировщик запросов
+     * @see PoliteWebPage
+     */
+    public void setHostScheduler(HostScheduler hostScheduler) {
+        this.hostScheduler = hostScheduler;
+    }
+
+    /**
+     * Устанавливает политику повторов для режима checkLinks: сколько раз повторять запросы после временных ошибок,
+     * общий таймаут попытки и дублирующие запросы для медленных ответов
+     *
+     * @param retryPolicy - политика повторов
+     * @see ResilientWebPage
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        this.customRetryPolicy = true;
+    }
+
+    /**
+     * Устанавливает максимальный размер html-страницы для разбора, чтобы одна огромная страница не занимала поток
+     * и память. Ссылки ищутся только в первых maxBodySize байтах
+     *
+     * @param maxBodySize - размер в байтах
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        if (maxBodySize <= 0) {
+            throw new IllegalArgumentException("Body size must be positive, but was " + maxBodySize);
+        }
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Устанавливает сколько запросов checkLinksAsync могут одновременно ожидать ответа, как количество потоков
+     * ограничивает checkLinks. Следующие запросы отправляются по мере получения ответов
+     *
+     * @param maxInFlight - количество одновременных запросов, по умолчанию 64
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Requests in flight must be positive, but was " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Устанавливает правила, по которым в гибридном режиме страница разбирается с помощью UrlListWithSelenium
+     *
+     * @param escalationPolicy - правила гибридного режима
+     * @see ParsingMode#HYBRID
+     */
+    public void setEscalationPolicy(EscalationPolicy escalationPolicy) {
+        this.escalationPolicy = escalationPolicy;
+    }
+
+    /**
+     * Запускает проверку ссылок на сайте, завершается сообщением о количестве проверенных и сломанных ссылок, затраченном времени.
+     * Если задана контрольная точка, продолжает незавершенную проверку. В распределенном режиме завершается по
+     * команде координатора
+     *
+     * @see #setCheckpoint(Path)
+     * @see #setShard(ShardNode)
+     */
+    public void checkLinks() {
+        ShardNode shard = this.shard;
+        if (shard != null && checkpointDir != null) {
+            throw new IllegalStateException("Checkpoint is not supported in sharded mode");
+        }
+        clearAllCollections();
+        retryPolicy.useParallelism(engine.parallelism());
+        SimpleConsole console = new SimpleConsole();
+        console.println("Starting...");
+        console.startCount();
+        metrics.setFrontierDepth(() -> {
+            DiskFrontier frontier = this.frontier;
+            long queued = frontier == null ? 0 : frontier.size();
+            return (int) Math.min(Integer.MAX_VALUE, engine.pendingTasks() + queued);
+        });
+        startMetricsReport(console);
+        if (recrawlCache != null) {
+            recrawlCache.startRun();
+        }
+        robots = bootstrap ? loadRobots(console) : null;
+        boolean seeding = !resumeFromCheckpoint(console) && (shard == null || shard.owns(startUrl));
+        if (seeding && claimVisit(startUrl)) {
+            scheduleVisit(startUrl);
+        }
+        if (seeding && bootstrap) {
+            seedFromSitemaps(console);
+        }
+        boolean complete = true;
+        try {
+            if (shard != null) {
+                awaitShardStop(shard);
+            }
+            engine.awaitQuiescence();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+            console.println("Interrupted, results are incomplete");
+        }
+        metrics.stopReporting();
+        closeCheckpoint(complete);
+        if (complete && recrawlCache != null) {
+            recrawlCache.save();
+        }
+        if (statusCache != null) {
+            statusCache.save();
+        }
+        listener.onFinished();
+        console.printTime();
+        printSummary(console);
+        console.println("Maximum using threads: " + getMaxThreads());
+    }
+
+    /**
+     * Запускает проверку ссылок на сайте в виде конвейера CompletableFuture поверх AsyncWebPage. Потоки не блокируются
+     * в ожидании сети, поэтому вся проверка обходится несколькими потоками http-клиента. Парсинг с помощью
+     * UrlListWithSelenium блокирующий, поэтому в этом режиме он выполняется на движке обхода.
+     * Завершается сообщением о количестве проверенных и сломанных ссылок, затраченном времени.
+     * Распределенная проверка, контрольная точка, инкрементальная проверка, кэш статусов, планировщик запросов
+     * к хостам, политика повторов и загрузка robots.txt и карт сайта поддерживаются только в checkLinks, поэтому
+     * при любой из этих настроек проверка не начинается, чтобы они не игнорировались молча
+     *
+     * @throws IllegalStateException если задана настройка, которую поддерживает только checkLinks
+     * @see AsyncWebPage
+     */
+    public void checkLinksAsync() {
+        requireCheckLinks(shard != null, "Sharded mode");
+        requireCheckLinks(checkpointDir != null, "Checkpoint");
+        requireCheckLinks(recrawlCache != null, "Incremental re-check");
+        requireCheckLinks(statusCache != null, "Link status cache");
+        requireCheckLinks(hostScheduler != null, "Host scheduler");
+        requireCheckLinks(customRetryPolicy, "Retry policy");
+        requireCheckLinks(bootstrap, "Robots.txt and sitemap bootstrap");
+        clearAllCollections();
+        SimpleConsole console = new SimpleConsole();
+        console.println("Starting...");
+        console.startCount();
+        AsyncCrawler crawler = new AsyncCrawler();
+        metrics.setFrontierDepth(crawler::pending);
+        startMetricsReport(console);
+        visited.claim(startUrl);
+        crawler.visit(startUrl);
+        try {
+            crawler.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            console.println("Interrupted, results are incomplete");
+        }
+        metrics.stopReporting();
+        listener.onFinished();
+        console.printTime();
+        printSummary(console);
+        console.println("Maximum requests in flight: " + metrics.maxInFlightRequests());
+    }
+
+    public int brokenLinksCount() {
+        return broken.size();
+    }
+
+    /**
+     * Возвращает лист сломанных ссылок в формате "ссылка - страница расположения"
+     *
+     * @return лист, преобразованный из карты сломанных ссылок
+     */
+    public List<String> brokenLinksWithPath() {
+        return broken.entrySet().stream().map((n) -> n.getKey() + " - " + n.getValue()).collect(Collectors.toList());
+    }
+
+    /**
+     * Возвращает лист проверенных ссылок
+     *
+     * @return лист ссылок
+     * @throws UnsupportedOperationException в компактном режиме
+     */
+    public List<String> checkedLinks() {
+        return checked.urls();
+    }
+
+    /**
+     * Возвращает лист посещенных ссылок
+     *
+     * @return лист ссылок
+     * @throws UnsupportedOperationException в компактном режиме
+     */
+    public List<String> visitedLinks() {
+        return visited.urls();
+    }
+
+    /**
+     * Возвращает количество страниц, которые в гибридном режиме были разобраны с помощью UrlListWithSelenium
+     *
+     * @return количество страниц
+     */
+    public int escalatedPagesCount() {
+        return escalated.get();
+    }
+
+    /**
+     * Возвращает количество страниц, которые при инкрементальной проверке не изменились и не загружались повторно
+     *
+     * @return количество страниц с ответом 304
+     */
+    public int notModifiedPagesCount() {
+        return notModified.get();
+    }
+
+    /**
+     * Возвращает сколько байт разобранных страниц пришло по сети, для сжатых страниц до распаковки
+     *
+     * @return количество байт
+     */
+    public long wireBytes() {
+        return metrics.getWireBytes();
+    }
+
+    /**
+     * Возвращает сколько байт разобранных страниц получено после распаковки
+     *
+     * @return количество байт
+     */
+    public long decodedBytes() {
+        return metrics.getDecodedBytes();
+    }
+
+    /**
+     * Возвращает сколько запросов сэкономлено приведением ссылок к каноническому виду
+     *
+     * @return количество новых записей ссылок, оказавшихся после приведения повторами уже найденных ссылок
+     */
+    public int canonicalDuplicatesCount() {
+        return canonicalDuplicates.get();
+    }
+
+    /**
+     * Возвращает метрики текущей или последней проверки
+     *
+     * @return метрики проверки
+     */
+    public CrawlMetrics metrics() {
+        return metrics;
+    }
+
+    public int getMaxThreads() {
+        return engine.maxActiveThreads();
+    }
+
+    /**
+     * Возвращает количество проверенных ссылок. Запрещенные robots.txt ссылки занимают место в множестве проверенных,
+     * чтобы не разбирать правила для них повторно, но не запрашиваются и поэтому не учитываются
+     *
+     * @return количество проверенных ссылок
+     */
+    private int checkedCount() {
+        return checked.size() - disallowed.get();
+    }
+
+    /**
+     * Печатает количество проверенных, посещенных и сломанных ссылок
+     *
+     * @param console - консоль для вывода
+     */
+    private void printSummary(SimpleConsole console) {
+        console.println("Checked links: " + checkedCount());
+        console.println("Visited links: " + visited.size());
+        console.println("Broken links: " + brokenLinksCount());
+        console.println("Page bytes: " + wireBytes() + " on the wire, " + decodedBytes() + " decoded");
+        console.println(String.format(Locale.ROOT, "Pages per second: %.1f, links per second: %.1f",
+                metrics.getPagesPerSecond(), metrics.getLinksPerSecond()));
+        console.println("Fetches saved by canonicalization: " + canonicalDuplicatesCount());
+        if (mode == ParsingMode.HYBRID) {
+            console.println("Pages parsed with Selenium: " + escalatedPagesCount());
+        }
+        if (recrawlCache != null) {
+            console.println("Not modified pages: " + notModifiedPagesCount());
+        }
+        console.println("Retried requests: " + retryPolicy.retriedCount() + ", hedged: " + retryPolicy.hedgedCount()
+                + ", timed out: " + retryPolicy.timedOutCount());
+        if (runScheduler != null) {
+            console.println("Throttled responses: " + runScheduler.throttledCount());
+        }
+        if (statusCache != null) {
+            console.println("Status cache hits: " + statusCache.hits() + ", misses: " + statusCache.misses());
+        }
+        if (robots != null) {
+            console.println("Links seeded from sitemaps: " + seeded.get() + ", disallowed by robots.txt: "
+                    + disallowed.get());
+        }
+        if (shard != null) {
+            console.println("Shard " + shard.index() + " of " + shard.size() + ", links forwarded: "
+                    + shard.sentCount() + ", received: " + shard.receivedCount());
+        }
+    }
+
+    /**
+     * Отказывается запускать checkLinksAsync с настройкой, которую поддерживает только checkLinks
+     *
+     * @param isSet   - задана ли настройка
+     * @param feature - название настройки для сообщения
+     * @throws IllegalStateException если настройка задана
+     */
+    private void requireCheckLinks(boolean isSet, String feature) {
+        if (isSet) {
+            throw new IllegalStateException(feature + " is supported only by checkLinks");
+        }
+    }
+
+    /**
+     * Очищает все коллекции для начала работы
+     */
+    private void clearAllCollections() {
+        visited.clear();
+        checked.clear();
+        forwarded.clear();
+        journaled.clear();
+        spellings.clear();
+        canonicalForms.clear();
+        broken.clear();
+        escalated.set(0);
+        notModified.set(0);
+        metrics.reset();
+        canonicalDuplicates.set(0);
+        seeded.set(0);
+        disallowed.set(0);
+        runScheduler = hostScheduler;
+        startUrl = canonicalizer.canonicalize(mainDomain);
+        scope = canonicalizer.scope(startUrl);
+    }
+
+    /**
+     * Включает периодический вывод снимка метрик, если он задан
+     *
+     * @param console - консоль для вывода
+     * @see #setMetricsReport(Duration)
+     */
+    private void startMetricsReport(SimpleConsole console) {
+        Duration period = metricsReportPeriod;
+        if (period != null) {
+            metrics.startReporting(period, console::println);
+        }
+    }
+
+    private UrlSet newUrlSet() {
+        return compact ? new FingerprintUrlSet() : new ConcurrentUrlSet();
+    }
+
+    /**
+     * Открывает журнал и очередь контрольной точки и, если остался журнал незавершенной проверки, восстанавливает
+     * по нему проверенные, посещенные и сломанные ссылки и ставит в очередь незавершенную работу.
+     * Журнал читается дважды, чтобы при восстановлении не держать в памяти ожидающие ссылки сверх лимита очереди:
+     * первый проход восстанавливает состояние, второй ставит в очередь незавершенную работу и одновременно сжимает
+     * журнал, оставляя только нужные для следующего возобновления записи, поэтому он не растет от перезапуска
+     * к перезапуску
+     *
+     * @param console - консоль для вывода
+     * @return true, если проверка продолжена с контрольной точки
+     */
+    private boolean resumeFromCheckpoint(SimpleConsole console) {
+        if (checkpointDir == null) {
+            return false;
+        }
+        scheduled.set(0);
+        CrawlJournal journal = new CrawlJournal(checkpointDir);
+        DiskFrontier frontier = new DiskFrontier(checkpointDir, frontierLimit);
+        UrlSet done = newUrlSet();
+        journal.replay((event, url, referrer) -> {
+            if (event == CrawlJournal.Event.CHECKED) {
+                checked.claim(url);
+                journaled.claim(url);
+            } else if (event == CrawlJournal.Event.DISALLOWED) {
+                if (checked.claim(url)) {
+                    disallowed.getAndIncrement();
+                }
+                journaled.claim(url);
+            } else if (event == CrawlJournal.Event.QUEUED) {
+                journaled.claim(url);
+            } else if (event == CrawlJournal.Event.BROKEN) {
+                broken.putIfAbsent(url, referrer);
+            } else if (event == CrawlJournal.Event.VISITING) {
+                visited.claim(url);
+            } else if (event == CrawlJournal.Event.VISITED) {
+                visited.claim(url);
+                done.claim(url);
+            }
+        });
+        this.journal = journal;
+        this.frontier = frontier;
+        if (!visited.contains(startUrl)) {
+            journal.delete();
+            clearAllCollections();
+            return false;
+        }
+        UrlSet requeuedVisits = newUrlSet();
+        UrlSet requeuedChecks = newUrlSet();
+        journal.compact((event, url, referrer) -> {
+            if (event == CrawlJournal.Event.VISITING) {
+                if (done.contains(url) || !requeuedVisits.claim(url)) {
+                    return false;
+                }
+                frontier.offerVisit(url);
+            } else if (event == CrawlJournal.Event.QUEUED) {
+                if (checked.contains(url) || !requeuedChecks.claim(url)) {
+                    return false;
+                }
+                frontier.offerCheck(url, referrer);
+            }
+            return true;
+        });
+        console.println("Resuming from checkpoint: " + checked.size() + " checked, " + frontier.size() + " pending");
+        drainFrontier();
+        return true;
+    }
+
+    /**
+     * Закрывает журнал и очередь контрольной точки, после завершенной проверки журнал удаляется
+     *
+     * @param complete - завершена ли проверка
      */
-    private final HashSet<String> visited;
+    private void closeCheckpoint(boolean complete) {
+        CrawlJournal journal = this.journal;
+        DiskFrontier frontier = this.frontier;
+        this.journal = null;
+        this.frontier = null;
+        if (journal == null) {
+            return;
+        }
+        frontier.close();
+        if (complete) {
+            journal.delete();
+        } else {
+            journal.close();
+        }
+    }
+
     /**
-     * Сет всех проверенных ссылок
+     * Ставит в очередь проверку ссылки: при контрольной точке через журнал и очередь на диске, иначе сразу в движок.
+     * В журнал и очередь контрольной точки ссылка попадает только при первой постановке
+     *
+     * @param link    - ссылка для проверки
+     * @param mainUrl - страница, на которой найдена ссылка
      */
-    private final HashSet<String> checked;
+    private void scheduleCheck(String link, String mainUrl) {
+        ShardNode shard = this.shard;
+        if (shard != null && !shard.owns(link)) {
+            if (forwarded.claim(link)) {
+                shard.forward(link, mainUrl);
+            }
+            return;
+        }
+        CrawlJournal journal = this.journal;
+        DiskFrontier frontier = this.frontier;
+        if (journal == null || frontier == null) {
+            engine.submit(new Inspector(link, mainUrl));
+            return;
+        }
+        if (!journaled.claim(link)) {
+            return;
+        }
+        journal.queued(link, mainUrl);
+        frontier.offerCheck(link, mainUrl);
+        drainFrontier();
+    }
+
     /**
-     * Очередь запущенных потоков
+     * Ставит в очередь переход на страницу, уже захваченную через claimVisit
+     *
+     * @param url - страница для перехода
      */
-    private final ConcurrentLinkedQueue<Thread> threads;
+    private void scheduleVisit(String url) {
+        DiskFrontier frontier = this.frontier;
+        if (frontier == null) {
+            engine.submit(new Visitor(url));
+            return;
+        }
+        frontier.offerVisit(url);
+        drainFrontier();
+    }
+
     /**
-     * Основной домен для проверки
+     * Загружает robots.txt сайта и передает его Crawl-delay планировщику текущей проверки. Если планировщик не задан,
+     * создается новый только на эту проверку
+     *
+     * @param console - консоль для вывода
+     * @return правила robots.txt
      */
-    private final String mainDomain;
+    private RobotsTxt loadRobots(SimpleConsole console) {
+        RobotsTxt rules = RobotsTxt.fetch(startUrl, pageFactory(), RobotsTxt.DEFAULT_AGENT);
+        Optional<Duration> delay = rules.crawlDelay();
+        if (delay.isPresent()) {
+            if (runScheduler == null) {
+                runScheduler = new HostScheduler();
+            }
+            runScheduler.crawlDelay(URI.create(startUrl).getHost(), delay.get());
+            console.println("Crawl-delay from robots.txt: " + delay.get().toMillis() + " ms");
+        }
+        return rules;
+    }
 
     /**
-     * Флаг использовать ли простой способ проверки, в случае false  проверяет с помощью com.kotolex.parsers.UrlListWithSelenium
+     * Читает карты сайта и ставит в проверку все их страницы в пределах сайта. Проверка идет параллельно с чтением,
+     * сломанные страницы карты отмечаются с картой в качестве страницы расположения. Без контрольной точки чтение
+     * ждет, пока у движка больше SCHEDULING_WINDOW незавершенных проверок из карт, иначе миллионы адресов из карт
+     * стали бы задачами в памяти раньше, чем движок успеет их выполнить
      *
-     * @see UrlListWithSelenium
+     * @param console - консоль для вывода
      */
-    private boolean isSimpleType = true;
-    private final AtomicInteger threadCount = new AtomicInteger(0);
-    private int maxThreads = 0;
+    private void seedFromSitemaps(SimpleConsole console) {
+        String origin = robots.origin();
+        List<String> sitemaps = robots.sitemaps().stream().map((n) -> n.startsWith("/") ? origin + n : n)
+                .collect(Collectors.toList());
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(origin + "/sitemap.xml");
+        }
+        SitemapReader reader = new SitemapReader(pageFactory());
+        Semaphore window = new Semaphore(SCHEDULING_WINDOW);
+        long found = reader.read(sitemaps, (url, sitemap) -> {
+            String link = canonicalizer.canonicalize(url);
+            if (link.startsWith(scope) && !checked.contains(link)) {
+                seeded.getAndIncrement();
+                listener.onLinkFound(link, sitemap);
+                seedCheck(link, sitemap, window);
+            }
+        });
+        console.println("Sitemaps read: " + reader.sitemapsRead() + ", links found: " + found + ", seeded: "
+                + seeded.get());
+    }
 
-    private WebSiteLinksList(String mainDomain) {
-        this.mainDomain = mainDomain;
-        visited = new HashSet<>();
-        checked = new HashSet<>();
-        broken = new ConcurrentHashMap<>();
-        threads = new ConcurrentLinkedQueue<>();
+    /**
+     * Ставит в проверку ссылку из карты сайта. С контрольной точкой или в распределенном режиме ссылка идет через
+     * scheduleCheck, очередь которого уже ограничена, иначе задача передается движку только после освобождения места
+     * в окне
+     *
+     * @param link    - ссылка из карты
+     * @param sitemap - карта, в которой ссылка найдена
+     * @param window  - окно незавершенных проверок из карт
+     */
+    private void seedCheck(String link, String sitemap, Semaphore window) {
+        if (frontier != null || shard != null) {
+            scheduleCheck(link, sitemap);
+            return;
+        }
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Inspector inspector = new Inspector(link, sitemap);
+        try {
+            engine.submit(() -> {
+                try {
+                    inspector.run();
+                } finally {
+                    window.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            window.release();
+            throw e;
+        }
     }
 
     /**
-     * Публичный коструктор
+     * Запускает узел распределенной проверки и ждет команды остановки от координатора. Ссылки, пришедшие от других
+     * узлов, проверяются так же, как найденные этим узлом
      *
-     * @param mainDomain - главная страница домена для проверки
-     * @param simpleType - проверять простым способом или с помощью Селениум. true - проверка
-     *                   простым способом -проверяются и парсятся только явные ссылки. false -  проверка
-     *                   с помощью UrlListWithSelenium, проверяются и относительные ссылки.
-     *                   Второй способ дольше, но точнее.
-     * @see UrlListWithSelenium
+     * @param shard - узел этого процесса
+     * @throws InterruptedException если ожидающий поток был прерван
      */
-    public WebSiteLinksList(String mainDomain, boolean simpleType) {
-        this(mainDomain);
-        isSimpleType = simpleType;
+    private void awaitShardStop(ShardNode shard) throws InterruptedException {
+        shard.start(new ShardNode.Worker() {
+            @Override
+            public void accept(String link, String referrer) {
+                scheduleCheck(link, referrer);
+            }
+
+            @Override
+            public boolean isIdle() {
+                return engine.pendingTasks() == 0;
+            }
+
+            @Override
+            public int checkedCount() {
+                return WebSiteLinksList.this.checkedCount();
+            }
+
+            @Override
+            public int visitedCount() {
+                return visited.size();
+            }
+
+            @Override
+            public Map<String, String> brokenLinks() {
+                return broken;
+            }
+        });
+        try {
+            shard.awaitStop();
+        } finally {
+            shard.close();
+        }
     }
 
     /**
-     * Запускает проверку ссылок на сайте, завершается сообщением о количестве проверенных и сломанных ссылок, затраченном времени
+     * Передает движку задачи из очереди, пока у движка не больше SCHEDULING_WINDOW незавершенных задач из очереди.
+     * Каждая задача по завершении снова вызывает этот метод, поэтому очередь опустеет раньше, чем движок
      */
-    public void checkLinks() {
-        clearAllCollections();
-        SimpleConsole console = new SimpleConsole();
-        console.println("Starting...");
-        console.startCount();
-        startThread(new Visitor(mainDomain, isSimpleType));
-        while (!isAllThreadsStopped()) ;
-        console.printTime();
-        console.println("Checked links: " + checked.size());
-        console.println("Visited links: " + visited.size());
-        console.println("Broken links: " + brokenLinksCount());
-        console.println("Maximum using threads: " + getMaxThreads());
+    private void drainFrontier() {
+        DiskFrontier frontier = this.frontier;
+        while (frontier != null && scheduled.get() < SCHEDULING_WINDOW) {
+            DiskFrontier.Entry entry = frontier.poll();
+            if (entry == null) {
+                return;
+            }
+            Runnable task = entry.isVisit() ? new Visitor(entry.url()) : new Inspector(entry.url(), entry.referrer());
+            scheduled.getAndIncrement();
+            engine.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduled.getAndDecrement();
+                    drainFrontier();
+                }
+            });
+        }
     }
 
-    public int brokenLinksCount() {
-        return broken.size();
+    /**
+     * Захватывает страницу для перехода и записывает это в журнал
+     *
+     * @param url - страница
+     * @return true, если страница захвачена этим вызовом
+     */
+    private boolean claimVisit(String url) {
+        if (!visited.claim(url)) {
+            return false;
+        }
+        CrawlJournal journal = this.journal;
+        if (journal != null) {
+            journal.visiting(url);
+        }
+        return true;
     }
 
     /**
-     * Возвращает лист сломанных ссылок в формате "ссылка - страница расположения"
+     * Запоминает сломанную ссылку и записывает ее в журнал
      *
-     * @return лист, преобразованный из карты сломанных ссылок
+     * @param link    - сломанная ссылка
+     * @param mainUrl - страница, на которой она найдена
      */
-    public List<String> brokenLinksWithPath() {
-        return broken.entrySet().stream().map((n) -> n.getKey() + " - " + n.getValue()).collect(Collectors.toList());
+    private void markBroken(String link, String mainUrl) {
+        CrawlJournal journal = this.journal;
+        if (broken.putIfAbsent(link, mainUrl) != null) {
+            return;
+        }
+        listener.onBroken(link, mainUrl);
+        if (journal != null) {
+            journal.broken(link, mainUrl);
+        }
     }
 
-    public List<String> checkedLinks() {
-        return new ArrayList<>(checked);
+    /**
+     * Возвращает пул драйверов, создавая пул по умолчанию при первом обращении
+     *
+     * @return пул драйверов
+     */
+    private synchronized DriverPool driverPool() {
+        if (driverPool == null) {
+            driverPool = new DriverPool();
+        }
+        return driverPool;
     }
 
-    public List<String> visitedLinks() {
-        return new ArrayList<>(visited);
+    /**
+     * Запрашивает страницу и извлекает из нее ссылки потоковым парсером
+     *
+     * @param url - страница для парсинга
+     * @return список ссылок, пустой если страница недоступна
+     * @see StreamingUrlList
+     */
+    private List<String> fetchLinks(String url) {
+        try (PageResponse response = fetchPage(url)) {
+            return response.isSuccessful() && response.isHtml() ? pageLinks(response, url) : new ArrayList<>();
+        }
     }
 
-    public int getMaxThreads() {
-        return maxThreads;
+    /**
+     * Запрашивает страницу, при инкрементальной проверке условным запросом по валидаторам прошлой проверки
+     *
+     * @param url - адрес страницы
+     * @return ответ страницы, при инкрементальной проверке возможен ответ 304 без тела
+     */
+    private PageResponse fetchPage(String url) {
+        RecrawlCache cache = recrawlCache;
+        Optional<RecrawlCache.Entry> previous = cache == null ? Optional.empty() : cache.previous(url);
+        PageFactory pages = pageFactory();
+        return previous.isPresent() ? pages.page(url).fetch(previous.get().conditionalHeaders()) : pages.page(url).fetch();
     }
 
     /**
-     * Очищает все коллекции для начала работы
+     * Возвращает фабрику страниц для запросов: страницы оборачиваются в ResilientWebPage для повторов, а в вежливом
+     * режиме каждая попытка еще и идет через PoliteWebPage. Каждая попытка измеряется MeteredWebPage
+     *
+     * @return фабрика страниц
      */
-    private void clearAllCollections() {
-        visited.clear();
-        checked.clear();
-        broken.clear();
-        threads.clear();
+    private PageFactory pageFactory() {
+        HostScheduler scheduler = runScheduler;
+        RetryPolicy retry = retryPolicy;
+        CrawlMetrics metrics = this.metrics;
+        PageFactory base = this.pages;
+        PageFactory pages = (link, method) -> new MeteredWebPage(link, base.page(link, method), metrics);
+        PageFactory polite = scheduler == null ? pages
+                : (link, method) -> new PoliteWebPage(link, pages.page(link, method), scheduler);
+        return (link, method) -> new ResilientWebPage(link, polite.page(link, method), retry);
+    }
+
+    /**
+     * Возвращает ссылки полученной страницы. При инкрементальной проверке на ответ 304 ссылки берутся из кэша,
+     * иначе извлекаются из страницы и сохраняются в кэш вместе с ее валидаторами
+     *
+     * @param response - ответ страницы
+     * @param url      - адрес страницы
+     * @return список ссылок
+     */
+    private List<String> pageLinks(PageResponse response, String url) {
+        RecrawlCache cache = recrawlCache;
+        if (cache == null) {
+            return extractLinks(response, url);
+        }
+        Optional<RecrawlCache.Entry> previous = cache.previous(url);
+        if (response.status() == 304 && previous.isPresent()) {
+            notModified.getAndIncrement();
+            cache.put(url, previous.get());
+            return previous.get().links();
+        }
+        List<String> links = extractLinks(response, url);
+        cache.put(url, new RecrawlCache.Entry(response.header("ETag").orElse(""),
+                response.header("Last-Modified").orElse(""), links));
+        return links;
     }
 
     /**
-     * Стандартный запуск потоков, с занесением в очередь потоков threads
+     * Извлекает ссылки из уже полученной страницы потоковым парсером, в гибридном режиме при необходимости
+     * дополняет их ссылками, найденными с помощью UrlListWithSelenium
      *
-     * @param runnable - запускаемый поток
+     * @param response - ответ страницы
+     * @param url      - адрес страницы
+     * @return список ссылок
+     * @see EscalationPolicy
      */
-    private void startThread(Runnable runnable) {
-        Thread thread = new Thread(runnable);
-        thread.setDaemon(true);
-        threads.add(thread);
-        thread.start();
-        threadCount.getAndIncrement();
-        if (threadCount.get() > maxThreads) {
-            maxThreads = threadCount.get();
+    private List<String> extractLinks(PageResponse response, String url) {
+        StreamingUrlList parsed = new StreamingUrlList(response.reader(maxBodySize), url);
+        List<String> links = streamingLinks(parsed);
+        countBytes(response);
+        if (needSelenium(parsed)) {
+            return withSeleniumLinks(links, url);
         }
+        return links;
+    }
+
+    /**
+     * Учитывает байты разобранной страницы до и после распаковки
+     *
+     * @param response - разобранный ответ
+     */
+    private void countBytes(PageResponse response) {
+        metrics.addBytes(response.wireBytes(), response.decodedBytes());
+    }
+
+    /**
+     * Возвращает нужно ли в гибридном режиме дополнительно разобрать страницу с помощью UrlListWithSelenium
+     *
+     * @param parsed - страница, уже разобранная потоковым парсером
+     * @return true, если ссылки страницы, вероятно, создаются скриптами
+     */
+    private boolean needSelenium(StreamingUrlList parsed) {
+        return mode == ParsingMode.HYBRID && escalationPolicy.isNeeded(parsed);
+    }
+
+    /**
+     * Дополняет ссылки, найденные потоковым парсером, ссылками, найденными с помощью UrlListWithSelenium
+     *
+     * @param links - ссылки, найденные потоковым парсером
+     * @param url   - адрес страницы
+     * @return объединенный список уникальных ссылок
+     */
+    private List<String> withSeleniumLinks(List<String> links, String url) {
+        escalated.getAndIncrement();
+        Set<String> all = new LinkedHashSet<>(links);
+        all.addAll(seleniumLinks(url));
+        return new ArrayList<>(all);
+    }
+
+    /**
+     * Разбирает страницу потоковым парсером и учитывает время разбора вместе с чтением тела
+     *
+     * @param parsed - парсер страницы
+     * @return список ссылок
+     */
+    private List<String> streamingLinks(StreamingUrlList parsed) {
+        long start = System.nanoTime();
+        List<String> links = parsed.links();
+        metrics.recordParse("streaming", System.nanoTime() - start);
+        return links;
+    }
+
+    /**
+     * Извлекает ссылки страницы с помощью UrlListWithSelenium и учитывает время разбора
+     *
+     * @param url - адрес страницы
+     * @return список ссылок
+     */
+    private List<String> seleniumLinks(String url) {
+        long start = System.nanoTime();
+        List<String> links = new UrlListWithSelenium(url, driverPool()).links();
+        metrics.recordParse("selenium", System.nanoTime() - start);
+        return links;
+    }
+
+    /**
+     * Возвращает является ли код состояния допустимым, как и в RedirectWebPage редиректы считаются рабочими
+     *
+     * @param code - код ответа веб-страницы
+     * @return true для кода 200 и кодов редиректа
+     * @see RedirectWebPage
+     */
+    private boolean isAvailable(int code) {
+        return code == 200 || (code >= 300 && code <= 307);
+    }
+
+    /**
+     * Возвращает является ли ссылка ресурсом, на котрый не нужно переходить: тип содержимого, определенный по
+     * расширению, известен и не является html. Ссылки без расширения или с неизвестным расширением запрашиваются,
+     * и решение принимается по заголовку Content-Type ответа, не html-ответ закрывается без загрузки тела
+     *
+     * @param link - ссылка для проверки
+     * @return true, если ссылка является ресурсом
+     * @see ProbePolicy#contentTypeOf(String)
+     */
+    private boolean isSource(String link) {
+        return !probePolicy.contentTypeOf(link).contains("html");
+    }
+
+    /**
+     * Возвращает нужно ли переходить на страницу. Окончательно переход разрешает только успешный захват ссылки
+     * в visited, так что на каждую страницу переходят один раз
+     *
+     * @param link - ссылка для перехода в каноническом виде
+     * @return true если ссылку еще не посещали, она находится в области стартовой страницы и не является ресурсом
+     */
+    private boolean needToVisit(String link) {
+        return link.startsWith(scope) && !visited.contains(link) && !isSource(link);
     }
 
     /**
-     * Возвращает выполнены ли все потоки
+     * Приводит ссылки страницы к каноническому виду и убирает повторы. Сэкономленным запросом считается только
+     * первая встреча записи ссылки, канонический вид которой уже встречался под другой записью или уже проверен:
+     * повторы той же записи не запрашивались бы и без приведения
      *
-     * @return true, если все потоки завершены
+     * @param links - ссылки со страницы
+     * @return ссылки в каноническом виде без повторов
      */
-    private boolean isAllThreadsStopped() {
-        return threads.stream().filter(Thread::isAlive).count() < 1;
+    private List<String> canonical(List<String> links) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (String link : links) {
+            if (!seen.add(link)) {
+                continue;
+            }
+            String canonical = canonicalizer.canonicalize(link);
+            boolean newSpelling = spellings.claim(link);
+            boolean knownCanonical = !canonicalForms.claim(canonical)
+                    || !canonical.equals(link) && checked.contains(canonical);
+            if (newSpelling && knownCanonical) {
+                canonicalDuplicates.getAndIncrement();
+            }
+            unique.putIfAbsent(canonical, link);
+        }
+        return new ArrayList<>(unique.keySet());
     }
 
     /**
-     * Класс-поток для проверки ссылок полученных в листе при создании объекта
+     * Задача для проверки одной ссылки, найденной на странице mainUrl
      */
     final class Inspector implements Runnable {
-        private final List<String> links;
+        private final String link;
         private final String mainUrl;
 
-        public Inspector(List<String> links, String mainUrl) {
-            this.links = links;
+        public Inspector(String link, String mainUrl) {
+            this.link = link;
             this.mainUrl = mainUrl;
         }
 
-        /**
-         * Возвращает является ли ссылка ресурсом, на котрый не нужно переходить
-         *
-         * @param link - ссылка для проверки
-         * @return true, если ссылка является ресурсом
-         */
-        private boolean isSource(String link) {
-            return link.endsWith(".js") || link.endsWith(".rss") || link.endsWith(".jpg")
-                    || link.endsWith(".png") || link.endsWith(".css") || link.endsWith(".xml");
-        }
-
         @Override
         public void run() {
-            for (String link : links) {
-                addToChecked(link);
-                if (!broken.containsKey(link)) {
-                    if (!checkLinkIsAvailable(link)) {
-                        broken.putIfAbsent(link, mainUrl);
-                    } else {
-                        visitNewUrl(link);
-                    }
+            if (!checked.claim(link)) {
+                return;
+            }
+            RobotsTxt robots = WebSiteLinksList.this.robots;
+            if (robots != null && !robots.isAllowed(link)) {
+                disallowed.getAndIncrement();
+                listener.onDisallowed(link);
+                CrawlJournal journal = WebSiteLinksList.this.journal;
+                if (journal != null) {
+                    journal.disallowed(link);
+                }
+                return;
+            }
+            boolean available;
+            if (mode != ParsingMode.SELENIUM && needToVisit(link)) {
+                available = checkAndVisit();
+            } else {
+                available = checkLinkIsAvailable(link);
+                if (available) {
+                    visitNewUrl(link);
                 }
             }
-            threadCount.getAndDecrement();
+            metrics.linkChecked();
+            listener.onChecked(link, available);
+            if (!available) {
+                markBroken(link, mainUrl);
+            }
+            CrawlJournal journal = WebSiteLinksList.this.journal;
+            if (journal != null) {
+                journal.checked(link);
+            }
         }
 
         /**
-         * Добавляет ссылку в проверенные, блокирует коллекцию при этом
+         * Проверяет страницу домена одним GET-запросом и, если она доступна и является html, сразу парсит
+         * полученное содержимое, не запрашивая страницу повторно
          *
-         * @param url - ссылка для добавления
+         * @return true если страница доступна
          */
-        private void addToChecked(String url) {
-            synchronized (checked) {
-                checked.add(url);
+        private boolean checkAndVisit() {
+            try (PageResponse response = fetchPage(link)) {
+                if (!isAvailable(response.status())) {
+                    return false;
+                }
+                if (response.isHtml() && claimVisit(link)) {
+                    new Visitor(link, pageLinks(response, link)).run();
+                }
+                return true;
             }
         }
 
@@ -210,108 +1475,329 @@ public final class WebSiteLinksList {
          * @return true если ссылка доступнв
          */
         private boolean checkLinkIsAvailable(String link) {
-            return new RedirectWebPage(new WebPage(link)).available();
+            InternetPage page = new ProbingWebPage(link, pageFactory(), probePolicy);
+            LinkStatusCache cache = statusCache;
+            return new RedirectWebPage(cache == null ? page : new CachedWebPage(link, page, cache)).available();
         }
 
         /**
-         * При необходимости запускает поток Визитер для перехода на страницу в пределпх домена.
+         * При необходимости ставит в очередь задачу Визитер для перехода на страницу в пределпх домена.
          * Если ссылка уже посещалась, то перехода не происходит.
          *
          * @param url - ссылка для перехода
          * @see Visitor
          */
         private void visitNewUrl(String url) {
-            if (needToVisit(url)) {
-                startThread(new Visitor(url, isSimpleType));
+            if (needToVisit(url) && claimVisit(url)) {
+                scheduleVisit(url);
             }
         }
+    }
+
+    /**
+     * Задача для перехода на новую страницу и постановки в очередь задач проверки каждой ссылки на ней
+     *
+     * @see Inspector
+     */
+    final class Visitor implements Runnable {
+        private final String mainUrl;
+        /**
+         * Уже извлеченные при проверке ссылки страницы, null если страницу нужно запросить
+         */
+        private final List<String> links;
+
+        /**
+         * Консруктор потока
+         *
+         * @param mainUrl - страница проверки
+         */
+        public Visitor(String mainUrl) {
+            this.mainUrl = mainUrl;
+            this.links = null;
+        }
 
         /**
-         * Возвращает нужно ли переходить на страницу
+         * Конструктор для страницы, ссылки которой уже извлечены при проверке
          *
-         * @param link - ссылка для перехода
-         * @return true если ссылку еще не посещали, она находится в домене и не является ресурсом
+         * @param mainUrl - страница проверки
+         * @param links   - ссылки со страницы
          */
-        private boolean needToVisit(String link) {
-            return link.startsWith(mainUrl) && !isVisitedContains(link) && !isSource(link);
+        public Visitor(String mainUrl, List<String> links) {
+            this.mainUrl = mainUrl;
+            this.links = links;
+        }
+
+        @Override
+        public void run() {
+            for (String link : getAllUncheckedLinks()) {
+                scheduleCheck(link, mainUrl);
+            }
+            metrics.pageVisited();
+            listener.onVisited(mainUrl);
+            CrawlJournal journal = WebSiteLinksList.this.journal;
+            if (journal != null) {
+                journal.visited(mainUrl);
+            }
         }
 
         /**
-         * Возвращает содержит ли коллекция посещенных ссылок данную
+         * В зависимости от способа извлечения получает ссылки простым способом или с помощью UrlListWithSelenium
          *
-         * @param url - ссылка для проверки
-         * @return true, если ссылка уже посещалась
+         * @return список еще не провереных ссылок
          */
-        private boolean isVisitedContains(String url) {
-            synchronized (visited) {
-                return visited.contains(url);
+        private List<String> getAllUncheckedLinks() {
+            List<String> all;
+            if (links != null) {
+                all = links;
+            } else {
+                all = mode != ParsingMode.SELENIUM ? fetchLinks(mainUrl) : seleniumLinks(mainUrl);
             }
+            List<String> found = canonical(all);
+            found.forEach((link) -> listener.onLinkFound(link, mainUrl));
+            return found.stream().filter((n) -> !checked.contains(n)).collect(Collectors.toList());
         }
+
     }
 
     /**
-     * Класс-поток для перехода на новую страницу и запуска потоков для проверки ссылок на ней
+     * Обход сайта конвейером CompletableFuture: проверка ссылки, переход на страницу, парсинг и проверка найденных
+     * ссылок связываются в цепочки без блокировки потоков. Завершение определяется по счетчику незавершенных звеньев.
+     * Одновременно ожидают ответа не больше maxInFlight запросов: остальные ждут в очереди и отправляются, когда
+     * освобождается разрешение, поэтому ни один поток не блокируется в ожидании разрешения.
      *
-     * @see Inspector
+     * @see AsyncWebPage
      */
-    final class Visitor implements Runnable {
-        private final String mainUrl;
-        private final boolean isSimpleType;
+    final class AsyncCrawler {
+        /**
+         * Количество запущенных, но еще не завершенных звеньев конвейера
+         */
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final Semaphore window = new Semaphore(maxInFlight);
+        /**
+         * Запросы, ожидающие разрешения
+         */
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+        /**
+         * Сколько раз запрошен запуск ожидающих запросов, пока его выполняет другой поток
+         */
+        private final AtomicInteger draining = new AtomicInteger(0);
 
         /**
-         * Консруктор потока
+         * Проверяет ссылку, найденную на странице mainUrl, и при необходимости переходит по ней
          *
-         * @param mainUrl      - страница проверки
-         * @param isSimpleType - проверять простым способом или с помощью UrlListWithSelenium
-         * @see UrlListWithSelenium
+         * @param link    - ссылка для проверки
+         * @param mainUrl - страница, на которой найдена ссылка
          */
-        public Visitor(String mainUrl, boolean isSimpleType) {
-            this.mainUrl = mainUrl;
-            this.isSimpleType = isSimpleType;
+        void check(String link, String mainUrl) {
+            if (!checked.claim(link)) {
+                return;
+            }
+            if (mode != ParsingMode.SELENIUM && needToVisit(link)) {
+                checkAndVisit(link, mainUrl);
+                return;
+            }
+            track(() -> request(link, () -> new AsyncRedirectWebPage(new AsyncWebPage(link)).availableAsync())
+                    .thenAccept((available) -> {
+                        metrics.linkChecked();
+                        listener.onChecked(link, available);
+                        if (!available) {
+                            markBroken(link, mainUrl);
+                        } else if (needToVisit(link) && visited.claim(link)) {
+                            visit(link);
+                        }
+                    }));
+        }
+
+        /**
+         * Переходит на страницу и проверяет все еще не проверенные ссылки на ней
+         *
+         * @param url - страница для перехода
+         */
+        void visit(String url) {
+            track(() -> links(url).thenAccept((links) -> checkAll(links, url)));
+        }
+
+        /**
+         * Проверяет страницу домена одним GET-запросом и, если она доступна и является html, проверяет ссылки из
+         * уже полученного содержимого
+         *
+         * @param link    - страница для проверки
+         * @param mainUrl - страница, на которой найдена ссылка
+         */
+        private void checkAndVisit(String link, String mainUrl) {
+            track(() -> request(link, () -> new AsyncWebPage(link, maxBodySize).fetchAsync()).thenCompose((response) -> {
+                boolean available = isAvailable(response.status());
+                metrics.linkChecked();
+                listener.onChecked(link, available);
+                if (!available) {
+                    markBroken(link, mainUrl);
+                } else if (response.isHtml() && visited.claim(link)) {
+                    return parse(response, link).thenAccept((links) -> checkAll(links, link));
+                }
+                return CompletableFuture.completedFuture(null);
+            }));
         }
 
         /**
-         * Возвращает содержит ли коллекция проверенных ссылок данную
+         * Проверяет все еще не проверенные ссылки со страницы
          *
-         * @param url - ссылка для проверки
-         * @return true, если ссылка уже проверялась
+         * @param links - ссылки со страницы
+         * @param url   - страница, на которой найдены ссылки
          */
-        private boolean isCheckedContains(String url) {
-            synchronized (checked) {
-                return checked.contains(url);
+        private void checkAll(List<String> links, String url) {
+            for (String link : canonical(links)) {
+                listener.onLinkFound(link, url);
+                if (!checked.contains(link)) {
+                    check(link, url);
+                }
             }
+            metrics.pageVisited();
+            listener.onVisited(url);
         }
 
         /**
-         * Добавляет ссылку в посещенные, блокирует коллекцию
+         * Ожидает завершения всех звеньев конвейера
          *
-         * @param url - ссылка для добавления
+         * @throws InterruptedException если ожидающий поток был прерван
          */
-        private void addToVisited(String url) {
-            synchronized (visited) {
-                visited.add(url);
+        void await() throws InterruptedException {
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
             }
         }
 
-        @Override
-        public void run() {
-            addToVisited(mainUrl);
-            List<String> links = getAllUncheckedLinks();
-            if (links.size()>0) {
-                startThread(new Inspector(getAllUncheckedLinks(), mainUrl));
+        int pending() {
+            return pending.get();
+        }
+
+        /**
+         * В зависимости от способа извлечения получает ссылки со страницы простым способом или с помощью
+         * UrlListWithSelenium на движке обхода
+         *
+         * @param url - страница для парсинга
+         * @return future со списком ссылок
+         */
+        private CompletableFuture<List<String>> links(String url) {
+            if (mode == ParsingMode.SELENIUM) {
+                return onEngine(() -> seleniumLinks(url));
             }
-            threadCount.getAndDecrement();
+            return request(url, () -> new AsyncWebPage(url, maxBodySize).fetchAsync()).thenCompose((response) ->
+                    response.isSuccessful() && response.isHtml()
+                            ? parse(response, url) : CompletableFuture.completedFuture(new ArrayList<>()));
         }
 
         /**
-         * В зависимости от флага isSimpleType получает ссылки простым способом или с помощью UrlListWithSelenium
+         * Извлекает ссылки из полученной страницы потоковым парсером, в гибридном режиме при необходимости дополняет
+         * их ссылками, найденными с помощью UrlListWithSelenium на движке обхода
          *
-         * @return список еще не провереных ссылок
+         * @param response - ответ страницы
+         * @param url      - адрес страницы
+         * @return future со списком ссылок
          */
-        private List<String> getAllUncheckedLinks() {
-            UrlLinksList urlList = isSimpleType ? new UrlList(new WebPage(mainUrl).content()) : new UrlListWithSelenium(mainUrl);
-            return urlList.links().parallelStream().filter((n) -> !isCheckedContains(n)).collect(Collectors.toList());
+        private CompletableFuture<List<String>> parse(PageResponse response, String url) {
+            StreamingUrlList parsed = new StreamingUrlList(response.reader(maxBodySize), url);
+            List<String> links = streamingLinks(parsed);
+            countBytes(response);
+            if (needSelenium(parsed)) {
+                return onEngine(() -> withSeleniumLinks(links, url));
+            }
+            return CompletableFuture.completedFuture(links);
+        }
+
+        /**
+         * Выполняет блокирующий разбор на движке обхода, чтобы не занимать потоки http-клиента
+         *
+         * @param parsing - разбор страницы
+         * @return future со списком ссылок
+         */
+        private CompletableFuture<List<String>> onEngine(Supplier<List<String>> parsing) {
+            CompletableFuture<List<String>> result = new CompletableFuture<>();
+            engine.submit(() -> {
+                try {
+                    result.complete(parsing.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Отправляет запрос, когда есть свободное разрешение, учитывает его в количестве одновременно ожидающих
+         * ответа и время до его завершения
+         *
+         * @param link - ссылка запроса
+         * @param send - отправляет запрос
+         * @return future с результатом запроса
+         */
+        private <T> CompletableFuture<T> request(String link, Supplier<CompletableFuture<T>> send) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            waiting.add(() -> {
+                long start = System.nanoTime();
+                metrics.requestStarted();
+                CompletableFuture<T> future;
+                try {
+                    future = send.get();
+                } catch (RuntimeException e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+                future.whenComplete((value, ex) -> {
+                    metrics.requestFinished();
+                    window.release();
+                    sendWaiting();
+                    if (ex == null) {
+                        metrics.recordRequest(link, CrawlMetrics.Phase.TTFB, System.nanoTime() - start);
+                        result.complete(value);
+                    } else {
+                        result.completeExceptionally(ex);
+                    }
+                });
+            });
+            sendWaiting();
+            return result;
+        }
+
+        /**
+         * Отправляет ожидающие запросы, пока есть свободные разрешения. Вызов из другого потока или из завершения
+         * запроса, отправленного этим же циклом, только просит цикл пройти еще раз, поэтому рекурсии нет
+         */
+        private void sendWaiting() {
+            if (draining.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!waiting.isEmpty() && window.tryAcquire()) {
+                    Runnable next = waiting.poll();
+                    if (next == null) {
+                        window.release();
+                        break;
+                    }
+                    next.run();
+                }
+                missed = draining.addAndGet(-missed);
+            } while (missed != 0);
         }
 
+        /**
+         * Учитывает звено конвейера, счетчик увеличивается до подписки, чтобы дочерние звенья, запущенные синхронно,
+         * не завершили обход раньше времени
+         *
+         * @param stage - создает звено конвейера
+         */
+        private void track(Supplier<CompletableFuture<Void>> stage) {
+            pending.getAndIncrement();
+            stage.get().whenComplete((result, ex) -> {
+                if (ex != null) {
+                    new SimpleConsole().println("Crawl stage failed " + ex.getMessage());
+                }
+                if (pending.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.kotolex.engines;
+
+import com.kotolex.interfaces.CrawlEngine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общая часть движков обхода: учет незавершенных и активных задач и ожидание завершения без активного опроса.
+ * Наследники отвечают только за то, на каких потоках исполняется задача.
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+abstract class AbstractCrawlEngine implements CrawlEngine {
+    /**
+     * Количество поставленных, но еще не завершенных задач
+     */
+    private final AtomicInteger pending = new AtomicInteger(0);
+    /**
+     * Количество задач, исполняющихся в данный момент
+     */
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger maxActive = new AtomicInteger(0);
+    private final Object monitor = new Object();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void submit(Runnable task) {
+        pending.getAndIncrement();
+        try {
+            start(() -> execute(task));
+        } catch (RuntimeException e) {
+            finish();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void awaitQuiescence() throws InterruptedException {
+        synchronized (monitor) {
+            while (pending.get() > 0) {
+                monitor.wait();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int maxActiveThreads() {
+        return maxActive.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int pendingTasks() {
+        return pending.get();
+    }
+
+    /**
+     * Передает обернутую задачу на исполнение
+     *
+     * @param wrapped - задача, уже обернутая в учет счетчиков
+     */
+    protected abstract void start(Runnable wrapped);
+
+    /**
+     * Исполняет задачу с учетом счетчиков
+     *
+     * @param task - задача для исполнения
+     */
+    protected void execute(Runnable task) {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            task.run();
+        } finally {
+            active.getAndDecrement();
+            finish();
+        }
+    }
+
+    /**
+     * Отмечает завершение задачи, последняя завершившаяся задача будит ожидающих
+     */
+    private void finish() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.kotolex.engines;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Движок обхода на основе ForkJoinPool фиксированного размера. Потоки пула забирают задачи из общей очереди
+ * (фронтира) и крадут их друг у друга, поэтому количество потоков не зависит от количества ссылок на сайте.
+ * Завершение определяется по счетчику незавершенных задач, ожидание идет на мониторе без активного опроса.
+ *
+ * @author kotolex
+ * @version 1.2
+ */
+public final class ForkJoinCrawlEngine extends AbstractCrawlEngine {
+    /**
+     * Множитель размера пула по умолчанию относительно количества ядер, задачи большую часть времени ждут сеть
+     */
+    private static final int IO_FACTOR = 4;
+    private final ForkJoinPool pool;
+
+    /**
+     * Конструктор с размером пула по умолчанию (количество ядер, умноженное на IO_FACTOR)
+     */
+    public ForkJoinCrawlEngine() {
+        this(Runtime.getRuntime().availableProcessors() * IO_FACTOR);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param parallelism - количество потоков в пуле
+     */
+    public ForkJoinCrawlEngine(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, but was " + parallelism);
+        }
+        pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void start(Runnable wrapped) {
+        pool.execute(wrapped);
+    }
+}
@@ -0,0 +1,160 @@
+package com.kotolex.engines;
+
+import com.kotolex.services.SimpleConsole;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Движок обхода на виртуальных потоках. Количество одновременно выполняемых задач ограничивается семафором, причем
+ * разрешение берется до создания потока: задачи без разрешения ждут в очереди, а поток, закончив задачу, забирает
+ * следующую из очереди. Поэтому потоков никогда не больше, чем разрешений, сколько бы ссылок ни было поставлено.
+ * Виртуальные потоки ищутся через рефлексию, так как проект собирается под более старую версию Java. Если JVM их не
+ * поддерживает (ниже 21), задачи исполняются в обычных потоках-демонах с тем же ограничением, а ограничение по
+ * умолчанию равно размеру пула ForkJoinCrawlEngine, который для таких JVM предпочтительнее.
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see ForkJoinCrawlEngine
+ */
+public final class VirtualThreadCrawlEngine extends AbstractCrawlEngine {
+    /**
+     * Ограничение количества одновременных проверок по умолчанию
+     */
+    private static final int DEFAULT_CONCURRENCY = 10_000;
+    /**
+     * Множитель ограничения по умолчанию относительно количества ядер для обычных потоков
+     */
+    private static final int IO_FACTOR = 4;
+    private final ThreadFactory factory;
+    private final int concurrency;
+    private final Semaphore permits;
+    /**
+     * Задачи, которым еще не досталось разрешения
+     */
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private volatile boolean isShutdown = false;
+
+    /**
+     * Конструктор с ограничением одновременных задач по умолчанию: 10000 для виртуальных потоков и количество ядер,
+     * умноженное на IO_FACTOR, для обычных
+     */
+    public VirtualThreadCrawlEngine() {
+        this(isSupported() ? DEFAULT_CONCURRENCY : Runtime.getRuntime().availableProcessors() * IO_FACTOR);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param concurrency - максимальное количество одновременно исполняемых задач
+     */
+    public VirtualThreadCrawlEngine(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive, but was " + concurrency);
+        }
+        this.concurrency = concurrency;
+        permits = new Semaphore(concurrency);
+        ThreadFactory virtual = virtualThreadFactory();
+        if (virtual == null) {
+            new SimpleConsole().println("Virtual threads are not supported by this JVM, using platform threads");
+            factory = platformThreadFactory();
+        } else {
+            factory = virtual;
+        }
+    }
+
+    /**
+     * Возвращает поддерживает ли текущая JVM виртуальные потоки
+     *
+     * @return true, если виртуальные потоки доступны
+     */
+    public static boolean isSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int parallelism() {
+        return concurrency;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void start(Runnable wrapped) {
+        if (isShutdown) {
+            throw new RejectedExecutionException("Engine is shut down");
+        }
+        queue.add(wrapped);
+        if (permits.tryAcquire()) {
+            factory.newThread(this::drain).start();
+        }
+    }
+
+    /**
+     * Исполняет задачи из очереди, пока она не опустеет, затем возвращает разрешение. Если после возврата в очереди
+     * появилась задача, а свободное разрешение есть, поток забирает его снова, чтобы задача не осталась без потока
+     */
+    private void drain() {
+        while (true) {
+            Runnable task = queue.poll();
+            if (task != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    new SimpleConsole().println("Crawl task raise exception " + e.getMessage());
+                }
+                continue;
+            }
+            permits.release();
+            if (queue.isEmpty() || !permits.tryAcquire()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Получает фабрику виртуальных потоков (Thread.ofVirtual().factory()) через рефлексию
+     *
+     * @return фабрику или null, если JVM не поддерживает виртуальные потоки
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "jlink-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Фабрика обычных потоков-демонов для JVM без виртуальных потоков
+     *
+     * @return фабрику потоков
+     */
+    private static ThreadFactory platformThreadFactory() {
+        AtomicLong counter = new AtomicLong(0);
+        return (runnable) -> {
+            Thread thread = new Thread(runnable, "jlink-platform-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.pages.PageResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Интерфейс асинхронной работы с веб-страницей: запросы не блокируют вызывающий поток, результат приходит в виде
+ * CompletableFuture. Синхронные методы InternetPage ожидают завершения соответствующего асинхронного запроса.
+ *
+ * @author kotolex
+ * @version 1.1
+ */
+public interface AsyncInternetPage extends InternetPage {
+    /**
+     * Асинхронно запрашивает код состояния веб-страницы
+     * @return future с кодом состояния, при ошибках завершается кодом 0
+     */
+    CompletableFuture<Integer> responseCodeAsync();
+
+    /**
+     * Асинхронно запрашивает доступность веб-страницы, исходя из полученного кода состояния
+     * @return future с true, если возвращен валидный код состояния
+     */
+    CompletableFuture<Boolean> availableAsync();
+
+    /**
+     * Асинхронно запрашивает все содержимое страницы
+     * @return future с содержимым веб-страницы, в случае проблем доступа завершается пустым листом
+     */
+    CompletableFuture<List<String>> contentAsync();
+
+    /**
+     * Асинхронно выполняет один запрос, ответ приходит с уже полученным телом
+     * @return future с ответом страницы, в случае ошибок соединения с ответом с кодом 0
+     */
+    CompletableFuture<PageResponse> fetchAsync();
+}
@@ -0,0 +1,55 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.engines.ForkJoinCrawlEngine;
+import com.kotolex.engines.VirtualThreadCrawlEngine;
+
+/**
+ * Интерфейс движка обхода сайта: исполняет задачи проверки и перехода по ссылкам и позволяет дождаться завершения
+ * всех задач, включая порожденные в процессе работы
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see ForkJoinCrawlEngine
+ * @see VirtualThreadCrawlEngine
+ */
+public interface CrawlEngine {
+    /**
+     * Ставит задачу в очередь на исполнение. Может вызываться как извне, так и из уже исполняемых задач
+     *
+     * @param task - задача для исполнения
+     */
+    void submit(Runnable task);
+
+    /**
+     * Блокирует вызывающий поток (без активного ожидания), пока все поставленные задачи не будут выполнены
+     *
+     * @throws InterruptedException если ожидающий поток был прерван
+     */
+    void awaitQuiescence() throws InterruptedException;
+
+    /**
+     * Возвращает максимальное количество одновременно исполнявшихся задач
+     *
+     * @return максимум одновременно работавших потоков
+     */
+    int maxActiveThreads();
+
+    /**
+     * Возвращает количество поставленных, но еще не завершенных задач
+     *
+     * @return количество незавершенных задач
+     */
+    int pendingTasks();
+
+    /**
+     * Возвращает сколько задач движок исполняет одновременно
+     *
+     * @return количество потоков пула или разрешений
+     */
+    int parallelism();
+
+    /**
+     * Останавливает движок, после вызова новые задачи не принимаются
+     */
+    void shutdown();
+}
@@ -0,0 +1,66 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.services.CsvCrawlWriter;
+import com.kotolex.services.JsonLinesCrawlWriter;
+
+/**
+ * Интерфейс получателя событий проверки сайта. События передаются сразу, по ходу проверки, из потоков движка
+ * обхода или http-клиента, поэтому реализации должны быть потокобезопасны и не задерживать вызывающий поток.
+ * Найденная ссылка сообщается для каждой страницы, на которой она встретилась, так что по событиям можно
+ * восстановить все страницы со сломанной ссылкой, не храня их в памяти
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see JsonLinesCrawlWriter
+ * @see CsvCrawlWriter
+ */
+public interface CrawlListener {
+    /**
+     * Ссылка найдена на странице, вызывается для каждой страницы, в том числе для уже проверенных ссылок
+     *
+     * @param link     - ссылка в каноническом виде
+     * @param referrer - страница, на которой она найдена
+     */
+    default void onLinkFound(String link, String referrer) {
+    }
+
+    /**
+     * Проверка ссылки завершена, вызывается один раз для каждой ссылки
+     *
+     * @param link      - ссылка
+     * @param available - вернула ли ссылка допустимый код состояния
+     */
+    default void onChecked(String link, boolean available) {
+    }
+
+    /**
+     * Ссылка не проверяется, так как ее запрещает robots.txt сайта, вызывается один раз вместо onChecked
+     *
+     * @param link - ссылка
+     */
+    default void onDisallowed(String link) {
+    }
+
+    /**
+     * Все ссылки страницы найдены и поставлены на проверку
+     *
+     * @param url - страница
+     */
+    default void onVisited(String url) {
+    }
+
+    /**
+     * Ссылка оказалась сломанной
+     *
+     * @param link     - сломанная ссылка
+     * @param referrer - страница, с которой ссылка была проверена
+     */
+    default void onBroken(String link, String referrer) {
+    }
+
+    /**
+     * Проверка сайта завершена или прервана
+     */
+    default void onFinished() {
+    }
+}
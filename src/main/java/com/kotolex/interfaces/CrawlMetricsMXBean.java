@@ -0,0 +1,40 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.services.CrawlMetrics;
+
+import java.util.Map;
+
+/**
+ * Интерфейс метрик проверки для JMX: значения можно смотреть в jconsole или VisualVM по ходу проверки
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see CrawlMetrics
+ */
+public interface CrawlMetricsMXBean {
+    long getVisitedPages();
+
+    long getCheckedLinks();
+
+    double getPagesPerSecond();
+
+    double getLinksPerSecond();
+
+    int getInFlightRequests();
+
+    int getFrontierDepth();
+
+    long getWireBytes();
+
+    long getDecodedBytes();
+
+    /**
+     * @return перцентили времен по хостам и фазам запроса, ключ вида "host connect p99", значение в миллисекундах
+     */
+    Map<String, Double> getRequestLatencies();
+
+    /**
+     * @return перцентили времени разбора страницы по парсерам, ключ вида "streaming p99", значение в миллисекундах
+     */
+    Map<String, Double> getParseTimes();
+}
@@ -1,12 +1,15 @@
 package com.kotolex.interfaces;
 
+import com.kotolex.pages.PageResponse;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * Интерфейс работы с веб-страницей, позволяет запросить контент или код состояния веб-страницы
  *
  * @author kotolex
- * @version 1.0
+ * @version 1.2
  */
 public interface InternetPage {
     /**
@@ -23,8 +26,25 @@ public interface InternetPage {
 
     /**
      * Возвращает все содержимое страницы
-     * @return содержимое веб-страницы, в случае проблем доступа возвращает пустой лист
+     * @return содержимое веб-страницы, в случае проблем доступа или ошибочного кода возвращает пустой лист
      */
     List<String> content ();
 
+    /**
+     * Выполняет один запрос и возвращает ответ с кодом состояния, заголовками и лениво читаемым телом.
+     * Ответ нужно закрыть после использования
+     * @return ответ страницы, в случае ошибок соединения ответ с кодом 0
+     */
+    PageResponse fetch();
+
+    /**
+     * Выполняет один запрос с дополнительными заголовками, например условный запрос с If-None-Match.
+     * Реализации, которые не умеют передавать заголовки, выполняют обычный запрос
+     * @param headers - заголовки запроса
+     * @return ответ страницы, в случае ошибок соединения ответ с кодом 0
+     */
+    default PageResponse fetch(Map<String, String> headers) {
+        return fetch();
+    }
+
 }
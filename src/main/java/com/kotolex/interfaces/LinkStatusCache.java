@@ -0,0 +1,49 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.pages.CachedWebPage;
+import com.kotolex.services.TieredLinkStatusCache;
+
+import java.util.OptionalInt;
+
+/**
+ * Интерфейс кэша кодов состояния ссылок. Позволяет не проверять повторно ссылки, код которых уже известен, в том
+ * числе между проверками разных сайтов и между запусками
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see TieredLinkStatusCache
+ * @see CachedWebPage
+ */
+public interface LinkStatusCache {
+    /**
+     * Возвращает сохраненный код состояния ссылки
+     * @param link - ссылка
+     * @return код состояния, пустой если ссылки нет в кэше или срок хранения истек
+     */
+    OptionalInt status(String link);
+
+    /**
+     * Сохраняет код состояния ссылки
+     * @param link   - ссылка
+     * @param status - код состояния, 0 при ошибках соединения. Такой код временный, кэш не должен его хранить
+     */
+    void put(String link, int status);
+
+    /**
+     * Возвращает количество запросов, на которые ответ нашелся в кэше
+     * @return попадания в кэш
+     */
+    long hits();
+
+    /**
+     * Возвращает количество запросов, на которые ответа в кэше не было
+     * @return промахи кэша
+     */
+    long misses();
+
+    /**
+     * Сохраняет кэш на диск, если он это поддерживает. Вызывается после завершения проверки
+     */
+    default void save() {
+    }
+}
@@ -0,0 +1,31 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.pages.PooledWebPage;
+import com.kotolex.pages.WebPage;
+
+/**
+ * Интерфейс создания веб-страниц, позволяет выбрать реализацию InternetPage, через которую идут запросы при проверке
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see WebPage
+ * @see PooledWebPage
+ */
+public interface PageFactory {
+    /**
+     * Возвращает веб-страницу для указанной ссылки, запросы к которой идут методом GET
+     * @param link - адрес страницы
+     * @return страница для запросов кода состояния и содержимого
+     */
+    default InternetPage page(String link) {
+        return page(link, "GET");
+    }
+
+    /**
+     * Возвращает веб-страницу для указанной ссылки и метода запроса
+     * @param link   - адрес страницы
+     * @param method - метод запроса, GET или HEAD
+     * @return страница для запросов кода состояния и содержимого
+     */
+    InternetPage page(String link, String method);
+}
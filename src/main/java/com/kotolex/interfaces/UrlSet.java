@@ -0,0 +1,42 @@
+package com.kotolex.interfaces;
+
+import com.kotolex.services.ConcurrentUrlSet;
+import com.kotolex.services.FingerprintUrlSet;
+
+import java.util.List;
+
+/**
+ * Потокобезопасное множество ссылок для исключения повторных проверок и переходов. Главная операция - атомарный
+ * захват ссылки: из нескольких потоков, одновременно захватывающих одну ссылку, успех получит только один
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see ConcurrentUrlSet
+ * @see FingerprintUrlSet
+ */
+public interface UrlSet {
+    /**
+     * Атомарно добавляет ссылку, если ее еще нет
+     * @param url - ссылка
+     * @return true, если ссылка добавлена этим вызовом, false если она уже была в множестве
+     */
+    boolean claim(String url);
+
+    /**
+     * Возвращает содержится ли ссылка в множестве
+     * @param url - ссылка
+     * @return true, если ссылка уже добавлена
+     */
+    boolean contains(String url);
+
+    int size();
+
+    void clear();
+
+    /**
+     * Возвращает все ссылки множества
+     * @return лист ссылок
+     * @throws UnsupportedOperationException если множество не хранит сами ссылки
+     */
+    List<String> urls();
+}
@@ -0,0 +1,97 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.AsyncInternetPage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный класс-декоратор для использования с редиректами, аналог RedirectWebPage.
+ * Ссылка, возвращающая 3хх коды, считается рабочей
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see RedirectWebPage
+ * @see AsyncWebPage
+ */
+public class AsyncRedirectWebPage implements AsyncInternetPage {
+    private final AsyncInternetPage webPage;
+
+    public AsyncRedirectWebPage(AsyncInternetPage webPage) {
+        this.webPage = webPage;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Integer> responseCodeAsync() {
+        return webPage.responseCodeAsync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> availableAsync() {
+        return responseCodeAsync().thenApply((code) -> code == 200 || isInRedirectionCodesRange(code));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<String>> contentAsync() {
+        return webPage.contentAsync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PageResponse> fetchAsync() {
+        return webPage.fetchAsync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        return responseCodeAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return availableAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        return contentAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetchAsync().join();
+    }
+
+    /**
+     * Проверяет, относится ли код к кодам редиректа
+     *
+     * @param code - код ответа веб-страницы
+     * @return true, если код имеет тип 3хх
+     */
+    private boolean isInRedirectionCodesRange(int code) {
+        return code >= 300 && code <= 307;
+    }
+}
@@ -0,0 +1,304 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.AsyncInternetPage;
+import com.kotolex.services.SimpleConsole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+/**
+ * Асинхронный вариант WebPage на основе неблокирующего java.net.http.HttpClient. Ожидание ответа не занимает потоков,
+ * поэтому небольшое количество потоков клиента обслуживает тысячи одновременных запросов.
+ * Рабочей (available) ссылкой считается только та, что возвращает код 200.
+ * Запросы ограничены таймаутами, по их истечении возвращается код 0. Тело загружается, только если по заголовкам
+ * это html, и не больше заданного предела, иначе загрузка обрывается сразу после заголовков
+ *
+ * @author kotolex
+ * @version 1.3
+ * @see WebPage
+ */
+public final class AsyncWebPage implements AsyncInternetPage {
+    /**
+     * Общий для всех страниц клиент по умолчанию, потоки нужны ему только для обработки уже полученных ответов
+     */
+    private static final HttpClient DEFAULT_CLIENT = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Timeouts.DEFAULT.connect())
+            .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), (runnable) -> {
+                Thread thread = new Thread(runnable, "jlink-async-http");
+                thread.setDaemon(true);
+                return thread;
+            }))
+            .build();
+    /**
+     * Тело не больше этого размера при проверке кода дочитывается, чтобы соединение осталось открытым для следующих
+     * запросов, тело большего или неизвестного размера не загружается
+     */
+    private static final long REUSE_LIMIT = 64 * 1024;
+    private final String link;
+    private final HttpClient client;
+    private final Timeouts timeouts;
+    /**
+     * Предел загружаемого тела в байтах
+     */
+    private final long bodyLimit;
+    /**
+     * Код состояния доступности страницы
+     */
+    private final int success = 200;
+
+    /**
+     * Необходимо для более корретной проверки ссылок, иначе возвращает не 200 в некоторых случаях
+     */
+    private final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/62.0.3202.94 Safari/537.36";
+
+    /**
+     * Конструктор с общим клиентом по умолчанию
+     *
+     * @param link - адрес страницы
+     */
+    public AsyncWebPage(String link) {
+        this(link, DEFAULT_CLIENT);
+    }
+
+    /**
+     * Конструктор с общим клиентом по умолчанию и указанием предела тела
+     *
+     * @param link      - адрес страницы
+     * @param bodyLimit - сколько байт тела html-страницы загружать
+     */
+    public AsyncWebPage(String link, long bodyLimit) {
+        this(link, DEFAULT_CLIENT, Timeouts.DEFAULT, bodyLimit);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param link   - адрес страницы
+     * @param client - http-клиент, через который идут запросы
+     */
+    public AsyncWebPage(String link, HttpClient client) {
+        this(link, client, Timeouts.DEFAULT);
+    }
+
+    /**
+     * Конструктор с указанием таймаутов. Таймаут соединения задается при создании клиента, здесь таймаут чтения
+     * ограничивает ожидание ответа целиком
+     *
+     * @param link     - адрес страницы
+     * @param client   - http-клиент, через который идут запросы
+     * @param timeouts - таймауты запроса
+     */
+    public AsyncWebPage(String link, HttpClient client, Timeouts timeouts) {
+        this(link, client, timeouts, PageResponse.DEFAULT_BODY_LIMIT);
+    }
+
+    /**
+     * Конструктор с указанием таймаутов и предела тела
+     *
+     * @param link      - адрес страницы
+     * @param client    - http-клиент, через который идут запросы
+     * @param timeouts  - таймауты запроса
+     * @param bodyLimit - сколько байт тела html-страницы загружать
+     */
+    public AsyncWebPage(String link, HttpClient client, Timeouts timeouts, long bodyLimit) {
+        this.link = link;
+        this.client = client;
+        this.timeouts = timeouts;
+        this.bodyLimit = bodyLimit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Integer> responseCodeAsync() {
+        try {
+            return client.sendAsync(request(), (info) -> isSmall(info)
+                    ? HttpResponse.BodySubscribers.replacing(new byte[0]) : new CappedBodySubscriber(0))
+                    .thenApply(HttpResponse::statusCode)
+                    .exceptionally((e) -> {
+                        printException(e);
+                        return 0;
+                    });
+        } catch (IllegalArgumentException e) {
+            printException(e);
+            return CompletableFuture.completedFuture(0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> availableAsync() {
+        return responseCodeAsync().thenApply((code) -> code == success);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<String>> contentAsync() {
+        return fetchAsync().thenApply((response) -> response.isSuccessful() ? response.content() : new ArrayList<>());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PageResponse> fetchAsync() {
+        try {
+            return client.sendAsync(request(), (info) -> new CappedBodySubscriber(
+                    PageResponse.isHtmlType(info.headers().firstValue("Content-Type").orElse(null)) ? bodyLimit : 0))
+                    .thenApply((response) -> new PageResponse(link, response.statusCode(), response.headers().map(),
+                            () -> new ByteArrayInputStream(response.body()), () -> {
+                    }))
+                    .exceptionally((e) -> {
+                        printException(e);
+                        return PageResponse.failed(link, e);
+                    });
+        } catch (IllegalArgumentException e) {
+            printException(e);
+            return CompletableFuture.completedFuture(PageResponse.invalid(link));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        return responseCodeAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return availableAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        return contentAsync().join();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetchAsync().join();
+    }
+
+    /**
+     * Формирует GET-запрос к странице
+     *
+     * @return запрос
+     * @throws IllegalArgumentException если ссылка не является корректным адресом
+     */
+    private HttpRequest request() {
+        return HttpRequest.newBuilder(URI.create(link))
+                .GET()
+                .timeout(timeouts.read())
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", PageResponse.ACCEPT_ENCODING)
+                .build();
+    }
+
+    /**
+     * Возвращает известен ли размер тела ответа и мал ли он
+     *
+     * @param info - статус и заголовки ответа
+     * @return true, если тело можно дочитать без заметных затрат
+     */
+    private boolean isSmall(HttpResponse.ResponseInfo info) {
+        long length = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return length >= 0 && length <= REUSE_LIMIT;
+    }
+
+    /**
+     * Получатель тела, который собирает не больше limit байт и затем отменяет загрузку, что закрывает соединение.
+     * С пределом 0 загрузка отменяется сразу после заголовков
+     */
+    private static final class CappedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final long limit;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+
+        private CappedBodySubscriber(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (limit <= 0) {
+                subscription.cancel();
+                result.complete(new byte[0]);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                int length = (int) Math.min(item.remaining(), limit - buffer.size());
+                byte[] bytes = new byte[length];
+                item.get(bytes);
+                buffer.write(bytes, 0, length);
+            }
+            if (buffer.size() >= limit) {
+                subscription.cancel();
+                result.complete(buffer.toByteArray());
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(buffer.toByteArray());
+        }
+    }
+
+    /**
+     * Печатает исключение в консоль в общем виде
+     * @param ex - исключение
+     * @see SimpleConsole
+     */
+    private void printException(Throwable ex) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        new SimpleConsole().println(link + " raise exception " + cause.getMessage());
+    }
+}
@@ -0,0 +1,82 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.interfaces.LinkStatusCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Класс-декоратор, берущий код состояния ссылки из кэша и запрашивающий страницу только при промахе.
+ * Содержимое и ответы fetch не кэшируются. Обычно используется под RedirectWebPage, чтобы редиректы
+ * из кэша тоже считались рабочими
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see LinkStatusCache
+ */
+public final class CachedWebPage implements InternetPage {
+    private final String link;
+    private final InternetPage webPage;
+    private final LinkStatusCache cache;
+
+    /**
+     * Конструктор
+     *
+     * @param link    - адрес страницы, ключ кэша
+     * @param webPage - страница, которая запрашивается при промахе
+     * @param cache   - кэш кодов состояния
+     */
+    public CachedWebPage(String link, InternetPage webPage, LinkStatusCache cache) {
+        this.link = link;
+        this.webPage = webPage;
+        this.cache = cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        OptionalInt cached = cache.status(link);
+        if (cached.isPresent()) {
+            return cached.getAsInt();
+        }
+        int code = webPage.responseCode();
+        cache.put(link, code);
+        return code;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == 200;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        return webPage.content();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return webPage.fetch();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        return webPage.fetch(headers);
+    }
+}
@@ -0,0 +1,127 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.services.CrawlMetrics;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс-декоратор, измеряющий фазы запроса для CrawlMetrics. Адрес хоста определяется заранее и это время
+ * учитывается как DNS: JVM кэширует результат, поэтому сама страница затем получает адрес из кэша.
+ * Время соединения известно, только если его измерила страница (WebPage), остальное время до заголовков
+ * ответа учитывается как TTFB, время от заголовков до закрытия ответа - как получение тела.
+ * Неудавшиеся запросы (код 0) в гистограммы не попадают
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see CrawlMetrics
+ */
+public final class MeteredWebPage implements InternetPage {
+    private final String link;
+    private final InternetPage webPage;
+    private final CrawlMetrics metrics;
+
+    /**
+     * Конструктор
+     *
+     * @param link    - адрес страницы
+     * @param webPage - страница, через которую идут запросы
+     * @param metrics - метрики проверки
+     */
+    public MeteredWebPage(String link, InternetPage webPage, CrawlMetrics metrics) {
+        this.link = link;
+        this.webPage = webPage;
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        try (PageResponse response = fetch()) {
+            return response.status();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == 200;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        try (PageResponse response = fetch()) {
+            return response.isSuccessful() ? response.content() : Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetch(Collections.emptyMap());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        resolveHost();
+        metrics.requestStarted();
+        long start = System.nanoTime();
+        PageResponse response;
+        try {
+            response = webPage.fetch(headers);
+        } catch (RuntimeException e) {
+            metrics.requestFinished();
+            throw e;
+        }
+        long headersReceived = System.nanoTime();
+        boolean succeeded = response.status() > 0;
+        if (succeeded) {
+            long connect = response.connectNanos();
+            if (connect >= 0) {
+                metrics.recordRequest(link, CrawlMetrics.Phase.CONNECT, connect);
+            }
+            metrics.recordRequest(link, CrawlMetrics.Phase.TTFB, headersReceived - start - Math.max(0, connect));
+        }
+        response.onClose(() -> {
+            if (succeeded) {
+                metrics.recordRequest(link, CrawlMetrics.Phase.BODY, System.nanoTime() - headersReceived);
+            }
+            metrics.requestFinished();
+        });
+        return response;
+    }
+
+    /**
+     * Определяет адрес хоста и учитывает затраченное время, ошибки оставляются самой странице
+     */
+    private void resolveHost() {
+        long start = System.nanoTime();
+        try {
+            String host = URI.create(link).getHost();
+            if (host == null) {
+                return;
+            }
+            InetAddress.getAllByName(host);
+            metrics.recordRequest(link, CrawlMetrics.Phase.DNS, System.nanoTime() - start);
+        } catch (IllegalArgumentException | UnknownHostException e) {
+            // страница сама сообщит об ошибке при запросе
+        }
+    }
+}
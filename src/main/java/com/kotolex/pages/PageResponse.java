@@ -0,0 +1,538 @@
+package com.kotolex.pages;
+
+import com.kotolex.services.SimpleConsole;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.net.UnknownServiceException;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Результат одного запроса к веб-странице: код состояния, заголовки и тело, которое читается лениво, только при
+ * первом обращении к content(). Позволяет одним запросом и проверить ссылку, и получить содержимое для парсинга.
+ * Ответ держит соединение, поэтому его нужно закрыть. Тело читается не дальше заданного предела, остаток не
+ * загружается: закрытие ответа обрывает соединение. Сжатое тело (Content-Encoding gzip или deflate) распаковывается
+ * потоково, предел относится к распакованным байтам. Ответ считает байты, пришедшие по сети, и распакованные байты.
+ * Закрытие ответа сразу освобождает память распаковщика, не дожидаясь сборки мусора.
+ *
+ * @author kotolex
+ * @version 1.7
+ * @see com.kotolex.interfaces.InternetPage#fetch()
+ */
+public final class PageResponse implements Closeable {
+    /**
+     * Предел тела ответа в байтах по умолчанию, дальше тело не читается
+     */
+    public static final long DEFAULT_BODY_LIMIT = 10 * 1024 * 1024;
+    /**
+     * Значение заголовка Accept-Encoding для запросов: поддерживаемые способы сжатия
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    private final String link;
+    private final int status;
+    /**
+     * Заголовки ответа, имена без учета регистра
+     */
+    private final Map<String, List<String>> headers;
+    /**
+     * Открывает поток тела ответа, вызывается не более одного раза
+     */
+    private final Callable<InputStream> body;
+    /**
+     * Освобождает соединение
+     */
+    private final Closeable connection;
+    private List<String> content;
+    /**
+     * Было ли уже открыто тело ответа
+     */
+    private boolean isOpened = false;
+    /**
+     * Счетчики байт тела до и после распаковки, null пока тело не открыто
+     */
+    private CountingInputStream wire;
+    private CountingInputStream decoded;
+    /**
+     * Время установки соединения в наносекундах, -1 если страница его не измеряла или соединение было готовым
+     */
+    private long connectNanos = -1;
+    /**
+     * Действие после закрытия ответа, например учет времени получения тела
+     */
+    private Runnable closeAction;
+
+    /**
+     * Конструктор
+     *
+     * @param link       - адрес страницы
+     * @param status     - код состояния
+     * @param headers    - заголовки ответа
+     * @param body       - открывает поток тела ответа
+     * @param connection - освобождает соединение при закрытии ответа
+     */
+    public PageResponse(String link, int status, Map<String, List<String>> headers, Callable<InputStream> body,
+                        Closeable connection) {
+        this.link = link;
+        this.status = status;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            if (name != null) {
+                this.headers.put(name, values);
+            }
+        });
+        this.body = body;
+        this.connection = connection;
+    }
+
+    /**
+     * Код ответа для ссылки, которую нельзя запросить: неверный адрес, неизвестный протокол или хост, ошибка
+     * сертификата. В отличие от кода 0 это не временная ошибка, такой запрос не повторяется
+     */
+    public static final int INVALID_LINK = -1;
+
+    /**
+     * Возвращает ответ для ссылки, которую нельзя запросить, с кодом INVALID_LINK и без тела
+     *
+     * @param link - адрес страницы
+     * @return пустой ответ
+     */
+    public static PageResponse invalid(String link) {
+        return new PageResponse(link, INVALID_LINK, Collections.emptyMap(), () -> null, () -> {
+        });
+    }
+
+    /**
+     * Возвращает ответ для запроса, завершившегося исключением: для неверной ссылки - с кодом INVALID_LINK, для
+     * сетевых ошибок и таймаутов - с кодом 0
+     *
+     * @param link  - адрес страницы
+     * @param cause - исключение запроса
+     * @return пустой ответ
+     */
+    public static PageResponse failed(String link, Throwable cause) {
+        return isInvalidLink(cause) ? invalid(link) : failed(link);
+    }
+
+    /**
+     * Возвращает ответ для неудавшегося запроса, с кодом 0 и без тела
+     *
+     * @param link - адрес страницы
+     * @return пустой ответ
+     */
+    public static PageResponse failed(String link) {
+        return new PageResponse(link, 0, Collections.emptyMap(), () -> null, () -> {
+        });
+    }
+
+    /**
+     * Возвращает вызвано ли исключение самой ссылкой, а не сетью: такая ошибка повторится при любом повторе.
+     * Исключения клиентов часто обернуты, поэтому проверяется вся цепочка причин
+     *
+     * @param cause - исключение запроса
+     * @return true для неверного адреса, неизвестного протокола или хоста и ошибки сертификата
+     */
+    private static boolean isInvalidLink(Throwable cause) {
+        for (Throwable e = cause; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof MalformedURLException || e instanceof URISyntaxException
+                    || e instanceof IllegalArgumentException || e instanceof ClassCastException
+                    || e instanceof UnknownServiceException || e instanceof UnknownHostException
+                    || e instanceof UnresolvedAddressException || e instanceof SSLHandshakeException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает код состояния
+     * @return код состояния, при ошибках 0
+     */
+    public int status() {
+        return status;
+    }
+
+    /**
+     * Возвращает является ли код ответа успешным или редиректом
+     * @return true для кодов 2хх и 3хх
+     */
+    public boolean isSuccessful() {
+        return status >= 200 && status < 400;
+    }
+
+    /**
+     * Возвращает первое значение заголовка
+     *
+     * @param name - имя заголовка, без учета регистра
+     * @return значение заголовка, если он есть в ответе
+     */
+    public Optional<String> header(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.ofNullable(values.get(0));
+    }
+
+    /**
+     * Возвращает является ли содержимое html-страницей. Ответ без заголовка Content-Type считается html
+     * @return true, если ответ можно парсить на ссылки
+     */
+    public boolean isHtml() {
+        return isHtmlType(header("Content-Type").orElse(null));
+    }
+
+    /**
+     * Возвращает является ли тип содержимого html
+     * @param contentType - значение заголовка Content-Type, null если заголовка нет
+     * @return true для html и для ответа без заголовка
+     */
+    static boolean isHtmlType(String contentType) {
+        return contentType == null || contentType.toLowerCase(Locale.ROOT).contains("html");
+    }
+
+    /**
+     * Возвращает содержимое страницы, разбитое по пробельным символам. Тело читается при первом вызове
+     * @return содержимое веб-страницы, в случае проблем чтения возвращает пустой лист
+     */
+    public synchronized List<String> content() {
+        if (content != null) {
+            return content;
+        }
+        content = new LinkedList<>();
+        if (isOpened) {
+            return content;
+        }
+        isOpened = true;
+        try {
+            InputStream stream = open(DEFAULT_BODY_LIMIT);
+            if (stream != null) {
+                Scanner scanner = new Scanner(stream);
+                while (scanner.hasNext()) {
+                    content.add(scanner.next());
+                }
+                scanner.close();
+            }
+        } catch (Exception e) {
+            new SimpleConsole().println(link + " raise exception " + e.getMessage());
+        }
+        return content;
+    }
+
+    /**
+     * Возвращает тело ответа как поток символов для потокового разбора, без разбиения на токены. Кодировка берется
+     * из заголовка Content-Type, по умолчанию UTF-8. Тело читается только один раз, поэтому reader() и content()
+     * взаимоисключающие: повторное обращение вернет пустой поток. Читается не больше DEFAULT_BODY_LIMIT байт
+     * @return поток символов тела ответа
+     */
+    public Reader reader() {
+        return reader(DEFAULT_BODY_LIMIT);
+    }
+
+    /**
+     * Возвращает тело ответа как поток символов, обрезанный после maxBytes байт, чтобы огромный ответ не занимал
+     * поток и память
+     * @param maxBytes - максимальный размер тела в байтах
+     * @return поток символов тела ответа
+     */
+    public synchronized Reader reader(long maxBytes) {
+        if (isOpened) {
+            return new StringReader("");
+        }
+        isOpened = true;
+        try {
+            InputStream stream = open(maxBytes);
+            if (stream != null) {
+                return new InputStreamReader(stream, charset());
+            }
+        } catch (Exception e) {
+            new SimpleConsole().println(link + " raise exception " + e.getMessage());
+        }
+        return new StringReader("");
+    }
+
+    /**
+     * Возвращает тело ответа как поток байт, уже распакованный по Content-Encoding, для разбора не-html содержимого,
+     * например xml или файлов .gz. Как и reader(), тело читается только один раз
+     * @param maxBytes - максимальный размер тела в байтах
+     * @return поток байт тела ответа, пустой в случае проблем чтения
+     */
+    public synchronized InputStream stream(long maxBytes) {
+        if (isOpened) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        isOpened = true;
+        try {
+            InputStream stream = open(maxBytes);
+            if (stream != null) {
+                return stream;
+            }
+        } catch (Exception e) {
+            new SimpleConsole().println(link + " raise exception " + e.getMessage());
+        }
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    /**
+     * Ограничивает поток: после заданного количества байт он сообщает о конце данных. Нужен, например, чтобы
+     * ограничить размер файла .gz после распаковки, а не только до нее
+     * @param stream   - исходный поток
+     * @param maxBytes - сколько байт можно прочитать
+     * @return ограниченный поток
+     */
+    public static InputStream limit(InputStream stream, long maxBytes) {
+        return new LimitedInputStream(stream, maxBytes);
+    }
+
+    /**
+     * Возвращает сколько байт тела пришло по сети, то есть до распаковки
+     * @return количество прочитанных байт, 0 если тело не читалось
+     */
+    public synchronized long wireBytes() {
+        return wire == null ? 0 : wire.count;
+    }
+
+    /**
+     * Возвращает сколько байт тела получено после распаковки
+     * @return количество распакованных байт, 0 если тело не читалось
+     */
+    public synchronized long decodedBytes() {
+        return decoded == null ? 0 : decoded.count;
+    }
+
+    /**
+     * Открывает тело ответа: считает байты из сети, распаковывает по Content-Encoding, считает распакованные
+     * байты и ограничивает их количество
+     * @param maxBytes - максимальный размер распакованного тела
+     * @return поток тела или null, если тела нет
+     * @throws Exception при ошибках открытия потока или неверном формате сжатия
+     */
+    private InputStream open(long maxBytes) throws Exception {
+        InputStream stream = body.call();
+        if (stream == null) {
+            return null;
+        }
+        wire = new CountingInputStream(stream);
+        decoded = new CountingInputStream(decode(new FilterInputStream(wire) {
+            @Override
+            public void close() {
+                // соединение освобождает connection, закрытие распаковщика только освобождает его память
+            }
+        }));
+        return new LimitedInputStream(decoded, maxBytes);
+    }
+
+    /**
+     * Распаковывает тело по заголовку Content-Encoding. Для deflate поддерживается и формат zlib, и "голый" deflate,
+     * который отдают некоторые серверы
+     * @param stream - тело из сети
+     * @return распакованный поток, или тот же поток для несжатого тела
+     * @throws IOException при неверном формате gzip
+     */
+    private InputStream decode(InputStream stream) throws IOException {
+        String encoding = header("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return new GZIPInputStream(stream, 8192);
+        }
+        if (encoding.equals("deflate")) {
+            PushbackInputStream pushback = new PushbackInputStream(stream, 2);
+            byte[] head = new byte[2];
+            int read = pushback.read(head);
+            if (read > 0) {
+                pushback.unread(head, 0, read);
+            }
+            boolean zlib = read == 2 && (head[0] & 0x0F) == 8 && (((head[0] & 0xFF) << 8) | (head[1] & 0xFF)) % 31 == 0;
+            Inflater inflater = new Inflater(!zlib);
+            return new InflaterInputStream(pushback, inflater, 8192) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+        return stream;
+    }
+
+    /**
+     * Определяет кодировку тела по параметру charset заголовка Content-Type
+     * @return кодировка ответа или UTF-8, если она не указана или не поддерживается
+     */
+    private Charset charset() {
+        String type = header("Content-Type").orElse("");
+        int index = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        String name = type.substring(index + "charset=".length()).split(";")[0].replace("\"", "").trim();
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Поток, считающий прочитанные байты
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Поток, который после заданного количества байт сообщает о конце данных
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int result = super.read();
+            if (result >= 0) {
+                remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int result = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (result > 0) {
+                remaining -= result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
+    /**
+     * @return время установки соединения в наносекундах, -1 если оно неизвестно
+     */
+    public long connectNanos() {
+        return connectNanos;
+    }
+
+    void setConnectNanos(long connectNanos) {
+        this.connectNanos = connectNanos;
+    }
+
+    /**
+     * Добавляет действие, выполняемое после закрытия ответа. Действия выполняются в порядке добавления, поэтому
+     * действие внутреннего декоратора выполняется раньше действия внешнего
+     *
+     * @param closeAction - действие
+     */
+    synchronized void onClose(Runnable closeAction) {
+        Runnable previous = this.closeAction;
+        this.closeAction = previous == null ? closeAction : () -> {
+            previous.run();
+            closeAction.run();
+        };
+    }
+
+    /**
+     * Закрывает распаковщик тела, если тело открывалось, и освобождает соединение, ошибки закрытия игнорируются
+     */
+    @Override
+    public void close() {
+        CountingInputStream stream;
+        synchronized (this) {
+            stream = decoded;
+        }
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                new SimpleConsole().println(link + " raise exception " + e.getMessage());
+            }
+        }
+        try {
+            connection.close();
+        } catch (Exception e) {
+            new SimpleConsole().println(link + " raise exception " + e.getMessage());
+        }
+        Runnable action;
+        synchronized (this) {
+            action = closeAction;
+            closeAction = null;
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.services.HostScheduler;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Класс-декоратор, отправляющий запросы через HostScheduler: не больше допустимого числа одновременных запросов
+ * к хосту и не чаще допустимой частоты. На ответы 429 и 503 запрос повторяется после паузы из заголовка
+ * Retry-After (или экспоненциальной паузы, если заголовка нет), чтобы перегруженный сервер не давал ложных
+ * сломанных ссылок. Место в планировщике освобождается при закрытии ответа, а не после получения заголовков, поэтому
+ * загрузка тела тоже входит и в ограничение одновременных запросов к хосту, и во время ответа для подстройки
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see HostScheduler
+ */
+public final class PoliteWebPage implements InternetPage {
+    /**
+     * Сколько раз повторять запрос после ответа 429 или 503
+     */
+    private static final int RETRIES = 3;
+    /**
+     * Пауза перед первым повтором, если сервер не прислал Retry-After
+     */
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(1);
+    /**
+     * Максимальная пауза, более долгий Retry-After сокращается до нее
+     */
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    private final String link;
+    private final InternetPage webPage;
+    private final HostScheduler scheduler;
+
+    /**
+     * Конструктор
+     *
+     * @param link      - адрес страницы
+     * @param webPage   - страница, через которую идут запросы
+     * @param scheduler - планировщик запросов к хостам
+     */
+    public PoliteWebPage(String link, InternetPage webPage, HostScheduler scheduler) {
+        this.link = link;
+        this.webPage = webPage;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        try (PageResponse response = fetch()) {
+            return response.status();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == 200;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        try (PageResponse response = fetch()) {
+            return response.isSuccessful() ? response.content() : Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetch(Collections.emptyMap());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                scheduler.acquire(link);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return PageResponse.failed(link);
+            }
+            long start = System.nanoTime();
+            PageResponse response;
+            try {
+                response = webPage.fetch(headers);
+            } catch (RuntimeException e) {
+                scheduler.release(link, 0, System.nanoTime() - start);
+                throw e;
+            }
+            int status = response.status();
+            response.onClose(() -> scheduler.release(link, status, System.nanoTime() - start));
+            if (!HostScheduler.isThrottled(status) || attempt == RETRIES) {
+                return response;
+            }
+            Duration delay = retryAfter(response).orElse(INITIAL_BACKOFF.multipliedBy(1L << attempt));
+            response.close();
+            scheduler.backOff(link, delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay);
+        }
+    }
+
+    /**
+     * Разбирает заголовок Retry-After, заданный в секундах или датой
+     *
+     * @param response - ответ 429 или 503
+     * @return пауза до повтора, если заголовок есть и корректен
+     */
+    private Optional<Duration> retryAfter(PageResponse response) {
+        Optional<String> header = response.header("Retry-After").map(String::trim);
+        if (!header.isPresent()) {
+            return Optional.empty();
+        }
+        String value = header.get();
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+            } catch (DateTimeParseException ex) {
+                return Optional.empty();
+            }
+        }
+    }
+}
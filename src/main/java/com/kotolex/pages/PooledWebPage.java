@@ -0,0 +1,205 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.services.HttpConnectionPool;
+import com.kotolex.services.SimpleConsole;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Вариант WebPage, работающий через общий пул постоянных соединений. После запроса соединение возвращается в пул и
+ * используется для следующих ссылок того же хоста. Если все соединения хоста заняты дольше таймаута ожидания пула,
+ * запрос ждет снова: нехватка соединений не делает ссылку сломанной.
+ * Рабочей (available) ссылкой считается только та, что возвращает код 200
+ *
+ * @author kotolex
+ * @version 1.4
+ * @see HttpConnectionPool
+ * @see WebPage
+ */
+public final class PooledWebPage implements InternetPage {
+    /**
+     * Общий для всех страниц пул по умолчанию
+     */
+    private static final HttpConnectionPool DEFAULT_POOL = new HttpConnectionPool();
+    /**
+     * Максимальный размер тела в байтах, которое дочитывается при проверке кода, чтобы вернуть соединение в пул.
+     * Соединения с телом большего или неизвестного размера закрываются, чтобы не качать его целиком
+     */
+    private static final long REUSE_LIMIT = 64 * 1024;
+    private final String link;
+    /**
+     * Метод запроса, GET или HEAD
+     */
+    private final String method;
+    private final HttpConnectionPool pool;
+    /**
+     * Код состояния доступности страницы
+     */
+    private final int success = 200;
+
+    /**
+     * Необходимо для более корретной проверки ссылок, иначе возвращает не 200 в некоторых случаях
+     */
+    private final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/62.0.3202.94 Safari/537.36";
+
+    /**
+     * Конструктор с общим пулом по умолчанию
+     *
+     * @param link - адрес страницы
+     */
+    public PooledWebPage(String link) {
+        this(link, "GET");
+    }
+
+    /**
+     * Конструктор с общим пулом по умолчанию и указанием метода запроса
+     *
+     * @param link   - адрес страницы
+     * @param method - метод запроса, например HEAD для проверки кода без загрузки тела
+     */
+    public PooledWebPage(String link, String method) {
+        this(link, method, DEFAULT_POOL);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param link   - адрес страницы
+     * @param method - метод запроса
+     * @param pool   - пул соединений, через который идут запросы
+     */
+    public PooledWebPage(String link, String method, HttpConnectionPool pool) {
+        this.link = link;
+        this.method = method;
+        this.pool = pool;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        try (PageResponse response = fetch()) {
+            return response.status();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == success;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        try (PageResponse response = fetch()) {
+            return response.isSuccessful() ? response.content() : new LinkedList<>();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetch(Collections.emptyMap());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        while (true) {
+            try {
+                CloseableHttpResponse response = pool.client().execute(request(headers));
+                HttpEntity entity = response.getEntity();
+                return new PageResponse(link, response.getStatusLine().getStatusCode(), headers(response),
+                        () -> entity == null ? null : entity.getContent(), () -> release(response));
+            } catch (ConnectionPoolTimeoutException e) {
+                new SimpleConsole().println(link + " is still waiting for a free pooled connection");
+            } catch (ClientProtocolException e) {
+                printException(e);
+                return PageResponse.invalid(link);
+            } catch (IOException | IllegalArgumentException e) {
+                printException(e);
+                return PageResponse.failed(link, e);
+            }
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул. Непрочитанное тело дочитывается, только если оно небольшое, иначе соединение
+     * закрывается, чтобы не качать его целиком
+     *
+     * @param response - ответ, держащий соединение
+     * @throws IOException при ошибках закрытия
+     */
+    private void release(CloseableHttpResponse response) throws IOException {
+        try {
+            HttpEntity entity = response.getEntity();
+            if (entity != null && entity.getContentLength() >= 0 && entity.getContentLength() <= REUSE_LIMIT) {
+                EntityUtils.consume(entity);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Собирает заголовки ответа в карту
+     *
+     * @param response - ответ
+     * @return карта имя заголовка - значения
+     */
+    private Map<String, List<String>> headers(CloseableHttpResponse response) {
+        Map<String, List<String>> headers = new HashMap<>();
+        for (Header header : response.getAllHeaders()) {
+            headers.computeIfAbsent(header.getName(), (n) -> new ArrayList<>()).add(header.getValue());
+        }
+        return headers;
+    }
+
+    /**
+     * Формирует запрос к странице
+     *
+     * @param headers - дополнительные заголовки запроса
+     * @return запрос
+     * @throws IllegalArgumentException если ссылка не является корректным адресом
+     */
+    private HttpUriRequest request(Map<String, String> headers) {
+        RequestBuilder builder = RequestBuilder.create(method).setUri(link).setHeader("user-agent", USER_AGENT)
+                .setHeader("accept-encoding", PageResponse.ACCEPT_ENCODING);
+        headers.forEach(builder::setHeader);
+        return builder.build();
+    }
+
+    /**
+     * Печатает исключение в консоль в общем виде
+     * @param ex - исключение
+     * @see SimpleConsole
+     */
+    private void printException(Exception ex) {
+        new SimpleConsole().println(link + " raise exception " + ex.getMessage());
+    }
+}
@@ -0,0 +1,156 @@
+package com.kotolex.pages;
+
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Настройка способа проверки ссылок в зависимости от типа содержимого. Тип определяется по расширению в адресе
+ * ссылки (адрес без расширения считается text/html). Стратегия ищется сначала по точному типу (image/png), затем
+ * по его основной части (image/*), иначе используется стратегия по умолчанию.
+ * Политика запоминает хосты, которые не поддерживают HEAD, и для них сразу использует GET. Ответ на HEAD
+ * перепроверяется через GET только для кодов, которыми серверы часто отвечают именно на HEAD (по умолчанию 400, 403,
+ * 405 и 501). Ошибки соединения и таймауты (код 0), 404 и ошибки сервера не перепроверяются: GET к зависшему
+ * серверу только еще раз прождал бы таймаут.
+ *
+ * @author kotolex
+ * @version 1.2
+ * @see ProbingWebPage
+ */
+public final class ProbePolicy {
+    private final ProbeStrategy defaultStrategy;
+    private final Map<String, ProbeStrategy> strategies = new ConcurrentHashMap<>();
+    /**
+     * Хосты, ответившие 405 или 501 на запрос HEAD
+     */
+    private final Set<String> headUnsupported = ConcurrentHashMap.newKeySet();
+    /**
+     * Коды ответа на HEAD, после которых ссылка перепроверяется через GET
+     */
+    private volatile int[] fallbackCodes = {400, 403, 405, 501};
+
+    /**
+     * Конструктор, по умолчанию все ссылки проверяются сначала через HEAD
+     */
+    public ProbePolicy() {
+        this(ProbeStrategy.HEAD_FIRST);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param defaultStrategy - стратегия для типов, не указанных явно
+     */
+    public ProbePolicy(ProbeStrategy defaultStrategy) {
+        this.defaultStrategy = defaultStrategy;
+    }
+
+    /**
+     * Задает стратегию для типа содержимого
+     *
+     * @param contentType - точный тип (image/png) или основная часть с маской (image/*)
+     * @param strategy    - стратегия проверки
+     * @return эту же политику, для цепочки вызовов
+     */
+    public ProbePolicy use(String contentType, ProbeStrategy strategy) {
+        strategies.put(contentType.toLowerCase(Locale.ROOT), strategy);
+        return this;
+    }
+
+    /**
+     * Задает коды ответа на HEAD, после которых ссылка перепроверяется через GET. Код 0 (ошибка соединения или
+     * таймаут) не перепроверяется никогда
+     *
+     * @param codes - коды ответа
+     * @return эту же политику, для цепочки вызовов
+     */
+    public ProbePolicy fallbackOn(int... codes) {
+        int[] sorted = codes.clone();
+        Arrays.sort(sorted);
+        this.fallbackCodes = sorted;
+        return this;
+    }
+
+    /**
+     * Возвращает нужно ли перепроверить ссылку через GET после ответа на HEAD
+     *
+     * @param code - код ответа на HEAD
+     * @return true, если код входит в заданные коды
+     */
+    boolean needsFallback(int code) {
+        return code != 0 && Arrays.binarySearch(fallbackCodes, code) >= 0;
+    }
+
+    /**
+     * Возвращает стратегию проверки для ссылки
+     *
+     * @param link - ссылка для проверки
+     * @return стратегия, с учетом хостов без поддержки HEAD
+     */
+    public ProbeStrategy strategyFor(String link) {
+        if (headUnsupported.contains(host(link))) {
+            return ProbeStrategy.GET;
+        }
+        String type = contentTypeOf(link);
+        ProbeStrategy strategy = strategies.get(type);
+        if (strategy == null) {
+            strategy = strategies.get(type.substring(0, type.indexOf('/') + 1) + "*");
+        }
+        return strategy == null ? defaultStrategy : strategy;
+    }
+
+    /**
+     * Запоминает, что хост ссылки не поддерживает HEAD
+     *
+     * @param link - ссылка, на запрос HEAD к которой пришел 405 или 501
+     */
+    void markHeadUnsupported(String link) {
+        headUnsupported.add(host(link));
+    }
+
+    /**
+     * Определяет тип содержимого по расширению в пути ссылки
+     *
+     * @param link - ссылка
+     * @return тип содержимого, text/html если определить не удалось
+     */
+    public String contentTypeOf(String link) {
+        String path = path(link);
+        String type = URLConnection.guessContentTypeFromName(path);
+        if (type == null) {
+            if (path.endsWith(".js")) {
+                return "application/javascript";
+            }
+            if (path.endsWith(".css")) {
+                return "text/css";
+            }
+            if (path.endsWith(".rss")) {
+                return "application/rss+xml";
+            }
+            return "text/html";
+        }
+        return type.toLowerCase(Locale.ROOT);
+    }
+
+    private String path(String link) {
+        try {
+            String path = URI.create(link).getPath();
+            return path == null ? "" : path.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private String host(String link) {
+        try {
+            String host = URI.create(link).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.kotolex.pages;
+
+/**
+ * Способ проверки кода состояния ссылки
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see ProbePolicy
+ */
+public enum ProbeStrategy {
+    /**
+     * Сразу запрос GET, тело не читается, соединение закрывается после получения заголовков
+     */
+    GET,
+    /**
+     * Сначала запрос HEAD, при неподдерживаемом методе или ошибочном коде повторная проверка через GET
+     */
+    HEAD_FIRST
+}
@@ -0,0 +1,86 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.interfaces.PageFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс-декоратор, проверяющий код состояния ссылки согласно ProbePolicy: для ресурсов, которым достаточно кода
+ * состояния, сначала отправляется HEAD, чтобы не загружать тело. Если сервер не поддерживает HEAD (405, 501) или
+ * вернул код, которым серверы часто отвечают только на HEAD (список задается в ProbePolicy), ссылка перепроверяется
+ * запросом GET, который закрывается сразу после получения заголовков. Ошибки соединения, таймауты и прочие коды
+ * HEAD считаются окончательными. Содержимое всегда запрашивается через GET.
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see ProbePolicy
+ */
+public final class ProbingWebPage implements InternetPage {
+    private final String link;
+    private final PageFactory pages;
+    private final ProbePolicy policy;
+
+    /**
+     * Конструктор
+     *
+     * @param link   - адрес страницы
+     * @param pages  - фабрика страниц, через которые идут запросы
+     * @param policy - политика выбора способа проверки
+     */
+    public ProbingWebPage(String link, PageFactory pages, ProbePolicy policy) {
+        this.link = link;
+        this.pages = pages;
+        this.policy = policy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        if (policy.strategyFor(link) == ProbeStrategy.HEAD_FIRST) {
+            int code = pages.page(link, "HEAD").responseCode();
+            if (!policy.needsFallback(code)) {
+                return code;
+            }
+            if (code == 405 || code == 501) {
+                policy.markHeadUnsupported(link);
+            }
+        }
+        return pages.page(link).responseCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == 200;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        return pages.page(link).content();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return pages.page(link).fetch();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        return pages.page(link).fetch(headers);
+    }
+}
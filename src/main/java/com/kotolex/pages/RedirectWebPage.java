@@ -3,19 +3,20 @@ package com.kotolex.pages;
 import com.kotolex.interfaces.InternetPage;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Класс-декоратор для использования с редиректами на веб-страницах.
  * В отличие от WebPage при использовании данного класса ссылка, возвращающая 3хх коды считается рабочей
  *
  * @author kotolex
- * @version 1.0
+ * @version 1.2
  * @see WebPage
  */
 public class RedirectWebPage implements InternetPage {
-    private final WebPage webPage;
+    private final InternetPage webPage;
 
-    public RedirectWebPage(WebPage webPage) {
+    public RedirectWebPage(InternetPage webPage) {
         this.webPage = webPage;
     }
 
@@ -53,4 +54,20 @@ public class RedirectWebPage implements InternetPage {
     public List<String> content() {
         return webPage.content();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return webPage.fetch();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        return webPage.fetch(headers);
+    }
 }
@@ -0,0 +1,252 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import com.kotolex.services.SimpleConsole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Класс-декоратор, выполняющий запросы по RetryPolicy: повторы после временных ошибок с паузой со случайным
+ * разбросом, общий таймаут попытки и дублирующие запросы для медленных ответов. Общий таймаут и дублирование
+ * требуют выполнения попытки в ограниченном пуле потоков политики, без них попытки выполняются в вызывающем потоке.
+ * Общий таймаут действует до получения заголовков, тело ответа читается уже с таймаутом чтения страницы.
+ * Брошенные попытки (проигравший дубль, попытка после таймаута) закрываются, когда завершатся, а брошенная попытка,
+ * еще не получившая поток, не выполняется
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see RetryPolicy
+ */
+public final class ResilientWebPage implements InternetPage {
+    private final String link;
+    private final InternetPage webPage;
+    private final RetryPolicy policy;
+
+    /**
+     * Конструктор
+     *
+     * @param link    - адрес страницы
+     * @param webPage - страница, через которую идут запросы
+     * @param policy  - политика повторов и дублирования
+     */
+    public ResilientWebPage(String link, InternetPage webPage, RetryPolicy policy) {
+        this.link = link;
+        this.webPage = webPage;
+        this.policy = policy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int responseCode() {
+        try (PageResponse response = fetch()) {
+            return response.status();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available() {
+        return responseCode() == 200;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> content() {
+        try (PageResponse response = fetch()) {
+            return response.isSuccessful() ? response.content() : Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch() {
+        return fetch(Collections.emptyMap());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        for (int attempt = 0; ; attempt++) {
+            PageResponse response = policy.isAsync() ? attemptAsync(headers) : attempt(headers);
+            if (!policy.isTransient(response.status()) || attempt >= policy.retries()) {
+                return response;
+            }
+            response.close();
+            policy.onRetry();
+            try {
+                Thread.sleep(policy.backoff(attempt).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return PageResponse.failed(link);
+            }
+        }
+    }
+
+    /**
+     * Выполняет попытку в вызывающем потоке
+     *
+     * @param headers - заголовки запроса
+     * @return ответ
+     */
+    private PageResponse attempt(Map<String, String> headers) {
+        long start = System.nanoTime();
+        PageResponse response = webPage.fetch(headers);
+        policy.record(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Выполняет попытку в пуле потоков политики с общим таймаутом и, если ответ задерживается дольше перцентиля,
+     * отправляет дублирующий запрос. Время ожидания свободного потока пула в таймаут не входит, иначе при занятом
+     * пуле рабочие ссылки считались бы сломанными
+     *
+     * @param headers - заголовки запроса
+     * @return первый ответ без временной ошибки, иначе последний полученный ответ или ответ с кодом 0 по таймауту
+     */
+    private PageResponse attemptAsync(Map<String, String> headers) {
+        Attempt first = new Attempt(headers);
+        Attempt second = null;
+        try {
+            first.started.await();
+            long total = policy.totalTimeoutNanos();
+            long deadline = total < 0 ? Long.MAX_VALUE : System.nanoTime() + total;
+            long hedgeDelay = policy.hedgeDelayNanos();
+            if (hedgeDelay >= 0) {
+                try {
+                    return await(first.result, Math.min(hedgeDelay, remaining(deadline)));
+                } catch (TimeoutException e) {
+                    if (remaining(deadline) <= 0) {
+                        throw e;
+                    }
+                }
+                policy.onHedge();
+                second = new Attempt(headers);
+                PageResponse winner = await(firstDefinite(first.result, second.result), remaining(deadline));
+                closeUnless(first.result, winner);
+                closeUnless(second.result, winner);
+                return winner;
+            }
+            return await(first.result, remaining(deadline));
+        } catch (TimeoutException e) {
+            policy.onTimeout();
+        } catch (CompletionException e) {
+            new SimpleConsole().println(link + " raise exception " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        first.abandon();
+        if (second != null) {
+            second.abandon();
+        }
+        return PageResponse.failed(link);
+    }
+
+    /**
+     * Попытка, отправленная в пул политики. Брошенная попытка, еще не получившая поток, запрос не отправляет
+     */
+    private final class Attempt {
+        private final CompletableFuture<PageResponse> result = new CompletableFuture<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean abandoned;
+
+        private Attempt(Map<String, String> headers) {
+            policy.attempts().execute(() -> {
+                started.countDown();
+                if (abandoned) {
+                    result.complete(PageResponse.failed(link));
+                    return;
+                }
+                try {
+                    result.complete(attempt(headers));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        private void abandon() {
+            abandoned = true;
+            closeUnless(result, null);
+        }
+    }
+
+    /**
+     * Ждет результат на защелке, а не через CompletableFuture.get, который в потоке ForkJoinPool запускает
+     * дополнительные потоки пула на время ожидания
+     *
+     * @param future - ожидаемый результат
+     * @param nanos  - сколько ждать
+     * @return результат
+     * @throws TimeoutException     если результата нет за отведенное время
+     * @throws InterruptedException если ожидающий поток был прерван
+     */
+    private static <T> T await(CompletableFuture<T> future, long nanos) throws TimeoutException,
+            InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        future.whenComplete((result, error) -> done.countDown());
+        if (!done.await(nanos, TimeUnit.NANOSECONDS)) {
+            throw new TimeoutException();
+        }
+        return future.join();
+    }
+
+    /**
+     * Возвращает первый из ответов, который не является временной ошибкой. Если обе попытки завершились временной
+     * ошибкой, возвращается ответ завершившейся последней
+     *
+     * @param first  - основная попытка
+     * @param second - дублирующая попытка
+     * @return выбранный ответ
+     */
+    private CompletableFuture<PageResponse> firstDefinite(CompletableFuture<PageResponse> first,
+                                                          CompletableFuture<PageResponse> second) {
+        CompletableFuture<PageResponse> winner = new CompletableFuture<>();
+        AtomicInteger done = new AtomicInteger(0);
+        BiConsumer<PageResponse, Throwable> choose = (response, error) -> {
+            PageResponse result = error == null ? response : PageResponse.failed(link);
+            if (!policy.isTransient(result.status()) || done.incrementAndGet() == 2) {
+                winner.complete(result);
+            }
+        };
+        first.whenComplete(choose);
+        second.whenComplete(choose);
+        return winner;
+    }
+
+    private long remaining(long deadline) {
+        return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Закрывает ответ попытки, когда она завершится, если это не выбранный ответ
+     *
+     * @param future - попытка
+     * @param winner - выбранный ответ
+     */
+    private void closeUnless(CompletableFuture<PageResponse> future, PageResponse winner) {
+        future.thenAccept((response) -> {
+            if (response != winner) {
+                response.close();
+            }
+        });
+    }
+}
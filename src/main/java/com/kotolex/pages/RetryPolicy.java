@@ -0,0 +1,263 @@
+package com.kotolex.pages;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Настройка повторов и дублирующих (hedged) запросов. Запрос, завершившийся временной ошибкой (ошибка соединения
+ * или таймаут, то есть код 0, а также 502 и 504), повторяется ограниченное число раз с экспоненциальной паузой со
+ * случайным разбросом, чтобы повторы многих потоков не приходили на сервер одновременно. Неверная ссылка (код
+ * PageResponse.INVALID_LINK) не повторяется.
+ * При включенном дублировании, если ответа нет дольше заданного перцентиля недавних времен ответа, отправляется
+ * второй такой же запрос и используется первый ответ, который не является временной ошибкой. Попытки с общим
+ * таймаутом или дублированием выполняются в пуле потоков политики, размер которого ограничен (по умолчанию по два
+ * потока на каждую попытку с повторами для каждой одновременной задачи движка обхода), поэтому брошенные после
+ * таймаута попытки не множат потоки.
+ * Политика собирает времена ответов и счетчики, поэтому одна политика используется для всех страниц проверки
+ *
+ * @author kotolex
+ * @version 1.2
+ * @see ResilientWebPage
+ */
+public final class RetryPolicy {
+    /**
+     * Сколько последних времен ответа учитывается при расчете перцентиля
+     */
+    private static final int WINDOW = 1024;
+    /**
+     * Через сколько новых времен ответа перцентиль пересчитывается
+     */
+    private static final int RECALCULATE_EVERY = 64;
+    /**
+     * Минимум времен ответа, после которого начинается дублирование
+     */
+    private static final int MIN_SAMPLES = 32;
+    /**
+     * Сколько потоков приходится на одну попытку задачи движка: основная попытка и дубль. Брошенная по таймауту
+     * попытка занимает поток до таймаута чтения, поэтому потоки выделяются и на каждый повтор
+     */
+    private static final int THREADS_PER_TASK = 2;
+    private final int retries;
+    private final Duration backoff;
+    private Duration totalTimeout;
+    /**
+     * Перцентиль времени ответа, после которого отправляется дублирующий запрос, 0 - без дублирования
+     */
+    private double hedgePercentile;
+    private final long[] latencies = new long[WINDOW];
+    private long samples;
+    private long hedgeDelayNanos = -1;
+    private final AtomicInteger retried = new AtomicInteger(0);
+    private final AtomicInteger hedged = new AtomicInteger(0);
+    private final AtomicInteger timedOut = new AtomicInteger(0);
+    /**
+     * Размер пула попыток, заданный явно, 0 - по количеству задач движка
+     */
+    private int attemptThreads;
+    private int parallelism = Runtime.getRuntime().availableProcessors() * 4;
+    private ThreadPoolExecutor attempts;
+
+    /**
+     * Конструктор по умолчанию: один повтор через паузу до 200 мс, без общего таймаута и дублирования
+     */
+    public RetryPolicy() {
+        this(1, Duration.ofMillis(200));
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param retries - сколько раз повторять запрос после временной ошибки
+     * @param backoff - базовая пауза, перед n-м повтором пауза случайна в пределах backoff * 2^n
+     */
+    public RetryPolicy(int retries, Duration backoff) {
+        if (retries < 0 || backoff.isNegative()) {
+            throw new IllegalArgumentException("Retries and backoff must not be negative");
+        }
+        this.retries = retries;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Задает общий таймаут одной попытки до получения заголовков ответа, по его истечении попытка считается
+     * неудачной с кодом 0. Чтение тела ответа общим таймаутом не ограничено, его ограничивает таймаут чтения страницы
+     *
+     * @param totalTimeout - общий таймаут попытки
+     * @return эту же политику, для цепочки вызовов
+     */
+    public RetryPolicy totalTimeout(Duration totalTimeout) {
+        this.totalTimeout = totalTimeout;
+        return this;
+    }
+
+    /**
+     * Включает дублирующие запросы
+     *
+     * @param percentile - перцентиль времени ответа от 0 до 1, например 0.95
+     * @return эту же политику, для цепочки вызовов
+     */
+    public RetryPolicy hedgeAfter(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1, but was " + percentile);
+        }
+        this.hedgePercentile = percentile;
+        return this;
+    }
+
+    /**
+     * Задает размер пула потоков для попыток с общим таймаутом и дублирующих запросов. Если попыток больше, чем
+     * потоков, лишние ждут в очереди, время ожидания в общий таймаут не входит
+     *
+     * @param attemptThreads - количество потоков
+     * @return эту же политику, для цепочки вызовов
+     */
+    public synchronized RetryPolicy attemptThreads(int attemptThreads) {
+        if (attemptThreads <= 0) {
+            throw new IllegalArgumentException("Attempt threads must be positive, but was " + attemptThreads);
+        }
+        this.attemptThreads = attemptThreads;
+        resize();
+        return this;
+    }
+
+    /**
+     * Подстраивает размер пула попыток под движок обхода, если размер не задан явно. Вызывается перед проверкой
+     *
+     * @param parallelism - сколько задач движок исполняет одновременно
+     */
+    public synchronized void useParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        resize();
+    }
+
+    public int retries() {
+        return retries;
+    }
+
+    /**
+     * Возвращает является ли код результатом временной ошибки, после которой запрос стоит повторить
+     *
+     * @param status - код ответа
+     * @return true для 0, 502 и 504, но не для PageResponse.INVALID_LINK
+     */
+    public boolean isTransient(int status) {
+        return status == 0 || status == 502 || status == 504;
+    }
+
+    /**
+     * Возвращает паузу перед повтором: случайную в пределах backoff * 2^attempt
+     *
+     * @param attempt - номер неудавшейся попытки, с нуля
+     * @return пауза
+     */
+    public Duration backoff(int attempt) {
+        long max = backoff.toMillis() << Math.min(attempt, 16);
+        return Duration.ofMillis(max <= 0 ? 0 : ThreadLocalRandom.current().nextLong(max + 1));
+    }
+
+    /**
+     * @return общий таймаут попытки в наносекундах, -1 если он не задан
+     */
+    long totalTimeoutNanos() {
+        return totalTimeout == null ? -1 : totalTimeout.toNanos();
+    }
+
+    /**
+     * @return true, если попытки нужно выполнять в отдельном потоке: для общего таймаута или дублирования
+     */
+    boolean isAsync() {
+        return totalTimeout != null || hedgePercentile > 0;
+    }
+
+    /**
+     * Возвращает через сколько отправлять дублирующий запрос
+     *
+     * @return задержка в наносекундах, -1 если дублирование выключено или времен ответа еще мало
+     */
+    synchronized long hedgeDelayNanos() {
+        return hedgePercentile > 0 ? hedgeDelayNanos : -1;
+    }
+
+    /**
+     * Запоминает время ответа для расчета перцентиля
+     *
+     * @param nanos - время ответа
+     */
+    synchronized void record(long nanos) {
+        latencies[(int) (samples % WINDOW)] = nanos;
+        samples++;
+        if (hedgePercentile > 0 && (samples == MIN_SAMPLES || samples > MIN_SAMPLES && samples % RECALCULATE_EVERY == 0)) {
+            long[] sorted = Arrays.copyOf(latencies, (int) Math.min(samples, WINDOW));
+            Arrays.sort(sorted);
+            hedgeDelayNanos = sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * hedgePercentile))];
+        }
+    }
+
+    /**
+     * Возвращает пул потоков для попыток, создается при первом обращении
+     *
+     * @return пул попыток
+     */
+    synchronized ExecutorService attempts() {
+        if (attempts == null) {
+            int threads = threads();
+            attempts = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    (runnable) -> {
+                        Thread thread = new Thread(runnable, "jlink-attempt");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            attempts.allowCoreThreadTimeOut(true);
+        }
+        return attempts;
+    }
+
+    private int threads() {
+        return attemptThreads > 0 ? attemptThreads : (int) Math.min(Integer.MAX_VALUE,
+                (long) parallelism * THREADS_PER_TASK * (retries + 1));
+    }
+
+    private void resize() {
+        if (attempts == null) {
+            return;
+        }
+        int threads = threads();
+        if (threads > attempts.getMaximumPoolSize()) {
+            attempts.setMaximumPoolSize(threads);
+            attempts.setCorePoolSize(threads);
+        } else {
+            attempts.setCorePoolSize(threads);
+            attempts.setMaximumPoolSize(threads);
+        }
+    }
+
+    void onRetry() {
+        retried.getAndIncrement();
+    }
+
+    void onHedge() {
+        hedged.getAndIncrement();
+    }
+
+    void onTimeout() {
+        timedOut.getAndIncrement();
+    }
+
+    public int retriedCount() {
+        return retried.get();
+    }
+
+    public int hedgedCount() {
+        return hedged.get();
+    }
+
+    public int timedOutCount() {
+        return timedOut.get();
+    }
+}
@@ -0,0 +1,57 @@
+package com.kotolex.pages;
+
+import java.time.Duration;
+
+/**
+ * Таймауты соединения и чтения для запросов к страницам. Без них один зависший сервер навсегда занимает поток
+ * проверки, и проверка сайта никогда не завершается
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see WebPage
+ * @see RetryPolicy
+ */
+public final class Timeouts {
+    /**
+     * Таймауты по умолчанию: 10 секунд на соединение и 30 секунд на ожидание данных
+     */
+    public static final Timeouts DEFAULT = new Timeouts(Duration.ofSeconds(10), Duration.ofSeconds(30));
+    private final Duration connect;
+    private final Duration read;
+
+    /**
+     * Конструктор
+     *
+     * @param connect - максимальное время установки соединения
+     * @param read    - максимальное время ожидания очередной порции данных
+     */
+    public Timeouts(Duration connect, Duration read) {
+        if (connect.isNegative() || connect.isZero() || read.isNegative() || read.isZero()) {
+            throw new IllegalArgumentException("Timeouts must be positive");
+        }
+        this.connect = connect;
+        this.read = read;
+    }
+
+    public Duration connect() {
+        return connect;
+    }
+
+    public Duration read() {
+        return read;
+    }
+
+    /**
+     * @return таймаут соединения в миллисекундах, в формате HttpURLConnection и Apache HttpClient
+     */
+    public int connectMillis() {
+        return (int) Math.min(Integer.MAX_VALUE, connect.toMillis());
+    }
+
+    /**
+     * @return таймаут чтения в миллисекундах, в формате HttpURLConnection и Apache HttpClient
+     */
+    public int readMillis() {
+        return (int) Math.min(Integer.MAX_VALUE, read.toMillis());
+    }
+}
@@ -7,19 +7,26 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-import java.util.Scanner;
+import java.util.Map;
 
 /**
  * Класс для работы с веб-страницой, возвращает содержимое страницы и/или код состояния.
- * Рабочей (available) ссылкой считается только та, что возвращает код 200
+ * Рабочей (available) ссылкой считается только та, что возвращает код 200.
+ * Соединение и чтение ограничены таймаутами, по их истечении возвращается код 0.
+ * Время установки соединения сохраняется в ответе для метрик
  *
  * @author kotolex
- * @version 1.1
+ * @version 1.7
  */
 public final class WebPage implements InternetPage {
     private final String link;
+    /**
+     * Метод запроса, GET или HEAD
+     */
+    private final String method;
+    private final Timeouts timeouts;
     /**
      * Код состояния доступности страницы
      */
@@ -36,7 +43,30 @@ public final class WebPage implements InternetPage {
      * @param link - страница, на которой ищутся ссылки
      */
     public WebPage(String link) {
+        this(link, "GET");
+    }
+
+    /**
+     * Конструктор с указанием метода запроса
+     *
+     * @param link   - страница, на которой ищутся ссылки
+     * @param method - метод запроса, например HEAD для проверки кода без загрузки тела
+     */
+    public WebPage(String link, String method) {
+        this(link, method, Timeouts.DEFAULT);
+    }
+
+    /**
+     * Конструктор с указанием метода запроса и таймаутов
+     *
+     * @param link     - страница, на которой ищутся ссылки
+     * @param method   - метод запроса
+     * @param timeouts - таймауты соединения и чтения
+     */
+    public WebPage(String link, String method, Timeouts timeouts) {
         this.link = link;
+        this.method = method;
+        this.timeouts = timeouts;
     }
 
     /**
@@ -44,18 +74,8 @@ public final class WebPage implements InternetPage {
      */
     @Override
     public int responseCode() {
-        Optional<HttpURLConnection> optional = connection();
-        if (!optional.isPresent()) {
-            return 0;
-        }
-        try {
-            HttpURLConnection connection = optional.get();
-            int result = connection.getResponseCode();
-            connection.disconnect();
-            return result;
-        } catch (IOException e) {
-            printException(e);
-            return 0;
+        try (PageResponse response = fetch()) {
+            return response.status();
         }
     }
 
@@ -72,41 +92,66 @@ public final class WebPage implements InternetPage {
      */
     @Override
     public List<String> content() {
-        Optional<HttpURLConnection> optional = connection();
-        LinkedList<String> linkedList = new LinkedList<>();
-        if (optional.isPresent()) {
-            try {
-                HttpURLConnection connection = optional.get();
-                Scanner scanner = new Scanner(connection.getInputStream());
-                while (scanner.hasNext()) {
-                    linkedList.add(scanner.next());
-                }
-                scanner.close();
-                connection.disconnect();
-            } catch (Exception e) {
-                printException(e);
-            }
+        try (PageResponse response = fetch()) {
+            return response.isSuccessful() ? response.content() : new LinkedList<>();
         }
-        return linkedList;
     }
 
     /**
-     * Метод для получения соединения с веб-страницей
-     * @return Optional, чтобы избежать возвращения null при ошибках доступа к страницам
+     * {@inheritDoc}
      */
-    private Optional<HttpURLConnection> connection() {
+    @Override
+    public PageResponse fetch() {
+        return fetch(Collections.emptyMap());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PageResponse fetch(Map<String, String> headers) {
+        long start = System.nanoTime();
+        HttpURLConnection connection;
+        try {
+            connection = connection(headers);
+        } catch (IOException | RuntimeException e) {
+            printException(e);
+            return PageResponse.failed(link, e);
+        }
+        long connectNanos = System.nanoTime() - start;
         try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(link).openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("user-agent", USER_AGENT);
-            connection.connect();
-            return Optional.of(connection);
-        } catch (Exception e) {
+            int status = connection.getResponseCode();
+            PageResponse response = new PageResponse(link, status, connection.getHeaderFields(),
+                    () -> status < 400 ? connection.getInputStream() : connection.getErrorStream(),
+                    connection::disconnect);
+            response.setConnectNanos(connectNanos);
+            return response;
+        } catch (IOException e) {
             printException(e);
-            return Optional.empty();
+            connection.disconnect();
+            return PageResponse.failed(link, e);
         }
     }
 
+    /**
+     * Метод для получения соединения с веб-страницей
+     * @param headers - дополнительные заголовки запроса
+     * @return установленное соединение
+     * @throws IOException при ошибках соединения или неверном адресе
+     * @throws ClassCastException если ссылка не http(s)
+     */
+    private HttpURLConnection connection(Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(link).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeouts.connectMillis());
+        connection.setReadTimeout(timeouts.readMillis());
+        connection.setRequestProperty("user-agent", USER_AGENT);
+        connection.setRequestProperty("accept-encoding", PageResponse.ACCEPT_ENCODING);
+        headers.forEach(connection::setRequestProperty);
+        connection.connect();
+        return connection;
+    }
+
     /**
      * Печатает исключение в консоль в общем виде
      * @param ex - исключение
@@ -0,0 +1,51 @@
+package com.kotolex.parsers;
+
+/**
+ * Правила гибридного режима, по которым страница после разбора StreamingUrlList дополнительно разбирается с помощью
+ * UrlListWithSelenium. Страница считается создаваемой скриптами, если на ней найдено слишком мало ссылок, если
+ * большая часть страницы - текст скриптов, или если на ней есть корневой элемент SPA-приложения.
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see ParsingMode#HYBRID
+ */
+public final class EscalationPolicy {
+    /**
+     * Минимальное количество ссылок по умолчанию, при котором разбор считается полным
+     */
+    private static final int DEFAULT_MIN_LINKS = 3;
+    /**
+     * Доля текста скриптов по умолчанию, выше которой страница считается создаваемой скриптами
+     */
+    private static final double DEFAULT_MAX_SCRIPT_SHARE = 0.6;
+    private final int minLinks;
+    private final double maxScriptShare;
+
+    /**
+     * Конструктор с порогами по умолчанию
+     */
+    public EscalationPolicy() {
+        this(DEFAULT_MIN_LINKS, DEFAULT_MAX_SCRIPT_SHARE);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param minLinks       - если ссылок меньше, страница разбирается с помощью Selenium
+     * @param maxScriptShare - если доля текста скриптов больше, страница разбирается с помощью Selenium
+     */
+    public EscalationPolicy(int minLinks, double maxScriptShare) {
+        this.minLinks = minLinks;
+        this.maxScriptShare = maxScriptShare;
+    }
+
+    /**
+     * Возвращает нужно ли разбирать страницу с помощью UrlListWithSelenium
+     *
+     * @param page - уже разобранная потоковым парсером страница
+     * @return true, если ссылки страницы, вероятно, создаются скриптами
+     */
+    public boolean isNeeded(StreamingUrlList page) {
+        return page.links().size() < minLinks || page.scriptShare() > maxScriptShare || page.hasAppRoot();
+    }
+}
@@ -0,0 +1,24 @@
+package com.kotolex.parsers;
+
+/**
+ * Способ извлечения ссылок со страниц сайта
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see EscalationPolicy
+ */
+public enum ParsingMode {
+    /**
+     * Быстрый потоковый парсер StreamingUrlList для всех страниц
+     */
+    SIMPLE,
+    /**
+     * UrlListWithSelenium для всех страниц, учитываются ссылки, созданные скриптами. Дольше, но точнее
+     */
+    SELENIUM,
+    /**
+     * Все страницы разбираются StreamingUrlList, UrlListWithSelenium используется только для страниц, ссылки которых,
+     * судя по EscalationPolicy, создаются скриптами
+     */
+    HYBRID
+}
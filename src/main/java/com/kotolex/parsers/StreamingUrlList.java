@@ -0,0 +1,563 @@
+package com.kotolex.parsers;
+
+import com.kotolex.interfaces.UrlLinksList;
+import com.kotolex.services.SimpleConsole;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Потоковый парсер ссылок: читает верстку посимвольно и за один проход извлекает ссылки из атрибутов href, src и
+ * srcset, а также из CSS url(...) в тегах style и атрибутах style, не разбивая страницу на токены. Поддерживаются
+ * значения в двойных, одинарных кавычках и без кавычек, а также пробелы вокруг знака равенства. Содержимое script
+ * пропускается целиком. Промежуточные строки не создаются, память выделяется только под найденные значения.
+ * Если указан адрес страницы, относительные ссылки (в том числе вида //host/path) разрешаются относительно него или
+ * относительно base href, иначе, как и UrlList, берутся только ссылки в явном виде, начинающиеся с http или https.
+ * Попутно собирается статистика для определения страниц, ссылки которых создаются скриптами: доля текста скриптов
+ * и наличие корневых элементов SPA-приложений.
+ * Источник читается только один раз, при дальнейших запросах возвращается уже сформированный список!
+ *
+ * @author kotolex
+ * @version 1.2
+ * @see UrlList
+ */
+public final class StreamingUrlList implements UrlLinksList {
+    /**
+     * Размер буфера чтения из Reader
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Значения атрибутов длиннее этого (например data:-картинки) не сохраняются
+     */
+    private static final int MAX_LINK_LENGTH = 8192;
+    /**
+     * Имена тегов и атрибутов длиннее этого нам не интересны
+     */
+    private static final int MAX_NAME_LENGTH = 16;
+    private static final String CSS_URL = "url(";
+    /**
+     * Значения id корневых элементов, в которые SPA-фреймворки отрисовывают страницу
+     */
+    private static final String[] APP_ROOT_IDS = {"root", "app", "__next", "__next_data__", "___gatsby", "__nuxt"};
+    /**
+     * Атрибуты, которыми фреймворки помечают корневой элемент приложения
+     */
+    private static final String[] APP_ROOT_ATTRIBUTES = {"ng-app", "ng-version", "data-reactroot", "v-cloak"};
+
+    /**
+     * Состояния разбора
+     */
+    private enum State {TEXT, TAG_NAME, TAG, ATTRIBUTE, AFTER_ATTRIBUTE, AFTER_EQUALS, VALUE, COMMENT, RAW_TEXT}
+
+    private final Reader reader;
+    private final CharSequence sequence;
+    /**
+     * Адрес страницы для разрешения относительных ссылок, null если берутся только явные ссылки
+     */
+    private final String pageUrl;
+    private final StringBuilder tagName = new StringBuilder();
+    private final StringBuilder attribute = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    /**
+     * Найденные значения в порядке появления, разрешаются после разбора, когда уже известен base href
+     */
+    private final List<String> values = new ArrayList<>();
+    private List<String> list;
+    private String baseHref;
+    private State state = State.TEXT;
+    /**
+     * Закрывающая кавычка текущего значения или 0 для значения без кавычек
+     */
+    private char quote;
+    /**
+     * Количество подряд идущих дефисов внутри комментария
+     */
+    private int dashes;
+    /**
+     * Закрывающий тег, до которого содержимое script или style читается как текст, и количество совпавших символов
+     */
+    private String rawEnd;
+    private int rawMatched;
+    /**
+     * Разбор CSS url(...) внутри style: количество совпавших символов "url(" и накопленное значение
+     */
+    private int cssMatched;
+    private final StringBuilder cssValue = new StringBuilder();
+    private boolean isInCssValue = false;
+    /**
+     * Общее количество символов страницы и количество символов внутри script
+     */
+    private long totalChars;
+    private long scriptChars;
+    private boolean hasAppRoot = false;
+
+    /**
+     * Конструктор для чтения из потока, берутся только ссылки в явном виде
+     *
+     * @param reader - источник верстки, закрывается после разбора
+     */
+    public StreamingUrlList(Reader reader) {
+        this(reader, null);
+    }
+
+    /**
+     * Конструктор для чтения из потока, например из тела ответа
+     *
+     * @param reader  - источник верстки, закрывается после разбора
+     * @param pageUrl - адрес страницы для разрешения относительных ссылок
+     */
+    public StreamingUrlList(Reader reader, String pageUrl) {
+        this.reader = reader;
+        this.sequence = null;
+        this.pageUrl = pageUrl;
+    }
+
+    /**
+     * Конструктор для разбора уже загруженной верстки, например CharBuffer, без копирования.
+     * Берутся только ссылки в явном виде
+     *
+     * @param sequence - верстка страницы
+     */
+    public StreamingUrlList(CharSequence sequence) {
+        this(sequence, null);
+    }
+
+    /**
+     * Конструктор для разбора уже загруженной верстки, например CharBuffer, без копирования
+     *
+     * @param sequence - верстка страницы
+     * @param pageUrl  - адрес страницы для разрешения относительных ссылок
+     */
+    public StreamingUrlList(CharSequence sequence, String pageUrl) {
+        this.reader = null;
+        this.sequence = sequence;
+        this.pageUrl = pageUrl;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> links() {
+        if (list != null) {
+            return list;
+        }
+        if (sequence != null) {
+            for (int i = 0; i < sequence.length(); i++) {
+                accept(sequence.charAt(i));
+            }
+        } else {
+            read();
+        }
+        list = new ArrayList<>(resolveAll());
+        return list;
+    }
+
+    /**
+     * Возвращает долю текста скриптов в странице, имеет смысл после вызова links()
+     *
+     * @return отношение количества символов внутри script к размеру страницы, от 0 до 1
+     */
+    public double scriptShare() {
+        return totalChars == 0 ? 0 : (double) scriptChars / totalChars;
+    }
+
+    /**
+     * Возвращает найден ли на странице корневой элемент SPA-приложения (id="root", ng-app, data-reactroot и т.п.),
+     * имеет смысл после вызова links()
+     *
+     * @return true, если страница похожа на приложение, отрисовываемое скриптами
+     */
+    public boolean hasAppRoot() {
+        return hasAppRoot;
+    }
+
+    /**
+     * Читает поток блоками в один переиспользуемый буфер
+     */
+    private void read() {
+        char[] buffer = new char[BUFFER_SIZE];
+        try (Reader source = reader) {
+            int count;
+            while ((count = source.read(buffer)) != -1) {
+                for (int i = 0; i < count; i++) {
+                    accept(buffer[i]);
+                }
+            }
+        } catch (IOException e) {
+            new SimpleConsole().println("Parsing stopped with exception " + e.getMessage());
+        }
+    }
+
+    /**
+     * Обрабатывает очередной символ верстки
+     *
+     * @param c - символ
+     */
+    private void accept(char c) {
+        totalChars++;
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    tagName.setLength(0);
+                    state = State.TAG_NAME;
+                }
+                break;
+            case TAG_NAME:
+                inTagName(c);
+                break;
+            case TAG:
+                inTag(c);
+                break;
+            case ATTRIBUTE:
+                inAttribute(c);
+                break;
+            case AFTER_ATTRIBUTE:
+                if (c == '=') {
+                    state = State.AFTER_EQUALS;
+                } else if (!Character.isWhitespace(c)) {
+                    inTag(c);
+                }
+                break;
+            case AFTER_EQUALS:
+                afterEquals(c);
+                break;
+            case VALUE:
+                inValue(c);
+                break;
+            case COMMENT:
+                if (c == '>' && dashes >= 2) {
+                    state = State.TEXT;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+                break;
+            case RAW_TEXT:
+                inRawText(c);
+                break;
+        }
+    }
+
+    /**
+     * Накапливает имя тега, распознает начало комментария
+     *
+     * @param c - символ
+     */
+    private void inTagName(char c) {
+        if (c == '>') {
+            endTag();
+        } else if (Character.isWhitespace(c)) {
+            state = State.TAG;
+        } else if (tagName.length() < MAX_NAME_LENGTH) {
+            tagName.append(Character.toLowerCase(c));
+            if (tagName.length() == 3 && tagName.charAt(0) == '!' && tagName.charAt(1) == '-' && c == '-') {
+                dashes = 0;
+                state = State.COMMENT;
+            }
+        }
+    }
+
+    /**
+     * Внутри тега ищет начало имени атрибута
+     *
+     * @param c - символ
+     */
+    private void inTag(char c) {
+        if (c == '>') {
+            endTag();
+        } else if (Character.isWhitespace(c) || c == '/') {
+            state = State.TAG;
+        } else {
+            attribute.setLength(0);
+            attribute.append(Character.toLowerCase(c));
+            state = State.ATTRIBUTE;
+        }
+    }
+
+    /**
+     * Накапливает имя атрибута до знака равенства, пробела или конца тега
+     *
+     * @param c - символ
+     */
+    private void inAttribute(char c) {
+        if (c == '=' || Character.isWhitespace(c) || c == '>') {
+            for (String name : APP_ROOT_ATTRIBUTES) {
+                hasAppRoot = hasAppRoot || is(attribute, name);
+            }
+        }
+        if (c == '=') {
+            state = State.AFTER_EQUALS;
+        } else if (Character.isWhitespace(c)) {
+            state = State.AFTER_ATTRIBUTE;
+        } else if (c == '>') {
+            endTag();
+        } else if (attribute.length() < MAX_NAME_LENGTH) {
+            attribute.append(Character.toLowerCase(c));
+        }
+    }
+
+    /**
+     * После знака равенства определяет тип значения: в кавычках или без
+     *
+     * @param c - символ
+     */
+    private void afterEquals(char c) {
+        if (Character.isWhitespace(c)) {
+            return;
+        }
+        value.setLength(0);
+        if (c == '"' || c == '\'') {
+            quote = c;
+        } else if (c == '>') {
+            endTag();
+            return;
+        } else {
+            quote = 0;
+            value.append(c);
+        }
+        state = State.VALUE;
+    }
+
+    /**
+     * Накапливает значение атрибута до закрывающей кавычки (или пробела и конца тега для значения без кавычек).
+     * Значения неинтересных атрибутов не сохраняются
+     *
+     * @param c - символ
+     */
+    private void inValue(char c) {
+        if (quote == 0 && (Character.isWhitespace(c) || c == '>')) {
+            attributeValue();
+            if (c == '>') {
+                endTag();
+            } else {
+                state = State.TAG;
+            }
+        } else if (c == quote) {
+            attributeValue();
+            state = State.TAG;
+        } else if (value.length() <= MAX_LINK_LENGTH && isLinkAttribute()) {
+            value.append(c);
+        }
+    }
+
+    /**
+     * Возвращает нужно ли сохранять значение текущего атрибута
+     *
+     * @return true для href, src, srcset и style, которые могут содержать ссылку, и для id
+     */
+    private boolean isLinkAttribute() {
+        return is(attribute, "href") || is(attribute, "src") || is(attribute, "srcset") || is(attribute, "style")
+                || is(attribute, "id");
+    }
+
+    /**
+     * Обрабатывает значение атрибута в зависимости от его имени
+     */
+    private void attributeValue() {
+        if (value.length() > MAX_LINK_LENGTH) {
+            return;
+        }
+        if (is(attribute, "href") || is(attribute, "src")) {
+            String link = decode(value.toString()).trim();
+            if (is(tagName, "base") && is(attribute, "href")) {
+                baseHref = baseHref == null ? link : baseHref;
+            } else {
+                values.add(link);
+            }
+        } else if (is(attribute, "srcset")) {
+            srcset();
+        } else if (is(attribute, "id")) {
+            for (String id : APP_ROOT_IDS) {
+                hasAppRoot = hasAppRoot || id.equalsIgnoreCase(value.toString().trim());
+            }
+        } else if (is(attribute, "style")) {
+            String style = decode(value.toString());
+            for (int i = 0; i < style.length(); i++) {
+                css(style.charAt(i));
+            }
+            cssMatched = 0;
+            isInCssValue = false;
+        }
+    }
+
+    /**
+     * Разбирает srcset: список через запятую из ссылок с необязательными дескрипторами размера
+     */
+    private void srcset() {
+        for (String candidate : decode(value.toString()).split(",")) {
+            String trimmed = candidate.trim();
+            int space = indexOfWhitespace(trimmed);
+            String link = space < 0 ? trimmed : trimmed.substring(0, space);
+            if (!link.isEmpty()) {
+                values.add(link);
+            }
+        }
+    }
+
+    /**
+     * Завершает тег: после открывающих script и style содержимое читается как текст до закрывающего тега
+     */
+    private void endTag() {
+        if (is(tagName, "script")) {
+            rawEnd = "</script";
+        } else if (is(tagName, "style")) {
+            rawEnd = "</style";
+        } else {
+            state = State.TEXT;
+            return;
+        }
+        rawMatched = 0;
+        state = State.RAW_TEXT;
+    }
+
+    /**
+     * Ищет конец script или style, внутри style извлекает ссылки из url(...)
+     *
+     * @param c - символ
+     */
+    private void inRawText(char c) {
+        if (rawEnd.equals("</script")) {
+            scriptChars++;
+        }
+        if (Character.toLowerCase(c) == rawEnd.charAt(rawMatched)) {
+            rawMatched++;
+            if (rawMatched == rawEnd.length()) {
+                tagName.setLength(0);
+                tagName.append(rawEnd, 1, rawEnd.length());
+                cssMatched = 0;
+                isInCssValue = false;
+                state = State.TAG;
+                return;
+            }
+        } else {
+            rawMatched = c == '<' ? 1 : 0;
+        }
+        if (rawEnd.equals("</style")) {
+            css(c);
+        }
+    }
+
+    /**
+     * Посимвольно ищет в CSS конструкции url(...) и сохраняет их значения
+     *
+     * @param c - символ
+     */
+    private void css(char c) {
+        if (isInCssValue) {
+            if (c == ')') {
+                String link = cssValue.toString().trim();
+                if (link.length() > 1 && (link.charAt(0) == '"' || link.charAt(0) == '\'')) {
+                    link = link.substring(1, link.length() - 1).trim();
+                }
+                values.add(link);
+                isInCssValue = false;
+                cssMatched = 0;
+            } else if (cssValue.length() <= MAX_LINK_LENGTH) {
+                cssValue.append(c);
+            }
+        } else if (Character.toLowerCase(c) == CSS_URL.charAt(cssMatched)) {
+            cssMatched++;
+            if (cssMatched == CSS_URL.length()) {
+                cssValue.setLength(0);
+                isInCssValue = true;
+            }
+        } else {
+            cssMatched = Character.toLowerCase(c) == CSS_URL.charAt(0) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Разрешает найденные значения в абсолютные ссылки
+     *
+     * @return уникальные ссылки в порядке появления
+     */
+    private Set<String> resolveAll() {
+        Set<String> found = new LinkedHashSet<>();
+        URL base = base();
+        for (String raw : values) {
+            String link = resolve(base, raw);
+            if (link != null && link.startsWith("http")) {
+                found.add(link);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Возвращает адрес, относительно которого разрешаются ссылки: base href, разрешенный относительно страницы,
+     * или сама страница
+     *
+     * @return базовый адрес, null если адрес страницы не указан
+     */
+    private URL base() {
+        if (pageUrl == null) {
+            return null;
+        }
+        try {
+            URL page = new URL(pageUrl);
+            return baseHref == null || baseHref.isEmpty() ? page : new URL(page, baseHref);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Разрешает ссылку относительно базового адреса
+     *
+     * @param base - базовый адрес или null
+     * @param raw  - значение из верстки
+     * @return абсолютная ссылка или null, если ссылка не ведет на веб-страницу
+     */
+    private String resolve(URL base, String raw) {
+        if (raw.isEmpty() || raw.startsWith("#")) {
+            return null;
+        }
+        if (base == null || raw.startsWith("http")) {
+            return raw;
+        }
+        try {
+            return new URL(base, raw).toString();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Заменяет html-сущности, которые встречаются в адресах
+     *
+     * @param text - значение атрибута
+     * @return значение с замененными сущностями
+     */
+    private String decode(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        return text.replace("&quot;", "\"").replace("&#39;", "'").replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private boolean is(StringBuilder builder, String text) {
+        if (builder.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (builder.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
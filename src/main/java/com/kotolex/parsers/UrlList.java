@@ -11,6 +11,7 @@ import java.util.stream.Collectors;
  *
  * @author kotolex
  * @version 1.01
+ * @see StreamingUrlList
  */
 public class UrlList implements UrlLinksList {
     /** Лист с содержимым веб-страницы (верстка) */
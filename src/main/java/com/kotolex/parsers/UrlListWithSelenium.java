@@ -1,7 +1,10 @@
 package com.kotolex.parsers;
 
 import com.kotolex.interfaces.UrlLinksList;
+import com.kotolex.services.DriverPool;
+import com.kotolex.services.SimpleConsole;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.htmlunit.HtmlUnitDriver;
 
@@ -13,24 +16,38 @@ import java.util.stream.Collectors;
 /**
  * Класс получения ссылок методами Selenium WebDriver, собирает даже относительные ссылки.
  * Сбор ссылок происходит только один раз, при дальнейших запросах возвращается уже сформированный список! Сразу после
- * сбора ссылок экземпляр драйвера уничтожается.
+ * сбора ссылок экземпляр драйвера уничтожается, либо, если указан пул, возвращается в пул.
  *
  * @author kotolex
- * @version 1.1
+ * @version 1.3
+ * @see DriverPool
  */
 public final class UrlListWithSelenium implements UrlLinksList {
     private final String webPageUrl;
-    private final HtmlUnitDriver driver;
+    /**
+     * Пул драйверов, null если драйвер создается для одной страницы
+     */
+    private final DriverPool pool;
     private List<String> list;
 
     /**
-     * Конструктор
+     * Конструктор, драйвер создается только для этой страницы
      *
      * @param webPageUrl - страница, на которой ищутся ссылки
      */
     public UrlListWithSelenium(String webPageUrl) {
+        this(webPageUrl, null);
+    }
+
+    /**
+     * Конструктор с пулом драйверов
+     *
+     * @param webPageUrl - страница, на которой ищутся ссылки
+     * @param pool       - пул, из которого берется драйвер на время сбора ссылок
+     */
+    public UrlListWithSelenium(String webPageUrl, DriverPool pool) {
         this.webPageUrl = webPageUrl;
-        driver = new HtmlUnitDriver(false);
+        this.pool = pool;
     }
 
     /**
@@ -43,15 +60,38 @@ public final class UrlListWithSelenium implements UrlLinksList {
         }
         list = new ArrayList<>();
         disableInfoLogging();
+        if (pool == null) {
+            HtmlUnitDriver driver = new HtmlUnitDriver(false);
+            collect(driver);
+            driver.quit();
+            return list;
+        }
+        try (DriverPool.Lease lease = pool.borrow()) {
+            if (!collect(lease.driver())) {
+                lease.invalidate();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return list;
+    }
+
+    /**
+     * Открывает страницу в драйвере и собирает ссылки в список
+     *
+     * @param driver - драйвер
+     * @return true, если ошибок не было
+     */
+    private boolean collect(WebDriver driver) {
         try {
             driver.get(webPageUrl);
-            list.addAll(getListByTagAndAttribute("a", "href"));
-            list.addAll(getListByTagAndAttribute("img", "src"));
+            list.addAll(getListByTagAndAttribute(driver, "a", "href"));
+            list.addAll(getListByTagAndAttribute(driver, "img", "src"));
+            return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            new SimpleConsole().println(webPageUrl + " raise exception in WebDriver " + e.getMessage());
+            return false;
         }
-        driver.quit();
-        return list;
     }
 
     /**
@@ -65,12 +105,13 @@ public final class UrlListWithSelenium implements UrlLinksList {
     /**
      * Метод для получения списка ссылок из верстки методами ВебДрайвера
      *
+     * @param driver    драйвер с открытой страницей
      * @param tag       передаем "a" или "img"
      * @param attribute передаем "href" или "src" соответственно
      * @return лист уникальных ссылок
      * @throws WebDriverException в случае ошибок самого вебДрайвера
      */
-    private List<String> getListByTagAndAttribute(String tag, String attribute) throws WebDriverException {
+    private List<String> getListByTagAndAttribute(WebDriver driver, String tag, String attribute) throws WebDriverException {
         return driver.findElements(By.tagName(tag)).parallelStream()
                 .filter((n) -> n.getAttribute(attribute) != null)
                 .map((n) -> n.getAttribute(attribute))
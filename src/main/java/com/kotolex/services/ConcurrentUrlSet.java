@@ -0,0 +1,53 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.UrlSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Множество ссылок на основе ConcurrentHashMap: захват ссылки атомарный и не блокирует остальные потоки.
+ * Хранит сами ссылки, поэтому их можно получить после проверки
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class ConcurrentUrlSet implements UrlSet {
+    private final Set<String> set = ConcurrentHashMap.newKeySet();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean claim(String url) {
+        return set.add(url);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(String url) {
+        return set.contains(url);
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public void clear() {
+        set.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> urls() {
+        return new ArrayList<>(set);
+    }
+}
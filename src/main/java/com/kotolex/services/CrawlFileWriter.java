@@ -0,0 +1,113 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.CrawlListener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Основа получателей событий, записывающих каждое событие строкой в файл. Запись синхронизирована, буфер
+ * сбрасывается после каждой посещенной страницы и по завершении проверки, поэтому файл можно читать по ходу
+ * проверки
+ *
+ * @author kotolex
+ * @version 1.1
+ */
+abstract class CrawlFileWriter implements CrawlListener, AutoCloseable {
+    private final BufferedWriter writer;
+
+    /**
+     * @param file - файл, существующий файл перезаписывается
+     */
+    CrawlFileWriter(Path file) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Форматирует событие в строку файла
+     *
+     * @param event     - имя события
+     * @param link      - ссылка
+     * @param referrer  - страница со ссылкой, null если ее нет
+     * @param available - результат проверки, null если его нет
+     * @return строка без перевода строки
+     */
+    abstract String format(String event, String link, String referrer, Boolean available);
+
+    @Override
+    public void onLinkFound(String link, String referrer) {
+        write(format("found", link, referrer, null), false);
+    }
+
+    @Override
+    public void onChecked(String link, boolean available) {
+        write(format("checked", link, null, available), false);
+    }
+
+    @Override
+    public void onDisallowed(String link) {
+        write(format("disallowed", link, null, null), false);
+    }
+
+    @Override
+    public void onVisited(String url) {
+        write(format("visited", url, null, null), true);
+    }
+
+    @Override
+    public void onBroken(String link, String referrer) {
+        write(format("broken", link, referrer, false), false);
+    }
+
+    @Override
+    public synchronized void onFinished() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сбрасывает буфер и закрывает файл
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Записывает строку сразу, без события, например заголовок файла
+     */
+    final synchronized void writeLine(String line) {
+        write(line, false);
+    }
+
+    private synchronized void write(String line, boolean flush) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            if (flush) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.kotolex.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Журнал обхода сайта, дописываемый только в конец: постановка ссылки в очередь, завершение ее проверки,
+ * сломанные ссылки, начало и завершение перехода на страницу. По журналу после падения или перезапуска
+ * восстанавливаются проверенные и посещенные ссылки, сломанные ссылки и незавершенная работа.
+ * Записи попадают в файл в порядке вызова, буфер сбрасывается после каждой посещенной страницы, поэтому при падении
+ * теряется только хвост журнала, а незаписанные события просто повторяются при возобновлении.
+ * При возобновлении журнал сжимается: записи, которые больше не нужны, отбрасываются
+ *
+ * @author kotolex
+ * @version 1.2
+ * @see DiskFrontier
+ */
+public final class CrawlJournal implements AutoCloseable {
+    /**
+     * Имя файла журнала в папке контрольной точки
+     */
+    public static final String FILE_NAME = "journal.log";
+    private final Path file;
+    private BufferedWriter writer;
+
+    /**
+     * События журнала, в файле каждое записывается одной буквой
+     */
+    public enum Event {
+        /**
+         * Ссылка поставлена в очередь на проверку
+         */
+        QUEUED('Q'),
+        /**
+         * Проверка ссылки завершена
+         */
+        CHECKED('C'),
+        /**
+         * Ссылка не проверялась, так как ее запрещает robots.txt
+         */
+        DISALLOWED('D'),
+        /**
+         * Ссылка сломана
+         */
+        BROKEN('B'),
+        /**
+         * Страница захвачена для перехода
+         */
+        VISITING('V'),
+        /**
+         * Все ссылки страницы поставлены в очередь
+         */
+        VISITED('W');
+
+        private final char code;
+
+        Event(char code) {
+            this.code = code;
+        }
+
+        private static Event of(char code) {
+            for (Event event : values()) {
+                if (event.code == code) {
+                    return event;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Получатель событий при чтении журнала
+     */
+    public interface Listener {
+        /**
+         * @param event    - событие
+         * @param url      - ссылка
+         * @param referrer - страница, на которой найдена ссылка, null для событий без страницы
+         */
+        void onEvent(Event event, String url, String referrer);
+    }
+
+    /**
+     * Отбирает события, которые остаются в журнале при сжатии
+     */
+    public interface Filter {
+        /**
+         * @param event    - событие
+         * @param url      - ссылка
+         * @param referrer - страница, на которой найдена ссылка, null для событий без страницы
+         * @return true, если запись нужно оставить
+         */
+        boolean keep(Event event, String url, String referrer);
+    }
+
+    /**
+     * @param dir - папка контрольной точки, создается при необходимости
+     */
+    public CrawlJournal(Path dir) {
+        this.file = dir.resolve(FILE_NAME);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает есть ли журнал незавершенного обхода
+     *
+     * @return true, если журнал существует
+     */
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Последовательно передает получателю все события журнала. Неполная последняя строка (запись, прерванная
+     * падением) пропускается
+     *
+     * @param listener - получатель событий
+     */
+    public void replay(Listener listener) {
+        if (!exists()) {
+            return;
+        }
+        boolean complete = endsWithNewLine();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (next != null || complete) {
+                    replayLine(line, listener);
+                }
+                line = next;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Переписывает журнал, оставляя только записи, отобранные фильтром. Фильтр получает события в порядке журнала.
+     * Новый журнал сначала пишется во временный файл и затем заменяет старый, поэтому падение во время сжатия
+     * оставляет прежний журнал
+     *
+     * @param filter - фильтр записей
+     */
+    public synchronized void compact(Filter filter) {
+        if (!exists()) {
+            return;
+        }
+        close();
+        Path compacted = file.resolveSibling(FILE_NAME + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            replay((event, url, referrer) -> {
+                if (filter.keep(event, url, referrer)) {
+                    try {
+                        writeLine(out, event, url, referrer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void queued(String link, String referrer) {
+        write(Event.QUEUED, link, referrer, false);
+    }
+
+    public void checked(String link) {
+        write(Event.CHECKED, link, null, false);
+    }
+
+    public void disallowed(String link) {
+        write(Event.DISALLOWED, link, null, false);
+    }
+
+    public void broken(String link, String referrer) {
+        write(Event.BROKEN, link, referrer, false);
+    }
+
+    public void visiting(String url) {
+        write(Event.VISITING, url, null, false);
+    }
+
+    public void visited(String url) {
+        write(Event.VISITED, url, null, true);
+    }
+
+    /**
+     * Удаляет журнал после успешно завершенного обхода, следующий обход начнется заново
+     */
+    public synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сбрасывает буфер и закрывает файл, журнал остается для возобновления
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    private void replayLine(String line, Listener listener) {
+        String[] parts = line.split("\t", -1);
+        Event event = line.isEmpty() ? null : Event.of(line.charAt(0));
+        if (event == null || parts.length < 2 || parts[0].length() != 1) {
+            return;
+        }
+        listener.onEvent(event, unescape(parts[1]), parts.length > 2 ? unescape(parts[2]) : null);
+    }
+
+    private boolean endsWithNewLine() {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            if (raf.length() == 0) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Отрезает неполную последнюю строку, чтобы новые записи не склеились с ней
+     */
+    private void truncateIncompleteLine() throws IOException {
+        if (!exists() || endsWithNewLine()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long position = raf.length() - 1;
+            while (position >= 0) {
+                raf.seek(position);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                position--;
+            }
+            raf.setLength(position + 1);
+        }
+    }
+
+    private synchronized void write(Event event, String url, String referrer, boolean flush) {
+        try {
+            if (writer == null) {
+                truncateIncompleteLine();
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+            writeLine(writer, event, url, referrer);
+            if (flush) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLine(BufferedWriter out, Event event, String url, String referrer) throws IOException {
+        out.write(event.code);
+        out.write('\t');
+        out.write(escape(url));
+        if (referrer != null) {
+            out.write('\t');
+            out.write(escape(referrer));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Экранирует обратной косой чертой символы, которые разделяют поля и строки файла
+     *
+     * @param value - строка
+     * @return строка без табуляций и переводов строк
+     */
+    static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                builder.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,375 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.CrawlMetricsMXBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Метрики проверки: гистограммы времен запросов по хостам и фазам (DNS, соединение, первый байт, тело), время
+ * разбора страницы по парсерам, посещенные страницы и проверенные ссылки в секунду, глубина очереди, запросы в
+ * ожидании ответа и полученные байты. Все значения обновляются без блокировок. Метрики доступны через JMX
+ * (registerMBean) и в виде периодического текстового снимка (startReporting).
+ * Гистограммы ведутся отдельно для первых MAX_HOSTS хостов, остальные хосты учитываются вместе под именем "*",
+ * чтобы проверка ссылок на тысячи внешних сайтов не расходовала память на гистограммы
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see LatencyHistogram
+ * @see com.kotolex.pages.MeteredWebPage
+ */
+public final class CrawlMetrics implements CrawlMetricsMXBean {
+    /**
+     * Фазы запроса
+     */
+    public enum Phase {
+        /**
+         * Определение адреса хоста
+         */
+        DNS,
+        /**
+         * Установка соединения, включая TLS
+         */
+        CONNECT,
+        /**
+         * Отправка запроса и ожидание заголовков ответа
+         */
+        TTFB,
+        /**
+         * Получение тела ответа, от заголовков до закрытия ответа
+         */
+        BODY
+    }
+
+    private static final int MAX_HOSTS = 64;
+    private static final String OTHER_HOSTS = "*";
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private final Map<String, LatencyHistogram[]> requests = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> parsing = new ConcurrentHashMap<>();
+    private final AtomicLong visited = new AtomicLong(0);
+    private final AtomicLong checked = new AtomicLong(0);
+    private final AtomicLong wireBytes = new AtomicLong(0);
+    private final AtomicLong decodedBytes = new AtomicLong(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+    private volatile IntSupplier frontierDepth = () -> 0;
+    private volatile long startNanos = System.nanoTime();
+    /**
+     * Значения на момент прошлого снимка, для скорости за период
+     */
+    private long lastSnapshotNanos = startNanos;
+    private long lastVisited;
+    private long lastChecked;
+    private ScheduledExecutorService reporter;
+    private ScheduledFuture<?> report;
+    private ObjectName objectName;
+
+    /**
+     * Добавляет время фазы запроса к ссылке
+     *
+     * @param link  - ссылка запроса
+     * @param phase - фаза
+     * @param nanos - время в наносекундах
+     */
+    public void recordRequest(String link, Phase phase, long nanos) {
+        histograms(hostOf(link))[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Добавляет время разбора страницы
+     *
+     * @param parser - имя парсера, например streaming или selenium
+     * @param nanos  - время в наносекундах
+     */
+    public void recordParse(String parser, long nanos) {
+        parsing.computeIfAbsent(parser, (name) -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void pageVisited() {
+        visited.getAndIncrement();
+    }
+
+    public void linkChecked() {
+        checked.getAndIncrement();
+    }
+
+    /**
+     * Учитывает байты разобранной страницы
+     *
+     * @param wire    - байты, полученные по сети
+     * @param decoded - байты после распаковки
+     */
+    public void addBytes(long wire, long decoded) {
+        wireBytes.getAndAdd(wire);
+        decodedBytes.getAndAdd(decoded);
+    }
+
+    public void requestStarted() {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    }
+
+    public void requestFinished() {
+        inFlight.getAndDecrement();
+    }
+
+    /**
+     * Задает источник глубины очереди: сколько ссылок и страниц ждут обработки
+     *
+     * @param frontierDepth - источник значения
+     */
+    public void setFrontierDepth(IntSupplier frontierDepth) {
+        this.frontierDepth = frontierDepth;
+    }
+
+    /**
+     * Сбрасывает все значения перед новой проверкой
+     */
+    public synchronized void reset() {
+        requests.clear();
+        parsing.clear();
+        visited.set(0);
+        checked.set(0);
+        wireBytes.set(0);
+        decodedBytes.set(0);
+        maxInFlight.set(inFlight.get());
+        startNanos = System.nanoTime();
+        lastSnapshotNanos = startNanos;
+        lastVisited = 0;
+        lastChecked = 0;
+    }
+
+    @Override
+    public long getVisitedPages() {
+        return visited.get();
+    }
+
+    @Override
+    public long getCheckedLinks() {
+        return checked.get();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return perSecond(visited.get(), System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public double getLinksPerSecond() {
+        return perSecond(checked.get(), System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    public int maxInFlightRequests() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public int getFrontierDepth() {
+        return frontierDepth.getAsInt();
+    }
+
+    @Override
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    @Override
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    @Override
+    public Map<String, Double> getRequestLatencies() {
+        Map<String, Double> result = new TreeMap<>();
+        requests.forEach((host, phases) -> {
+            for (Phase phase : Phase.values()) {
+                putPercentiles(result, host + " " + name(phase), phases[phase.ordinal()]);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getParseTimes() {
+        Map<String, Double> result = new TreeMap<>();
+        parsing.forEach((parser, histogram) -> putPercentiles(result, parser, histogram));
+        return result;
+    }
+
+    /**
+     * Возвращает текстовый снимок метрик: скорость за время с прошлого снимка, очередь, запросы в ожидании,
+     * байты, перцентили времен фаз запроса для хостов с наибольшим числом запросов и время разбора страниц
+     *
+     * @return многострочный снимок
+     */
+    public synchronized String snapshot() {
+        long now = System.nanoTime();
+        long pages = visited.get();
+        long links = checked.get();
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "Metrics at %.1f s: %d pages (%.1f/s), %d links (%.1f/s), frontier %d, in flight %d, "
+                        + "%d bytes on the wire, %d decoded",
+                (now - startNanos) / 1e9, pages, perSecond(pages - lastVisited, now - lastSnapshotNanos),
+                links, perSecond(links - lastChecked, now - lastSnapshotNanos), getFrontierDepth(),
+                getInFlightRequests(), getWireBytes(), getDecodedBytes()));
+        lastSnapshotNanos = now;
+        lastVisited = pages;
+        lastChecked = links;
+        List<Map.Entry<String, LatencyHistogram[]>> busiest = requests.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LatencyHistogram[]> e) -> -requestCount(e.getValue())))
+                .limit(5)
+                .collect(Collectors.toList());
+        for (Map.Entry<String, LatencyHistogram[]> host : busiest) {
+            text.append(System.lineSeparator()).append("  ").append(host.getKey()).append(':');
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = host.getValue()[phase.ordinal()];
+                if (histogram.count() > 0) {
+                    text.append(' ').append(name(phase)).append(' ').append(percentiles(histogram)).append(';');
+                }
+            }
+        }
+        parsing.forEach((parser, histogram) -> text.append(System.lineSeparator()).append("  parse ").append(parser)
+                .append(": ").append(percentiles(histogram)));
+        return text.toString();
+    }
+
+    /**
+     * Начинает периодически передавать снимок метрик, предыдущий запуск отменяется
+     *
+     * @param period - период между снимками
+     * @param output - получатель снимка, например SimpleConsole::println
+     */
+    public synchronized void startReporting(Duration period, Consumer<String> output) {
+        stopReporting();
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "jlink-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long millis = Math.max(1, period.toMillis());
+        report = reporter.scheduleAtFixedRate(() -> output.accept(snapshot()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Прекращает передачу снимков
+     */
+    public synchronized void stopReporting() {
+        if (report != null) {
+            report.cancel(false);
+            report = null;
+        }
+    }
+
+    /**
+     * Регистрирует метрики в JMX
+     *
+     * @param name - имя для различения нескольких проверок в одной JVM
+     */
+    public synchronized void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            unregisterMBean();
+            objectName = new ObjectName("com.kotolex.jlink:type=CrawlMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not register metrics " + name, e);
+        }
+    }
+
+    /**
+     * Удаляет метрики из JMX, если они были зарегистрированы
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            new SimpleConsole().println("Can not unregister metrics " + e.getMessage());
+        } finally {
+            objectName = null;
+        }
+    }
+
+    private LatencyHistogram[] histograms(String host) {
+        LatencyHistogram[] phases = requests.get(host);
+        if (phases != null) {
+            return phases;
+        }
+        String key = requests.size() < MAX_HOSTS ? host : OTHER_HOSTS;
+        return requests.computeIfAbsent(key, (name) -> {
+            LatencyHistogram[] created = new LatencyHistogram[Phase.values().length];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new LatencyHistogram();
+            }
+            return created;
+        });
+    }
+
+    private long requestCount(LatencyHistogram[] phases) {
+        return phases[Phase.TTFB.ordinal()].count();
+    }
+
+    private void putPercentiles(Map<String, Double> result, String prefix, LatencyHistogram histogram) {
+        if (histogram.count() == 0) {
+            return;
+        }
+        for (double percentile : PERCENTILES) {
+            result.put(prefix + " p" + Math.round(percentile * 100), histogram.percentileMillis(percentile));
+        }
+        result.put(prefix + " max", histogram.maxMillis());
+    }
+
+    private String percentiles(LatencyHistogram histogram) {
+        StringBuilder text = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, "p%d %.1f ", Math.round(percentile * 100),
+                    histogram.percentileMillis(percentile)));
+        }
+        return text.append(String.format(Locale.ROOT, "max %.1f ms (%d)", histogram.maxMillis(), histogram.count()))
+                .toString();
+    }
+
+    private String name(Phase phase) {
+        return phase.name().toLowerCase(Locale.ROOT);
+    }
+
+    private double perSecond(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    private String hostOf(String link) {
+        try {
+            String host = URI.create(link).getHost();
+            return host == null ? OTHER_HOSTS : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return OTHER_HOSTS;
+        }
+    }
+}
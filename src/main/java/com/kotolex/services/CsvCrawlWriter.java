@@ -0,0 +1,35 @@
+package com.kotolex.services;
+
+import java.nio.file.Path;
+
+/**
+ * Получатель событий, записывающий каждое событие строкой CSV с колонками event,link,referrer,available,time.
+ * Пустые колонки означают, что значение к событию не относится, поля с запятыми и кавычками заключаются в кавычки
+ * по RFC 4180
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class CsvCrawlWriter extends CrawlFileWriter {
+    /**
+     * @param file - файл для записи, существующий файл перезаписывается
+     */
+    public CsvCrawlWriter(Path file) {
+        super(file);
+        writeLine("event,link,referrer,available,time");
+    }
+
+    @Override
+    String format(String event, String link, String referrer, Boolean available) {
+        return event + ',' + quote(link) + ',' + (referrer == null ? "" : quote(referrer)) + ','
+                + (available == null ? "" : available.toString()) + ',' + System.currentTimeMillis();
+    }
+
+    private String quote(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1
+                && value.indexOf('\r') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,205 @@
+package com.kotolex.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Очередь еще не выполненной работы обхода: ссылок для проверки и страниц для перехода. В памяти держится не больше
+ * memoryLimit элементов, остальные дописываются в файл и подчитываются из него пачками по мере освобождения места.
+ * Пока в файле есть непрочитанные элементы, новые тоже идут в файл, поэтому порядок обхода в ширину сохраняется
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see CrawlJournal
+ */
+public final class DiskFrontier implements AutoCloseable {
+    /**
+     * Имя файла для элементов, не поместившихся в память
+     */
+    public static final String FILE_NAME = "frontier.spill";
+    private final Path file;
+    private final int memoryLimit;
+    private final ArrayDeque<Entry> memory = new ArrayDeque<>();
+    private BufferedWriter writer;
+    private BufferedReader reader;
+    /**
+     * Количество записанных в файл, но еще не прочитанных элементов
+     */
+    private long spilled;
+
+    /**
+     * Элемент очереди: ссылка для проверки со страницей, где она найдена, или страница для перехода
+     */
+    public static final class Entry {
+        private final String url;
+        private final String referrer;
+
+        private Entry(String url, String referrer) {
+            this.url = url;
+            this.referrer = referrer;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        /**
+         * @return страница, на которой найдена ссылка, null для страницы перехода
+         */
+        public String referrer() {
+            return referrer;
+        }
+
+        /**
+         * @return true, если это страница для перехода, а не ссылка для проверки
+         */
+        public boolean isVisit() {
+            return referrer == null;
+        }
+    }
+
+    /**
+     * @param dir         - папка для файла очереди, создается при необходимости
+     * @param memoryLimit - сколько элементов держать в памяти
+     */
+    public DiskFrontier(Path dir, int memoryLimit) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("Memory limit must be positive, but was " + memoryLimit);
+        }
+        this.file = dir.resolve(FILE_NAME);
+        this.memoryLimit = memoryLimit;
+        try {
+            Files.createDirectories(dir);
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ставит в очередь ссылку для проверки
+     *
+     * @param link     - ссылка
+     * @param referrer - страница, на которой она найдена
+     */
+    public void offerCheck(String link, String referrer) {
+        offer(new Entry(link, referrer));
+    }
+
+    /**
+     * Ставит в очередь страницу для перехода
+     *
+     * @param url - страница
+     */
+    public void offerVisit(String url) {
+        offer(new Entry(url, null));
+    }
+
+    /**
+     * Возвращает следующий элемент очереди
+     *
+     * @return элемент или null, если очередь пуста
+     */
+    public synchronized Entry poll() {
+        if (memory.isEmpty() && spilled > 0) {
+            load();
+        }
+        return memory.poll();
+    }
+
+    public synchronized long size() {
+        return memory.size() + spilled;
+    }
+
+    /**
+     * Возвращает количество элементов, находящихся в файле
+     *
+     * @return элементы вне памяти
+     */
+    public synchronized long spilledCount() {
+        return spilled;
+    }
+
+    /**
+     * Очищает очередь и удаляет файл
+     */
+    @Override
+    public synchronized void close() {
+        memory.clear();
+        reset();
+    }
+
+    private synchronized void offer(Entry entry) {
+        if (spilled == 0 && memory.size() < memoryLimit) {
+            memory.add(entry);
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            writer.write(CrawlJournal.escape(entry.url));
+            if (entry.referrer != null) {
+                writer.write('\t');
+                writer.write(CrawlJournal.escape(entry.referrer));
+            }
+            writer.write('\n');
+            spilled++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Подчитывает из файла в память до половины лимита элементов, прочитанный до конца файл удаляется
+     */
+    private void load() {
+        try {
+            writer.flush();
+            if (reader == null) {
+                reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            }
+            int batch = Math.max(1, memoryLimit / 2);
+            while (spilled > 0 && memory.size() < batch) {
+                String line = reader.readLine();
+                int tab = line.indexOf('\t');
+                memory.add(tab < 0 ? new Entry(CrawlJournal.unescape(line), null)
+                        : new Entry(CrawlJournal.unescape(line.substring(0, tab)),
+                        CrawlJournal.unescape(line.substring(tab + 1))));
+                spilled--;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (spilled == 0) {
+            reset();
+        }
+    }
+
+    /**
+     * Закрывает и удаляет файл очереди
+     */
+    private void reset() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer = null;
+            reader = null;
+            spilled = 0;
+        }
+    }
+}
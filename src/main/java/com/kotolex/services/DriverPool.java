@@ -0,0 +1,227 @@
+package com.kotolex.services;
+
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный пул "прогретых" экземпляров HtmlUnitDriver. Драйвер берется на одну страницу и возвращается в пул
+ * после очистки, поэтому затраты на его создание не повторяются для каждой страницы. Драйвер пересоздается после
+ * заданного количества страниц или после ошибки, простаивающие драйверы закрываются фоновым потоком.
+ * По умолчанию в драйверах включен JavaScript: через пул страницы разбираются в гибридном режиме именно потому, что их
+ * ссылки создаются скриптами, а без скриптов драйвер видит ту же разметку, что и потоковый парсер.
+ *
+ * @author kotolex
+ * @version 1.2
+ * @see com.kotolex.parsers.UrlListWithSelenium
+ */
+public final class DriverPool implements Closeable {
+    /**
+     * Размер пула по умолчанию
+     */
+    private static final int DEFAULT_MAX_SIZE = Runtime.getRuntime().availableProcessors();
+    /**
+     * Количество страниц по умолчанию, после которого драйвер пересоздается
+     */
+    private static final int DEFAULT_MAX_USES = 100;
+    /**
+     * Время простоя в секундах по умолчанию, после которого драйвер закрывается
+     */
+    private static final long DEFAULT_MAX_IDLE_SECONDS = 60;
+    private final int maxUses;
+    private final long maxIdleMillis;
+    private final boolean javascript;
+    /**
+     * Ограничивает количество одновременно выданных драйверов
+     */
+    private final Semaphore permits;
+    /**
+     * Свободные драйверы, последний возвращенный в начале
+     */
+    private final Deque<Lease> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Конструктор с настройками по умолчанию
+     */
+    public DriverPool() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_USES, DEFAULT_MAX_IDLE_SECONDS);
+    }
+
+    /**
+     * Конструктор, драйверы создаются с включенным JavaScript
+     *
+     * @param maxSize        - максимальное количество драйверов
+     * @param maxUses        - количество страниц, после которого драйвер пересоздается
+     * @param maxIdleSeconds - время простоя в секундах, после которого свободный драйвер закрывается
+     */
+    public DriverPool(int maxSize, int maxUses, long maxIdleSeconds) {
+        this(maxSize, maxUses, maxIdleSeconds, true);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param maxSize        - максимальное количество драйверов
+     * @param maxUses        - количество страниц, после которого драйвер пересоздается
+     * @param maxIdleSeconds - время простоя в секундах, после которого свободный драйвер закрывается
+     * @param javascript     - выполнять ли скрипты страниц, без них ссылки, создаваемые скриптами, не находятся
+     */
+    public DriverPool(int maxSize, int maxUses, long maxIdleSeconds, boolean javascript) {
+        if (maxSize < 1 || maxUses < 1 || maxIdleSeconds < 1) {
+            throw new IllegalArgumentException("Pool size, uses and idle time must be positive");
+        }
+        this.maxUses = maxUses;
+        this.javascript = javascript;
+        this.maxIdleMillis = TimeUnit.SECONDS.toMillis(maxIdleSeconds);
+        permits = new Semaphore(maxSize, true);
+        evictor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "jlink-driver-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, maxIdleSeconds / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Берет драйвер из пула, при необходимости создает новый. Если все драйверы заняты, ждет освобождения. Если
+     * создать драйвер не удалось, разрешение возвращается, чтобы пул не уменьшался
+     *
+     * @return выданный драйвер, его нужно закрыть (вернуть в пул) после использования
+     * @throws InterruptedException если поток был прерван во время ожидания
+     */
+    public Lease borrow() throws InterruptedException {
+        if (isClosed) {
+            throw new IllegalStateException("Driver pool is closed");
+        }
+        permits.acquire();
+        Lease lease;
+        synchronized (idle) {
+            lease = idle.pollFirst();
+        }
+        if (lease != null) {
+            return lease;
+        }
+        try {
+            return new Lease(new HtmlUnitDriver(javascript));
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Закрывает все свободные драйверы и останавливает фоновую очистку. Выданные драйверы закрываются при возврате
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        evictor.shutdownNow();
+        synchronized (idle) {
+            idle.forEach(Lease::quit);
+            idle.clear();
+        }
+    }
+
+    /**
+     * Возвращает драйвер в пул: очищает его для следующей страницы или закрывает, если он отработал свое или сломан
+     *
+     * @param lease - возвращаемый драйвер
+     */
+    private void release(Lease lease) {
+        try {
+            if (isClosed || lease.isBroken || ++lease.uses >= maxUses || !lease.reset()) {
+                lease.quit();
+            } else {
+                lease.releasedAt = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(lease);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Закрывает драйверы, простаивающие дольше заданного времени
+     */
+    private void evictIdle() {
+        long border = System.currentTimeMillis() - maxIdleMillis;
+        synchronized (idle) {
+            Iterator<Lease> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                Lease lease = iterator.next();
+                if (lease.releasedAt < border) {
+                    iterator.remove();
+                    lease.quit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Драйвер, выданный из пула. Закрытие возвращает его в пул
+     */
+    public final class Lease implements AutoCloseable {
+        private final HtmlUnitDriver driver;
+        private int uses = 0;
+        private long releasedAt;
+        private boolean isBroken = false;
+
+        private Lease(HtmlUnitDriver driver) {
+            this.driver = driver;
+        }
+
+        public HtmlUnitDriver driver() {
+            return driver;
+        }
+
+        /**
+         * Помечает драйвер как сломанный, при возврате он будет закрыт, а не использован повторно
+         */
+        public void invalidate() {
+            isBroken = true;
+        }
+
+        /**
+         * Возвращает драйвер в пул
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        /**
+         * Очищает состояние драйвера после страницы
+         *
+         * @return true, если очистка прошла успешно и драйвер можно использовать повторно
+         */
+        private boolean reset() {
+            try {
+                driver.manage().deleteAllCookies();
+                driver.get("about:blank");
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        private void quit() {
+            try {
+                driver.quit();
+            } catch (RuntimeException e) {
+                new SimpleConsole().println("Driver quit raise exception " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.UrlSet;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Компактное множество ссылок для очень больших сайтов: вместо строки хранится ее 64-битный отпечаток в примитивной
+ * таблице с открытой адресацией, около 8-16 байт на ссылку вместо сотен байт на строку и узел HashMap.
+ * Таблица разбита на сегменты, у каждого своя ReentrantReadWriteLock: вставка и поиск берут блокировку на чтение
+ * и идут параллельно, ячейка таблицы занимается через CAS, поэтому из двух потоков с одной ссылкой побеждает один.
+ * Блокировка на запись берется только при увеличении и очистке сегмента. Вероятность совпадения отпечатков двух разных ссылок на миллионах ссылок
+ * составляет миллионные доли процента. Сами ссылки не хранятся!
+ *
+ * @author kotolex
+ * @version 1.1
+ */
+public final class FingerprintUrlSet implements UrlSet {
+    /**
+     * Количество сегментов, степень двойки
+     */
+    private static final int SEGMENTS = 64;
+    /**
+     * Начальный размер таблицы сегмента, степень двойки
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * Пустая ячейка таблицы, отпечаток 0 заменяется на 1
+     */
+    private static final long EMPTY = 0L;
+    private static final double LOAD_FACTOR = 0.7;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public FingerprintUrlSet() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean claim(String url) {
+        long fingerprint = fingerprint(url);
+        return segment(fingerprint).claim(fingerprint);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        return segment(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count.get();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Сами ссылки не хранятся, поэтому получить их нельзя
+     *
+     * @throws UnsupportedOperationException всегда
+     */
+    @Override
+    public List<String> urls() {
+        throw new UnsupportedOperationException("Compact set keeps only fingerprints of links");
+    }
+
+    /**
+     * Сегмент выбирается по старшим битам отпечатка, позиция в таблице - по младшим
+     */
+    private Segment segment(long fingerprint) {
+        return segments[(int) (fingerprint >>> 58) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Считает 64-битный отпечаток ссылки: FNV-1a по символам и перемешивание битов финализатором MurmurHash3
+     *
+     * @param url - ссылка
+     * @return отпечаток, никогда не равный EMPTY
+     */
+    private long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    /**
+     * Сегмент: таблица с открытой адресацией и линейным пробированием
+     */
+    private static final class Segment {
+        /**
+         * Вставки и поиск берут блокировку на чтение и работают параллельно, увеличение таблицы - на запись
+         */
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final AtomicInteger count = new AtomicInteger(0);
+        private volatile AtomicLongArray table = new AtomicLongArray(INITIAL_CAPACITY);
+
+        boolean claim(long fingerprint) {
+            while (true) {
+                int result;
+                lock.readLock().lock();
+                try {
+                    AtomicLongArray current = table;
+                    result = insert(current, fingerprint);
+                    if (result == 1 && count.incrementAndGet() <= current.length() * LOAD_FACTOR) {
+                        return true;
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (result == 0) {
+                    return false;
+                }
+                grow();
+                if (result == 1) {
+                    return true;
+                }
+            }
+        }
+
+        boolean contains(long fingerprint) {
+            lock.readLock().lock();
+            try {
+                AtomicLongArray current = table;
+                int mask = current.length() - 1;
+                for (int i = (int) fingerprint & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                    long value = current.get(i);
+                    if (value == fingerprint) {
+                        return true;
+                    }
+                    if (value == EMPTY) {
+                        return false;
+                    }
+                }
+                return false;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                table = new AtomicLongArray(INITIAL_CAPACITY);
+                count.set(0);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Вставляет отпечаток через CAS
+         *
+         * @return 1 - вставлен, 0 - уже был, -1 - в таблице нет места
+         */
+        private int insert(AtomicLongArray current, long fingerprint) {
+            int mask = current.length() - 1;
+            for (int i = (int) fingerprint & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long value = current.get(i);
+                if (value == EMPTY) {
+                    if (current.compareAndSet(i, EMPTY, fingerprint)) {
+                        return 1;
+                    }
+                    value = current.get(i);
+                }
+                if (value == fingerprint) {
+                    return 0;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Удваивает таблицу, если она заполнена больше допустимого
+         */
+        private void grow() {
+            lock.writeLock().lock();
+            try {
+                AtomicLongArray current = table;
+                if (count.get() <= current.length() * LOAD_FACTOR) {
+                    return;
+                }
+                AtomicLongArray bigger = new AtomicLongArray(current.length() * 2);
+                for (int i = 0; i < current.length(); i++) {
+                    long value = current.get(i);
+                    if (value != EMPTY) {
+                        insert(bigger, value);
+                    }
+                }
+                table = bigger;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.kotolex.services;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Планировщик вежливых запросов: ограничивает для каждого хоста число одновременных запросов и частоту их отправки.
+ * Допустимое число одновременных запросов подстраивается по принципу AIMD: каждый нормальный ответ немного
+ * увеличивает его (примерно на единицу за "окно" запросов), а ответ 429, 503, ошибка соединения или слишком
+ * медленный ответ уменьшают вдвое, но не чаще раза за время ответа, чтобы одна пачка ошибок не обнуляла лимит.
+ * Retry-After и Crawl-delay сдвигают время, раньше которого к хосту не обращаются
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see com.kotolex.pages.PoliteWebPage
+ */
+public final class HostScheduler {
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 20;
+    /**
+     * Ответ медленнее считается признаком перегрузки хоста
+     */
+    private static final Duration DEFAULT_SLOW_RESPONSE = Duration.ofSeconds(5);
+    /**
+     * Начальный лимит одновременных запросов к новому хосту
+     */
+    private static final double INITIAL_LIMIT = 2;
+    private final int maxConcurrency;
+    /**
+     * Минимальный интервал между началом запросов к одному хосту
+     */
+    private final long intervalNanos;
+    private final long slowNanos;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AtomicInteger throttled = new AtomicInteger(0);
+
+    /**
+     * Состояние одного хоста
+     */
+    private static final class Host {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private double limit;
+        private int active;
+        private long interval;
+        /**
+         * Время (System.nanoTime), раньше которого новый запрос не начинается
+         */
+        private long nextStart = System.nanoTime();
+        private long lastDecrease = System.nanoTime();
+
+        private Host(double limit, long interval) {
+            this.limit = limit;
+            this.interval = interval;
+        }
+    }
+
+    /**
+     * Конструктор: до 8 одновременных запросов и до 20 запросов в секунду к одному хосту
+     */
+    public HostScheduler() {
+        this(DEFAULT_MAX_CONCURRENCY, DEFAULT_REQUESTS_PER_SECOND);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param maxConcurrency    - максимум одновременных запросов к одному хосту
+     * @param requestsPerSecond - максимум запросов в секунду к одному хосту
+     */
+    public HostScheduler(int maxConcurrency, double requestsPerSecond) {
+        this(maxConcurrency, requestsPerSecond, DEFAULT_SLOW_RESPONSE);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param maxConcurrency    - максимум одновременных запросов к одному хосту
+     * @param requestsPerSecond - максимум запросов в секунду к одному хосту
+     * @param slowResponse      - время ответа, после которого хост считается перегруженным
+     */
+    public HostScheduler(int maxConcurrency, double requestsPerSecond, Duration slowResponse) {
+        if (maxConcurrency <= 0 || requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Concurrency and rate must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.slowNanos = slowResponse.toNanos();
+    }
+
+    /**
+     * Задает для хоста задержку между запросами, например из Crawl-delay в robots.txt. Задержка меньше
+     * интервала планировщика игнорируется
+     *
+     * @param host  - имя хоста
+     * @param delay - задержка между запросами
+     * @return этот же планировщик, для цепочки вызовов
+     */
+    public HostScheduler crawlDelay(String host, Duration delay) {
+        Host state = host(host.toLowerCase(Locale.ROOT));
+        state.lock.lock();
+        try {
+            state.interval = Math.max(state.interval, delay.toNanos());
+        } finally {
+            state.lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Ожидает, пока к хосту ссылки можно будет отправить запрос, и занимает место для него
+     *
+     * @param link - ссылка для запроса
+     * @throws InterruptedException если ожидающий поток был прерван
+     */
+    public void acquire(String link) throws InterruptedException {
+        Host host = host(hostOf(link));
+        host.lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                boolean hasSlot = host.active < (int) host.limit;
+                if (hasSlot && now >= host.nextStart) {
+                    host.active++;
+                    host.nextStart = now + host.interval;
+                    return;
+                }
+                if (hasSlot) {
+                    host.changed.awaitNanos(host.nextStart - now);
+                } else {
+                    host.changed.await();
+                }
+            }
+        } finally {
+            host.lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место, занятое acquire, и подстраивает лимит хоста по результату запроса
+     *
+     * @param link         - ссылка, к которой был запрос
+     * @param status       - код ответа, 0 при ошибках соединения
+     * @param latencyNanos - время ответа
+     */
+    public void release(String link, int status, long latencyNanos) {
+        Host host = host(hostOf(link));
+        host.lock.lock();
+        try {
+            host.active--;
+            long now = System.nanoTime();
+            if (isThrottled(status) || status == 0 || latencyNanos > slowNanos) {
+                if (now - host.lastDecrease > latencyNanos) {
+                    host.limit = Math.max(1, host.limit / 2);
+                    host.lastDecrease = now;
+                }
+            } else {
+                host.limit = Math.min(maxConcurrency, host.limit + 1 / host.limit);
+            }
+            host.changed.signalAll();
+        } finally {
+            host.lock.unlock();
+        }
+    }
+
+    /**
+     * Откладывает следующие запросы к хосту ссылки, например по заголовку Retry-After
+     *
+     * @param link  - ссылка, на которую пришел ответ 429 или 503
+     * @param delay - задержка
+     */
+    public void backOff(String link, Duration delay) {
+        throttled.getAndIncrement();
+        Host host = host(hostOf(link));
+        host.lock.lock();
+        try {
+            host.nextStart = Math.max(host.nextStart, System.nanoTime() + delay.toNanos());
+            host.changed.signalAll();
+        } finally {
+            host.lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает является ли код ответа просьбой сервера снизить нагрузку
+     *
+     * @param status - код ответа
+     * @return true для 429 и 503
+     */
+    public static boolean isThrottled(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Возвращает количество ответов, после которых запросы к хосту откладывались
+     *
+     * @return количество ответов 429 и 503
+     */
+    public int throttledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Возвращает текущий лимит одновременных запросов к хосту
+     *
+     * @param host - имя хоста
+     * @return лимит, для неизвестного хоста начальный
+     */
+    public int concurrency(String host) {
+        Host state = hosts.get(host.toLowerCase(Locale.ROOT));
+        return state == null ? (int) Math.min(INITIAL_LIMIT, maxConcurrency) : (int) state.limit;
+    }
+
+    private Host host(String name) {
+        return hosts.computeIfAbsent(name, (n) -> new Host(Math.min(INITIAL_LIMIT, maxConcurrency), intervalNanos));
+    }
+
+    private String hostOf(String link) {
+        try {
+            URI uri = URI.create(link);
+            String host = uri.getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.kotolex.services;
+
+import com.kotolex.pages.Timeouts;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пул постоянных (keep-alive) соединений на основе Apache HttpClient. Соединения с одним хостом переиспользуются,
+ * поэтому установка TCP и TLS происходит один раз, а не для каждой ссылки. Пул ограничен общим количеством соединений
+ * и количеством соединений на один маршрут, простаивающие соединения закрываются фоновым потоком.
+ * Соединение и чтение ограничены таймаутами страницы. Ожидание свободного соединения в пуле ограничено отдельным,
+ * более длинным таймаутом: нехватка соединений при движке шире пула - не ошибка ссылки, поэтому PooledWebPage после
+ * такого таймаута ждет снова, а не считает ссылку сломанной. Сжатые ответы клиент не распаковывает сам, это делает
+ * PageResponse, чтобы учитывать байты до и после распаковки.
+ *
+ * @author kotolex
+ * @version 1.2
+ */
+public final class HttpConnectionPool implements Closeable {
+    /**
+     * Максимум соединений в пуле по умолчанию
+     */
+    private static final int DEFAULT_MAX_TOTAL = 200;
+    /**
+     * Максимум соединений на один маршрут (хост) по умолчанию
+     */
+    private static final int DEFAULT_MAX_PER_ROUTE = 50;
+    /**
+     * Время простоя в секундах, после которого соединение закрывается, по умолчанию
+     */
+    private static final long DEFAULT_MAX_IDLE_SECONDS = 30;
+    /**
+     * Время простоя в миллисекундах, после которого соединение проверяется перед повторным использованием
+     */
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+    /**
+     * Сколько по умолчанию ждать свободного соединения в пуле
+     */
+    private static final Duration DEFAULT_LEASE_TIMEOUT = Duration.ofMinutes(1);
+    private final PoolingHttpClientConnectionManager manager;
+    private final CloseableHttpClient client;
+    private final IdleConnectionEvictor evictor;
+
+    /**
+     * Конструктор с ограничениями по умолчанию
+     */
+    public HttpConnectionPool() {
+        this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_MAX_IDLE_SECONDS);
+    }
+
+    /**
+     * Конструктор с таймаутами по умолчанию
+     *
+     * @param maxTotal       - максимум соединений в пуле
+     * @param maxPerRoute    - максимум соединений на один маршрут (хост)
+     * @param maxIdleSeconds - время простоя в секундах, после которого соединение закрывается
+     */
+    public HttpConnectionPool(int maxTotal, int maxPerRoute, long maxIdleSeconds) {
+        this(maxTotal, maxPerRoute, maxIdleSeconds, Timeouts.DEFAULT);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param maxTotal       - максимум соединений в пуле
+     * @param maxPerRoute    - максимум соединений на один маршрут (хост)
+     * @param maxIdleSeconds - время простоя в секундах, после которого соединение закрывается
+     * @param timeouts       - таймауты соединения и чтения
+     */
+    public HttpConnectionPool(int maxTotal, int maxPerRoute, long maxIdleSeconds, Timeouts timeouts) {
+        this(maxTotal, maxPerRoute, maxIdleSeconds, timeouts, DEFAULT_LEASE_TIMEOUT);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param maxTotal       - максимум соединений в пуле
+     * @param maxPerRoute    - максимум соединений на один маршрут (хост)
+     * @param maxIdleSeconds - время простоя в секундах, после которого соединение закрывается
+     * @param timeouts       - таймауты соединения и чтения
+     * @param leaseTimeout   - сколько ждать свободного соединения в пуле, после чего ожидание начинается заново
+     */
+    public HttpConnectionPool(int maxTotal, int maxPerRoute, long maxIdleSeconds, Timeouts timeouts,
+                              Duration leaseTimeout) {
+        manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+        manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+        client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .disableContentCompression()
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeouts.connectMillis())
+                        .setConnectionRequestTimeout((int) Math.min(Integer.MAX_VALUE, leaseTimeout.toMillis()))
+                        .setSocketTimeout(timeouts.readMillis())
+                        .build())
+                .build();
+        evictor = new IdleConnectionEvictor(manager, maxIdleSeconds, TimeUnit.SECONDS);
+        evictor.start();
+    }
+
+    /**
+     * Возвращает клиент, работающий через пул
+     *
+     * @return http-клиент
+     */
+    public CloseableHttpClient client() {
+        return client;
+    }
+
+    /**
+     * Останавливает фоновую очистку и закрывает все соединения пула
+     */
+    @Override
+    public void close() throws IOException {
+        evictor.shutdown();
+        client.close();
+        manager.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.kotolex.services;
+
+import java.nio.file.Path;
+
+/**
+ * Получатель событий, записывающий каждое событие JSON-объектом в отдельной строке (формат JSON Lines), например
+ * {"event":"broken","link":"http://x/a","referrer":"http://x/","available":false,"time":1700000000000}.
+ * Поля referrer и available есть только у событий, к которым они относятся, time - время события в миллисекундах
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class JsonLinesCrawlWriter extends CrawlFileWriter {
+    /**
+     * @param file - файл для записи, существующий файл перезаписывается
+     */
+    public JsonLinesCrawlWriter(Path file) {
+        super(file);
+    }
+
+    @Override
+    String format(String event, String link, String referrer, Boolean available) {
+        StringBuilder line = new StringBuilder(128).append("{\"event\":\"").append(event).append('"');
+        appendField(line, "link", link);
+        if (referrer != null) {
+            appendField(line, "referrer", referrer);
+        }
+        if (available != null) {
+            line.append(",\"available\":").append(available);
+        }
+        return line.append(",\"time\":").append(System.currentTimeMillis()).append('}').toString();
+    }
+
+    private void appendField(StringBuilder line, String name, String value) {
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,119 @@
+package com.kotolex.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма времен без блокировок: значения в микросекундах раскладываются по корзинам, каждая степень двойки
+ * делится на 4 корзины, поэтому перцентиль определяется с точностью до четверти значения. Память постоянна и не
+ * зависит от количества значений, запись - одна атомарная операция, так что гистограмму можно обновлять из всех
+ * потоков проверки
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see CrawlMetrics
+ */
+public final class LatencyHistogram {
+    /**
+     * Корзин на степень двойки
+     */
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong totalMicros = new AtomicLong(0);
+    private final AtomicLong maxMicros = new AtomicLong(0);
+
+    /**
+     * Добавляет время
+     *
+     * @param nanos - время в наносекундах
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.getAndIncrement(bucket(micros));
+        count.getAndIncrement();
+        totalMicros.getAndAdd(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return среднее время в миллисекундах, 0 если значений нет
+     */
+    public double meanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalMicros.get() / 1000.0 / n;
+    }
+
+    /**
+     * @return максимальное время в миллисекундах
+     */
+    public double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Возвращает перцентиль времени: верхнюю границу корзины, в которую он попал
+     *
+     * @param percentile - перцентиль от 0 до 1, например 0.99
+     * @return время в миллисекундах, 0 если значений нет
+     */
+    public double percentileMillis(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    /**
+     * Сбрасывает все значения
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * Значения меньше SUB_BUCKETS получают свою корзину, остальные - по старшей степени двойки и двум следующим битам
+     */
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+}
@@ -0,0 +1,191 @@
+package com.kotolex.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Данные страниц с прошлой проверки для повторной проверки без загрузки неизменившихся страниц: валидаторы ETag и
+ * Last-Modified и извлеченные ссылки. По валидаторам формируется условный запрос, на ответ 304 ссылки страницы
+ * берутся из кэша. Сохраняются только страницы, посещенные в текущей проверке, поэтому удаленные с сайта страницы
+ * из кэша уходят
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class RecrawlCache {
+    private final Path file;
+    /**
+     * Страницы прошлой проверки
+     */
+    private final Map<String, Entry> previous = new HashMap<>();
+    /**
+     * Страницы текущей проверки
+     */
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    /**
+     * Данные одной страницы
+     */
+    public static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final List<String> links;
+
+        /**
+         * @param etag         - значение ETag, пустая строка если его нет
+         * @param lastModified - значение Last-Modified, пустая строка если его нет
+         * @param links        - ссылки со страницы
+         */
+        public Entry(String etag, String lastModified, List<String> links) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.links = links;
+        }
+
+        public List<String> links() {
+            return links;
+        }
+
+        /**
+         * Возвращает есть ли у страницы хотя бы один валидатор
+         *
+         * @return true, если по странице можно сделать условный запрос
+         */
+        public boolean hasValidators() {
+            return !etag.isEmpty() || !lastModified.isEmpty();
+        }
+
+        /**
+         * Возвращает заголовки условного запроса
+         *
+         * @return заголовки If-None-Match и If-Modified-Since
+         */
+        public Map<String, String> conditionalHeaders() {
+            Map<String, String> headers = new HashMap<>();
+            if (!etag.isEmpty()) {
+                headers.put("If-None-Match", etag);
+            }
+            if (!lastModified.isEmpty()) {
+                headers.put("If-Modified-Since", lastModified);
+            }
+            return headers;
+        }
+    }
+
+    /**
+     * Конструктор, загружает данные прошлой проверки, если файл существует
+     *
+     * @param file - файл кэша
+     */
+    public RecrawlCache(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Возвращает данные страницы с прошлой проверки
+     *
+     * @param url - адрес страницы
+     * @return данные страницы, если она была в прошлой проверке и у нее есть валидаторы
+     */
+    public Optional<Entry> previous(String url) {
+        Entry entry = previous.get(url);
+        return entry != null && entry.hasValidators() ? Optional.of(entry) : Optional.empty();
+    }
+
+    /**
+     * Запоминает данные страницы в текущей проверке
+     *
+     * @param url   - адрес страницы
+     * @param entry - данные страницы
+     */
+    public void put(String url, Entry entry) {
+        current.put(url, entry);
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Начинает новую проверку: данные текущей проверки становятся данными прошлой
+     */
+    public synchronized void startRun() {
+        if (!current.isEmpty()) {
+            previous.clear();
+            previous.putAll(current);
+            current.clear();
+        }
+    }
+
+    /**
+     * Сохраняет данные текущей проверки в файл. Запись идет во временный файл, который затем заменяет старый,
+     * поэтому при падении во время записи сохраняется кэш прошлой проверки
+     */
+    public synchronized void save() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> page : current.entrySet()) {
+                    Entry entry = page.getValue();
+                    writer.write(CrawlJournal.escape(page.getKey()));
+                    writer.write('\t');
+                    writer.write(CrawlJournal.escape(entry.etag));
+                    writer.write('\t');
+                    writer.write(CrawlJournal.escape(entry.lastModified));
+                    for (String link : entry.links) {
+                        writer.write('\t');
+                        writer.write(CrawlJournal.escape(link));
+                    }
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Загружает данные прошлой проверки, строки неверного формата пропускаются
+     */
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 3) {
+                    continue;
+                }
+                List<String> links = new ArrayList<>(parts.length - 3);
+                for (String link : Arrays.asList(parts).subList(3, parts.length)) {
+                    links.add(CrawlJournal.unescape(link));
+                }
+                previous.put(CrawlJournal.unescape(parts[0]), new Entry(CrawlJournal.unescape(parts[1]),
+                        CrawlJournal.unescape(parts[2]), Collections.unmodifiableList(links)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.PageFactory;
+import com.kotolex.pages.PageResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Правила robots.txt одного сайта (RFC 9309): разрешенные и запрещенные пути для нашего агента, Crawl-delay и адреса
+ * карт сайта. Используется группа правил, агент которой совпадает с началом имени нашего агента, а если такой нет -
+ * группа "*". Из правил Allow и Disallow побеждает самое длинное совпадение, при равной длине - Allow. В путях
+ * поддерживаются * (любая последовательность символов) и $ (конец адреса). Файл читается построчно и не хранится
+ *
+ * @author kotolex
+ * @version 1.1
+ */
+public final class RobotsTxt {
+    /**
+     * Имя агента по умолчанию, под которым проверка ищет свою группу правил
+     */
+    public static final String DEFAULT_AGENT = "jlink";
+    /**
+     * Больше этого размера robots.txt не читается, как и предписывает RFC 9309
+     */
+    private static final long MAX_SIZE = 500 * 1024;
+    private final String origin;
+    private final List<Rule> rules;
+    private final Duration crawlDelay;
+    private final List<String> sitemaps;
+
+    private static final class Rule {
+        private final String pattern;
+        private final boolean allow;
+
+        private Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+        }
+    }
+
+    /**
+     * Читает правила robots.txt
+     *
+     * @param origin - адрес сайта вида scheme://host[:port], к ссылкам других сайтов правила не применяются
+     * @param reader - содержимое robots.txt
+     * @param agent  - имя нашего агента
+     */
+    public RobotsTxt(String origin, Reader reader, String agent) {
+        this.origin = origin.toLowerCase(Locale.ROOT);
+        String name = agent.toLowerCase(Locale.ROOT);
+        List<Rule> ours = new ArrayList<>();
+        List<Rule> any = new ArrayList<>();
+        List<String> maps = new ArrayList<>();
+        Duration oursDelay = null;
+        Duration anyDelay = null;
+        boolean matchedOurs = false;
+        boolean groupIsOurs = false;
+        boolean groupIsAny = false;
+        boolean inAgents = false;
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (key.equals("user-agent")) {
+                    if (!inAgents) {
+                        groupIsOurs = false;
+                        groupIsAny = false;
+                        inAgents = true;
+                    }
+                    String token = value.toLowerCase(Locale.ROOT);
+                    if (token.equals("*")) {
+                        groupIsAny = true;
+                    } else if (!token.isEmpty() && name.startsWith(token)) {
+                        groupIsOurs = true;
+                        matchedOurs = true;
+                    }
+                    continue;
+                }
+                if (key.equals("sitemap")) {
+                    if (!value.isEmpty()) {
+                        maps.add(value);
+                    }
+                    continue;
+                }
+                inAgents = false;
+                if (key.equals("allow") || key.equals("disallow")) {
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Rule rule = new Rule(value, key.equals("allow"));
+                    if (groupIsOurs) {
+                        ours.add(rule);
+                    } else if (groupIsAny) {
+                        any.add(rule);
+                    }
+                } else if (key.equals("crawl-delay")) {
+                    Duration delay = parseDelay(value);
+                    if (groupIsOurs) {
+                        oursDelay = delay;
+                    } else if (groupIsAny) {
+                        anyDelay = delay;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.rules = matchedOurs ? ours : any;
+        this.crawlDelay = matchedOurs ? oursDelay : anyDelay;
+        this.sitemaps = Collections.unmodifiableList(maps);
+    }
+
+    /**
+     * Правила, разрешающие все, для сайтов без robots.txt
+     *
+     * @param origin - адрес сайта вида scheme://host[:port]
+     * @return правила без ограничений
+     */
+    public static RobotsTxt allowAll(String origin) {
+        return new RobotsTxt(origin, new StringReader(""), DEFAULT_AGENT);
+    }
+
+    /**
+     * Загружает robots.txt сайта ссылки. Если файла нет или сайт не ответил, ограничений нет
+     *
+     * @param link  - любая ссылка сайта
+     * @param pages - фабрика страниц для запроса
+     * @param agent - имя нашего агента
+     * @return правила сайта
+     */
+    public static RobotsTxt fetch(String link, PageFactory pages, String agent) {
+        String origin = origin(link);
+        try (PageResponse response = pages.page(origin + "/robots.txt").fetch()) {
+            if (response.status() != 200) {
+                return allowAll(origin);
+            }
+            return new RobotsTxt(origin, response.reader(MAX_SIZE), agent);
+        }
+    }
+
+    /**
+     * Возвращает адрес сайта ссылки вида scheme://host[:port]
+     *
+     * @param link - ссылка
+     * @return адрес сайта
+     */
+    public static String origin(String link) {
+        URI uri = URI.create(link);
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * Разрешено ли запрашивать ссылку. Ссылки других сайтов всегда разрешены
+     *
+     * @param link - ссылка
+     * @return true, если правила не запрещают ссылку
+     */
+    public boolean isAllowed(String link) {
+        if (rules.isEmpty() || !link.toLowerCase(Locale.ROOT).startsWith(origin)) {
+            return true;
+        }
+        String path = link.substring(origin.length());
+        if (!path.isEmpty() && path.charAt(0) != '/' && path.charAt(0) != '?') {
+            return true;
+        }
+        if (path.isEmpty() || path.charAt(0) == '?') {
+            path = "/" + path;
+        }
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) {
+            path = path.substring(0, fragment);
+        }
+        int longest = -1;
+        boolean allowed = true;
+        for (Rule rule : rules) {
+            int length = rule.pattern.length();
+            if (length >= longest && matches(rule.pattern, path)) {
+                if (length > longest || rule.allow) {
+                    allowed = rule.allow;
+                }
+                longest = length;
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * @return задержка между запросами из Crawl-delay, если она задана
+     */
+    public Optional<Duration> crawlDelay() {
+        return Optional.ofNullable(crawlDelay);
+    }
+
+    /**
+     * @return адреса карт сайта из строк Sitemap
+     */
+    public List<String> sitemaps() {
+        return sitemaps;
+    }
+
+    public String origin() {
+        return origin;
+    }
+
+    /**
+     * Сравнивает путь с шаблоном правила: шаблон совпадает с началом пути, * означает любую последовательность
+     * символов, $ в конце шаблона - конец пути. Сравнение жадное с возвратом только к последней звездочке, поэтому
+     * время не больше произведения длин шаблона и пути при любом количестве звездочек в шаблоне сайта
+     */
+    private static boolean matches(String pattern, String path) {
+        boolean anchored = pattern.endsWith("$");
+        int end = anchored ? pattern.length() - 1 : pattern.length();
+        int p = 0;
+        int i = 0;
+        int star = -1;
+        int mark = 0;
+        while (i < path.length()) {
+            if (p < end && pattern.charAt(p) == '*') {
+                star = p++;
+                mark = i;
+            } else if (p < end && pattern.charAt(p) == path.charAt(i)) {
+                p++;
+                i++;
+            } else if (p == end && !anchored) {
+                return true;
+            } else if (star >= 0) {
+                p = star + 1;
+                i = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < end && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == end;
+    }
+
+    private static Duration parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 ? Duration.ofMillis((long) (seconds * 1000)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
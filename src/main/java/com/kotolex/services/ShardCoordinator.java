@@ -0,0 +1,182 @@
+package com.kotolex.services;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Координатор распределенной проверки: опрашивает узлы ShardNode, определяет общее завершение и собирает результаты.
+ * Проверка завершена, когда два опроса подряд показали, что все узлы простаивают, каждый узел отправил и получил
+ * столько же ссылок, что и в прошлом опросе, и всего отправлено столько же ссылок, сколько получено, то есть в пути
+ * нет ни одного пакета. Тогда координатор забирает у узлов проверенные, посещенные и сломанные ссылки и
+ * останавливает узлы. Ссылки разделены между узлами без пересечений, поэтому количества просто складываются
+ *
+ * @author kotolex
+ * @version 1.0
+ * @see ShardNode
+ */
+public final class ShardCoordinator {
+    private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(200);
+    private final List<String> nodes;
+    private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+    private final Map<String, String> broken = new HashMap<>();
+    private int checked;
+    private int visited;
+
+    /**
+     * Конструктор
+     *
+     * @param nodes - адреса всех узлов в виде host:port
+     */
+    public ShardCoordinator(List<String> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        this.nodes = new ArrayList<>(nodes);
+    }
+
+    /**
+     * @param pollInterval - пауза между опросами узлов
+     * @return этот же координатор, для цепочки вызовов
+     */
+    public ShardCoordinator pollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * Опрашивает узлы до общего завершения проверки, затем собирает результаты и останавливает узлы. Узлы, которые
+     * еще не запущены, считаются занятыми
+     *
+     * @throws InterruptedException если ожидающий поток был прерван
+     */
+    public void awaitTermination() throws InterruptedException {
+        long[] previous = null;
+        while (true) {
+            long[] wave = poll();
+            if (wave != null && Arrays.equals(wave, previous) && balanced(wave)) {
+                break;
+            }
+            previous = wave;
+            Thread.sleep(pollInterval.toMillis());
+        }
+        broken.clear();
+        checked = 0;
+        visited = 0;
+        for (String node : nodes) {
+            collect(request(node, ShardNode.RESULTS));
+        }
+        for (String node : nodes) {
+            request(node, ShardNode.STOP);
+        }
+    }
+
+    public int brokenLinksCount() {
+        return broken.size();
+    }
+
+    /**
+     * Возвращает лист сломанных ссылок всех узлов в формате "ссылка - страница расположения"
+     *
+     * @return лист сломанных ссылок
+     */
+    public List<String> brokenLinksWithPath() {
+        return broken.entrySet().stream().map((n) -> n.getKey() + " - " + n.getValue()).collect(Collectors.toList());
+    }
+
+    public int checkedCount() {
+        return checked;
+    }
+
+    public int visitedCount() {
+        return visited;
+    }
+
+    /**
+     * Печатает общее количество проверенных, посещенных и сломанных ссылок и сами сломанные ссылки
+     *
+     * @param console - консоль для вывода
+     */
+    public void printSummary(SimpleConsole console) {
+        console.println("Nodes: " + nodes.size());
+        console.println("Checked links: " + checked);
+        console.println("Visited links: " + visited);
+        console.println("Broken links: " + broken.size());
+        brokenLinksWithPath().forEach(console::println);
+    }
+
+    /**
+     * Опрашивает все узлы
+     *
+     * @return для каждого узла отправлено и получено ссылок, null если хотя бы один узел занят или недоступен
+     */
+    private long[] poll() throws InterruptedException {
+        long[] wave = new long[nodes.size() * 2];
+        boolean idle = true;
+        for (int i = 0; i < nodes.size(); i++) {
+            String status;
+            try {
+                status = request(nodes.get(i), ShardNode.STATUS);
+            } catch (IllegalStateException e) {
+                return null;
+            }
+            String[] parts = status.trim().split(" ");
+            idle &= Boolean.parseBoolean(parts[0]);
+            wave[2 * i] = Long.parseLong(parts[1]);
+            wave[2 * i + 1] = Long.parseLong(parts[2]);
+        }
+        return idle ? wave : null;
+    }
+
+    private static boolean balanced(long[] wave) {
+        long sent = 0;
+        long received = 0;
+        for (int i = 0; i < wave.length; i += 2) {
+            sent += wave[i];
+            received += wave[i + 1];
+        }
+        return sent == received;
+    }
+
+    private void collect(String results) {
+        for (String line : results.split("\n")) {
+            String[] parts = line.split("\t");
+            if (parts[0].equals("checked")) {
+                checked += Integer.parseInt(parts[1]);
+            } else if (parts[0].equals("visited")) {
+                visited += Integer.parseInt(parts[1]);
+            } else if (parts[0].equals("broken") && parts.length == 3) {
+                broken.putIfAbsent(parts[1], parts[2]);
+            }
+        }
+    }
+
+    private String request(String node, String path) throws InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://" + node + path))
+                .timeout(Duration.ofSeconds(30));
+        HttpRequest request = path.equals(ShardNode.STOP)
+                ? builder.POST(HttpRequest.BodyPublishers.noBody()).build() : builder.GET().build();
+        try {
+            HttpResponse<String> response = client.send(request,
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Node " + node + " answered " + response.statusCode());
+            }
+            return response.body();
+        } catch (IOException e) {
+            throw new IllegalStateException("Node " + node + " is not available", e);
+        }
+    }
+}
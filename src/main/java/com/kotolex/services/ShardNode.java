@@ -0,0 +1,419 @@
+package com.kotolex.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Узел распределенной проверки: один из нескольких процессов, каждый из которых владеет частью ссылок по хэшу.
+ * Ссылки, найденные узлом, но принадлежащие другому узлу, копятся в пакеты и пересылаются владельцу по http, поэтому
+ * проверка, повторы и переходы по каждой ссылке происходят только на одном узле. Узел принимает пакеты других узлов
+ * и отвечает координатору: состояние (простаивает ли узел, сколько ссылок отправлено и получено), результаты и
+ * команда остановки.
+ * Все узлы должны получить одинаковый список адресов узлов в одном порядке, узел слушает порт своего адреса.
+ * Пакет отправляется повторно, пока получатель не подтвердит его, поэтому каждый пакет несет номер отправителя и
+ * свой порядковый номер, и повторно доставленный пакет получатель подтверждает, но не принимает второй раз
+ *
+ * @author kotolex
+ * @version 1.1
+ * @see ShardCoordinator
+ */
+public final class ShardNode implements AutoCloseable {
+    static final String LINKS = "/shard/links";
+    static final String STATUS = "/shard/status";
+    static final String RESULTS = "/shard/results";
+    static final String STOP = "/shard/stop";
+    /**
+     * Заголовок пакета вида "номер отправителя:номер пакета"
+     */
+    static final String BATCH = "X-Shard-Batch";
+    private static final int DEFAULT_BATCH_SIZE = 512;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(20);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(2);
+    private final int index;
+    private final List<String> nodes;
+    private final List<List<String>> outboxes;
+    /**
+     * 1 для узлов, пакеты которым сейчас отправляются, чтобы на каждый узел шла одна отправка
+     */
+    private final AtomicIntegerArray sending;
+    /**
+     * Номер последнего пакета, отправленного каждому узлу. Пакеты одному узлу отправляются по одному, поэтому номера
+     * доходят до получателя по возрастанию
+     */
+    private final AtomicLongArray lastSent;
+    /**
+     * Номер последнего пакета, принятого от каждого узла
+     */
+    private final AtomicLongArray lastReceived;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+    /**
+     * Ссылки, принятые к пересылке, но еще не подтвержденные получателем
+     */
+    private final AtomicLong outstanding = new AtomicLong(0);
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong received = new AtomicLong(0);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+    private HttpServer server;
+    private volatile ExecutorService senders;
+    private ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    /**
+     * Проверяющая сторона узла
+     */
+    public interface Worker {
+        /**
+         * Принимает ссылку этого узла, найденную другим узлом
+         *
+         * @param link     - ссылка для проверки
+         * @param referrer - страница, на которой найдена ссылка
+         */
+        void accept(String link, String referrer);
+
+        /**
+         * @return true, если у узла нет незавершенных задач
+         */
+        boolean isIdle();
+
+        int checkedCount();
+
+        int visitedCount();
+
+        /**
+         * @return сломанные ссылки этого узла и страницы, на которых они найдены
+         */
+        Map<String, String> brokenLinks();
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param index - номер этого узла в списке
+     * @param nodes - адреса всех узлов в виде host:port, одинаковые для всех узлов
+     */
+    public ShardNode(int index, List<String> nodes) {
+        if (index < 0 || index >= nodes.size()) {
+            throw new IllegalArgumentException("Node index " + index + " is out of " + nodes.size() + " nodes");
+        }
+        this.index = index;
+        this.nodes = new ArrayList<>(nodes);
+        this.outboxes = new ArrayList<>();
+        this.sending = new AtomicIntegerArray(nodes.size());
+        this.lastSent = new AtomicLongArray(nodes.size());
+        this.lastReceived = new AtomicLongArray(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            outboxes.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Задает размер пакета: пакет отправляется, как только в нем столько ссылок, и в любом случае не реже
+     * flushInterval
+     *
+     * @param batchSize     - ссылок в пакете
+     * @param flushInterval - максимальное время ожидания неполного пакета
+     * @return этот же узел, для цепочки вызовов
+     */
+    public ShardNode batching(int batchSize, Duration flushInterval) {
+        if (batchSize <= 0 || flushInterval.isZero() || flushInterval.isNegative()) {
+            throw new IllegalArgumentException("Batch size and flush interval must be positive");
+        }
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Возвращает номер узла-владельца ссылки. Хэш строки одинаков во всех JVM, поэтому все узлы согласны о владельце
+     *
+     * @param link - ссылка в каноническом виде
+     * @return номер узла
+     */
+    public int owner(String link) {
+        int hash = link.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, nodes.size());
+    }
+
+    public boolean owns(String link) {
+        return owner(link) == index;
+    }
+
+    /**
+     * Запускает прием пакетов и запросов координатора и отправку пакетов. Ссылки, переданные в forward до запуска,
+     * копятся и отправляются после него, поэтому стартовую страницу стоит поставить в работу до запуска узла, иначе
+     * координатор может застать узел простаивающим до начала проверки
+     *
+     * @param worker - проверяющая сторона узла
+     */
+    public synchronized void start(Worker worker) {
+        if (server != null) {
+            throw new IllegalStateException("Node is already started");
+        }
+        String address = nodes.get(index);
+        int colon = address.lastIndexOf(':');
+        try {
+            server = HttpServer.create(new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))), 64);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.setExecutor(Executors.newFixedThreadPool(4, daemon("jlink-shard-server")));
+        server.createContext(LINKS, (exchange) -> receive(exchange, worker));
+        // сначала задачи, потом неотправленные ссылки: задача ставит ссылку в пакет до своего завершения
+        server.createContext(STATUS, (exchange) -> respond(exchange, (worker.isIdle() && outstanding.get() == 0)
+                + " " + sent.get() + " " + received.get()));
+        server.createContext(RESULTS, (exchange) -> respond(exchange, results(worker)));
+        server.createContext(STOP, (exchange) -> {
+            respond(exchange, "stopped");
+            stopped.countDown();
+        });
+        senders = Executors.newFixedThreadPool(nodes.size(), daemon("jlink-shard-sender"));
+        flusher = Executors.newSingleThreadScheduledExecutor(daemon("jlink-shard-flusher"));
+        long period = flushInterval.toMillis();
+        flusher.scheduleAtFixedRate(() -> {
+            for (int node = 0; node < nodes.size(); node++) {
+                send(node);
+            }
+        }, period, Math.max(1, period), TimeUnit.MILLISECONDS);
+        server.start();
+    }
+
+    /**
+     * Ставит в пакет для узла-владельца ссылку, найденную этим узлом
+     *
+     * @param link     - ссылка, принадлежащая другому узлу
+     * @param referrer - страница, на которой найдена ссылка
+     */
+    public void forward(String link, String referrer) {
+        int target = owner(link);
+        List<String> outbox = outboxes.get(target);
+        boolean full;
+        outstanding.getAndIncrement();
+        synchronized (outbox) {
+            outbox.add(escape(link) + '\t' + escape(referrer));
+            full = outbox.size() >= batchSize;
+        }
+        if (full) {
+            send(target);
+        }
+    }
+
+    /**
+     * Блокирует вызывающий поток до команды остановки от координатора
+     *
+     * @throws InterruptedException если ожидающий поток был прерван
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    public long sentCount() {
+        return sent.get();
+    }
+
+    public long receivedCount() {
+        return received.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (server != null) {
+            flusher.shutdownNow();
+            senders.shutdownNow();
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Запускает отправку пакетов узлу target, если она еще не идет
+     */
+    private void send(int target) {
+        ExecutorService senders = this.senders;
+        if (senders == null || !sending.compareAndSet(target, 0, 1)) {
+            return;
+        }
+        senders.execute(() -> {
+            try {
+                while (flush(target)) {
+                    // отправляются все накопленные пакеты
+                }
+            } finally {
+                sending.set(target, 0);
+            }
+        });
+    }
+
+    /**
+     * Отправляет накопленный пакет узлу target, повторяя отправку с растущей паузой, пока узел недоступен (например,
+     * еще не запущен)
+     *
+     * @return true, если пакет отправлен
+     */
+    private boolean flush(int target) {
+        List<String> outbox = outboxes.get(target);
+        List<String> batch;
+        synchronized (outbox) {
+            if (outbox.isEmpty()) {
+                return false;
+            }
+            batch = new ArrayList<>(outbox.subList(0, Math.min(batchSize, outbox.size())));
+            outbox.subList(0, batch.size()).clear();
+        }
+        long batchId = lastSent.incrementAndGet(target);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + nodes.get(target) + LINKS))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "text/plain; charset=utf-8")
+                .header(BATCH, index + ":" + batchId)
+                .POST(HttpRequest.BodyPublishers.ofString(String.join("\n", batch), StandardCharsets.UTF_8))
+                .build();
+        long backoff = 50;
+        while (!closed) {
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status / 100 == 2) {
+                    sent.getAndAdd(batch.size());
+                    outstanding.getAndAdd(-batch.size());
+                    return true;
+                }
+            } catch (IOException e) {
+                // узел еще не запущен или перегружен, пакет отправляется повторно
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF.toMillis());
+        }
+        return false;
+    }
+
+    /**
+     * Принимает пакет ссылок. Пакет сначала читается целиком, затем его номер сравнивается с последним принятым от
+     * отправителя: повторно доставленный пакет только подтверждается, иначе ссылки попали бы в счетчик полученных
+     * дважды и суммы отправленных и полученных у координатора никогда бы не сошлись. Счетчик полученных
+     * увеличивается только после того, как ссылки переданы узлу, чтобы координатор не увидел узел простаивающим с
+     * непринятыми ссылками
+     */
+    private void receive(HttpExchange exchange, Worker worker) throws IOException {
+        int sender;
+        long batchId;
+        try {
+            String batch = exchange.getRequestHeaders().getFirst(BATCH);
+            int colon = batch.indexOf(':');
+            sender = Integer.parseInt(batch.substring(0, colon));
+            batchId = Long.parseLong(batch.substring(colon + 1));
+            if (sender < 0 || sender >= nodes.size()) {
+                throw new NumberFormatException("Unknown sender " + sender);
+            }
+        } catch (NullPointerException | IndexOutOfBoundsException | NumberFormatException e) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        if (lastReceived.getAndAccumulate(sender, batchId, Math::max) < batchId) {
+            long count = 0;
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    worker.accept(line.substring(0, tab), line.substring(tab + 1));
+                    count++;
+                }
+            }
+            received.getAndAdd(count);
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private String results(Worker worker) {
+        StringBuilder results = new StringBuilder()
+                .append("checked\t").append(worker.checkedCount()).append('\n')
+                .append("visited\t").append(worker.visitedCount()).append('\n');
+        for (Map.Entry<String, String> entry : worker.brokenLinks().entrySet()) {
+            results.append("broken\t").append(escape(entry.getKey())).append('\t').append(escape(entry.getValue()))
+                    .append('\n');
+        }
+        return results.toString();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Ссылки передаются строками "ссылка\tстраница", поэтому табуляция и переводы строк в них кодируются
+     */
+    static String escape(String link) {
+        return link.replace("\t", "%09").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    static ThreadFactory daemon(String name) {
+        return (runnable) -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
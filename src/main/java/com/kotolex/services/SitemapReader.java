@@ -0,0 +1,188 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.PageFactory;
+import com.kotolex.pages.PageResponse;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Потоковое чтение карт сайта: xml (urlset и вложенные sitemapindex), сжатые gzip файлы .xml.gz и текстовые карты
+ * (адрес на строке). Адреса страниц передаются получателю по мере разбора, не дожидаясь конца файла, поэтому проверка
+ * может начинаться, пока карта еще загружается. Вложенные карты читаются после текущей, каждая не больше одного раза.
+ * Внешние сущности и DTD в xml не обрабатываются. Размер карты ограничен и до, и после распаковки, а адресов из одной
+ * карты берется не больше, чем допускает протокол, поэтому сжатая "бомба" не поставит в проверку миллионы адресов
+ *
+ * @author kotolex
+ * @version 1.2
+ */
+public final class SitemapReader {
+    /**
+     * Больше этого размера карта не читается (по стандарту карта не больше 50 МБ без сжатия)
+     */
+    private static final long MAX_SIZE = 64L * 1024 * 1024;
+    /**
+     * Больше этого количества адресов из одной карты не берется (по стандарту карта не больше 50000 адресов)
+     */
+    private static final int MAX_URLS = 50_000;
+    private static final int DEFAULT_MAX_SITEMAPS = 1000;
+    private static final XMLInputFactory XML = xmlFactory();
+    private final PageFactory pages;
+    private int maxSitemaps = DEFAULT_MAX_SITEMAPS;
+    private int sitemapsRead;
+
+    /**
+     * @param pages - фабрика страниц для загрузки карт
+     */
+    public SitemapReader(PageFactory pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * @param maxSitemaps - сколько карт, включая вложенные, читать не больше
+     * @return этот же объект, для цепочки вызовов
+     */
+    public SitemapReader maxSitemaps(int maxSitemaps) {
+        if (maxSitemaps <= 0) {
+            throw new IllegalArgumentException("Sitemap limit must be positive, but was " + maxSitemaps);
+        }
+        this.maxSitemaps = maxSitemaps;
+        return this;
+    }
+
+    /**
+     * Читает карты сайта и все вложенные в них карты
+     *
+     * @param sitemaps - адреса карт
+     * @param receiver - получатель адреса страницы и адреса карты, в которой он найден
+     * @return количество найденных адресов страниц
+     */
+    public long read(List<String> sitemaps, BiConsumer<String, String> receiver) {
+        Deque<String> queue = new ArrayDeque<>(sitemaps);
+        Set<String> seen = new HashSet<>(sitemaps);
+        long found = 0;
+        sitemapsRead = 0;
+        while (!queue.isEmpty() && sitemapsRead < maxSitemaps) {
+            String sitemap = queue.poll();
+            sitemapsRead++;
+            found += read(sitemap, receiver, (child) -> {
+                if (seen.size() < maxSitemaps && seen.add(child)) {
+                    queue.add(child);
+                }
+            });
+        }
+        return found;
+    }
+
+    public int sitemapsRead() {
+        return sitemapsRead;
+    }
+
+    private long read(String sitemap, BiConsumer<String, String> receiver, Consumer<String> children) {
+        try (PageResponse response = pages.page(sitemap).fetch()) {
+            if (response.status() != 200) {
+                new SimpleConsole().println("Sitemap " + sitemap + " answered " + response.status());
+                return 0;
+            }
+            InputStream stream = PageResponse.limit(unzip(response.stream(MAX_SIZE)), MAX_SIZE);
+            String path = sitemap.toLowerCase(Locale.ROOT).split("[?#]")[0];
+            return path.endsWith(".txt") || path.endsWith(".txt.gz") ? readText(stream, sitemap, receiver)
+                    : readXml(stream, sitemap, receiver, children);
+        } catch (IOException | XMLStreamException e) {
+            new SimpleConsole().println("Sitemap " + sitemap + " raise exception " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Разбирает xml-карту: адреса из url/loc передаются получателю, адреса из sitemap/loc - вложенные карты
+     */
+    private long readXml(InputStream stream, String sitemap, BiConsumer<String, String> receiver,
+                         Consumer<String> children) throws XMLStreamException {
+        XMLStreamReader xml = XML.createXMLStreamReader(stream);
+        long found = 0;
+        boolean inSitemap = false;
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                    if (xml.getEventType() == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("sitemap")) {
+                        inSitemap = false;
+                    }
+                    continue;
+                }
+                String name = xml.getLocalName();
+                if (name.equals("sitemap")) {
+                    inSitemap = true;
+                } else if (name.equals("loc")) {
+                    String loc = xml.getElementText().trim();
+                    if (loc.isEmpty()) {
+                        continue;
+                    }
+                    if (inSitemap) {
+                        children.accept(loc);
+                    } else if (found < MAX_URLS) {
+                        receiver.accept(loc, sitemap);
+                        found++;
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+        return found;
+    }
+
+    private long readText(InputStream stream, String sitemap, BiConsumer<String, String> receiver)
+            throws IOException {
+        long found = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null && found < MAX_URLS) {
+            line = line.trim();
+            if (line.startsWith("http://") || line.startsWith("https://")) {
+                receiver.accept(line, sitemap);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Распаковывает файл .gz, отданный без Content-Encoding: сжатие определяется по первым байтам тела
+     */
+    private static InputStream unzip(InputStream stream) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(stream, 2);
+        byte[] head = new byte[2];
+        int read = pushback.readNBytes(head, 0, 2);
+        if (read > 0) {
+            pushback.unread(head, 0, read);
+        }
+        boolean gzip = read == 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B;
+        return gzip ? new GZIPInputStream(pushback, 8192) : pushback;
+    }
+
+    private static XMLInputFactory xmlFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+}
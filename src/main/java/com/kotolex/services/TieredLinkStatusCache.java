@@ -0,0 +1,251 @@
+package com.kotolex.services;
+
+import com.kotolex.interfaces.LinkStatusCache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш кодов состояния ссылок из двух уровней: небольшой LRU в памяти для частых ссылок и, при необходимости,
+ * сохраняемый уровень большего размера, который загружается из файла при создании и записывается в файл методом
+ * save(), поэтому результаты переживают перезапуск. Оба уровня ограничены по размеру: при переполнении вытесняется
+ * запись, к которой дольше всего не обращались, а записи с истекшим сроком удаляются при обращении и при вытеснении.
+ * Рабочие (2хх, 3хх) и сломанные ссылки хранятся разное время: сломанная ссылка может скоро починиться, поэтому
+ * для нее срок обычно короче. Запись с истекшим сроком считается промахом. Код 0 (сбой соединения или таймаут)
+ * не кэшируется совсем: он говорит о состоянии сети в момент проверки, а не о ссылке
+ *
+ * @author kotolex
+ * @version 1.2
+ */
+public final class TieredLinkStatusCache implements LinkStatusCache {
+    private static final int DEFAULT_CAPACITY = 100_000;
+    /**
+     * Во сколько раз сохраняемый уровень по умолчанию больше уровня в памяти
+     */
+    private static final int PERSISTED_FACTOR = 10;
+    private static final Duration DEFAULT_HEALTHY_TTL = Duration.ofDays(1);
+    private static final Duration DEFAULT_BROKEN_TTL = Duration.ofHours(1);
+    private final Duration healthyTtl;
+    private final Duration brokenTtl;
+    /**
+     * Файл второго уровня, null если кэш только в памяти
+     */
+    private final Path file;
+    /**
+     * Первый уровень, порядок по последнему обращению, самая старая запись вытесняется при переполнении
+     */
+    private final Map<String, CachedStatus> memory;
+    /**
+     * Второй уровень, записи файла и добавленные с момента загрузки, сохраняется в файл. Пустой, если файла нет
+     */
+    private final Map<String, CachedStatus> persisted;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Код состояния и момент, до которого он действителен
+     */
+    private static final class CachedStatus {
+        private final int status;
+        private final long expiresAt;
+
+        private CachedStatus(int status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Конструктор кэша в памяти: 100000 ссылок, рабочие хранятся сутки, сломанные час
+     */
+    public TieredLinkStatusCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_HEALTHY_TTL, DEFAULT_BROKEN_TTL, null);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param capacity   - максимальное количество ссылок в памяти
+     * @param healthyTtl - срок хранения рабочих ссылок
+     * @param brokenTtl  - срок хранения сломанных ссылок
+     * @param file       - файл второго уровня или null, чтобы хранить кэш только в памяти
+     */
+    public TieredLinkStatusCache(int capacity, Duration healthyTtl, Duration brokenTtl, Path file) {
+        this(capacity, capacity * PERSISTED_FACTOR, healthyTtl, brokenTtl, file);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param capacity          - максимальное количество ссылок в памяти
+     * @param persistedCapacity - максимальное количество ссылок второго уровня, сохраняемого в файл
+     * @param healthyTtl        - срок хранения рабочих ссылок
+     * @param brokenTtl         - срок хранения сломанных ссылок
+     * @param file              - файл второго уровня или null, чтобы хранить кэш только в памяти
+     */
+    public TieredLinkStatusCache(int capacity, int persistedCapacity, Duration healthyTtl, Duration brokenTtl,
+                                 Path file) {
+        if (capacity <= 0 || persistedCapacity <= 0 || healthyTtl.isNegative() || brokenTtl.isNegative()) {
+            throw new IllegalArgumentException("Capacities must be positive and TTLs must not be negative");
+        }
+        this.healthyTtl = healthyTtl;
+        this.brokenTtl = brokenTtl;
+        this.file = file;
+        this.memory = lru(capacity);
+        this.persisted = lru(file == null ? 1 : persistedCapacity);
+        load();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OptionalInt status(String link) {
+        long now = System.currentTimeMillis();
+        CachedStatus entry = lookup(memory, link, now);
+        if (entry == null && file != null) {
+            entry = lookup(persisted, link, now);
+            if (entry != null) {
+                store(memory, link, entry);
+            }
+        }
+        if (entry == null) {
+            misses.getAndIncrement();
+            return OptionalInt.empty();
+        }
+        hits.getAndIncrement();
+        return OptionalInt.of(entry.status);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String link, int status) {
+        if (status == 0) {
+            return;
+        }
+        Duration ttl = status >= 200 && status < 400 ? healthyTtl : brokenTtl;
+        CachedStatus entry = new CachedStatus(status, System.currentTimeMillis() + ttl.toMillis());
+        store(memory, link, entry);
+        if (file != null) {
+            store(persisted, link, entry);
+        }
+    }
+
+    @Override
+    public long hits() {
+        return hits.get();
+    }
+
+    @Override
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Сохраняет действительные записи в файл второго уровня через временный файл. Без файла ничего не делает
+     */
+    @Override
+    public synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Map<String, CachedStatus> snapshot;
+            synchronized (persisted) {
+                snapshot = new LinkedHashMap<>(persisted);
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, CachedStatus> link : snapshot.entrySet()) {
+                    CachedStatus entry = link.getValue();
+                    if (entry.expiresAt > now) {
+                        writer.write(entry.status + "\t" + entry.expiresAt + "\t" + CrawlJournal.escape(link.getKey()));
+                        writer.write('\n');
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает действительную запись уровня, запись с истекшим сроком удаляется
+     */
+    private static CachedStatus lookup(Map<String, CachedStatus> tier, String link, long now) {
+        synchronized (tier) {
+            CachedStatus entry = tier.get(link);
+            if (entry != null && entry.expiresAt <= now) {
+                tier.remove(link);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private static void store(Map<String, CachedStatus> tier, String link, CachedStatus entry) {
+        synchronized (tier) {
+            tier.put(link, entry);
+        }
+    }
+
+    /**
+     * Создает уровень кэша: порядок по последнему обращению, при переполнении или истечении срока самая старая
+     * запись вытесняется
+     */
+    private static Map<String, CachedStatus> lru(int capacity) {
+        return new LinkedHashMap<String, CachedStatus>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatus> eldest) {
+                return size() > capacity || eldest.getValue().expiresAt <= System.currentTimeMillis();
+            }
+        };
+    }
+
+    /**
+     * Загружает действительные записи из файла второго уровня, строки неверного формата пропускаются
+     */
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length < 3) {
+                    continue;
+                }
+                try {
+                    CachedStatus entry = new CachedStatus(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+                    if (entry.expiresAt > now && entry.status != 0) {
+                        store(persisted, CrawlJournal.unescape(parts[2]), entry);
+                    }
+                } catch (NumberFormatException e) {
+                    new SimpleConsole().println("Skipping malformed status cache line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.kotolex.services;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Приводит ссылки к единому (каноническому) виду, чтобы разные записи одного адреса проверялись один раз:
+ * схема и хост в нижнем регистре, без порта по умолчанию, без фрагмента (#...), без сегментов "." и "..",
+ * с отсортированными параметрами запроса и без параметров отслеживания (utm_*, gclid и т.п.).
+ * Завершающий слэш по умолчанию сохраняется: http://x/a и http://x/a/ могут быть разными страницами, а относительные
+ * ссылки на них разрешаются по-разному. Ссылки, которые не удалось разобрать, и ссылки без хоста (mailto:,
+ * javascript:) возвращаются без изменений
+ *
+ * @author kotolex
+ * @version 1.1
+ */
+public final class UrlCanonicalizer {
+    private boolean removeFragments = true;
+    private boolean removeTrailingSlash;
+    private boolean sortQuery = true;
+    /**
+     * Имена удаляемых параметров запроса, имя с маской (utm_*) удаляет все параметры с таким началом
+     */
+    private final Set<String> removedParameters = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Конструктор, по умолчанию удаляются фрагменты и распространенные параметры отслеживания, параметры
+     * запроса сортируются
+     */
+    public UrlCanonicalizer() {
+        removedParameters.addAll(Arrays.asList("utm_*", "gclid", "fbclid", "yclid", "msclkid", "_ga", "mc_cid", "mc_eid"));
+    }
+
+    /**
+     * Задает удалять ли фрагмент ссылки
+     *
+     * @param remove - true, чтобы http://x/a#top и http://x/a считались одной ссылкой
+     * @return этот же объект, для цепочки вызовов
+     */
+    public UrlCanonicalizer removeFragments(boolean remove) {
+        this.removeFragments = remove;
+        return this;
+    }
+
+    /**
+     * Задает удалять ли завершающий слэш пути (кроме корня сайта)
+     *
+     * @param remove - true, чтобы http://x/a/ и http://x/a считались одной ссылкой
+     * @return этот же объект, для цепочки вызовов
+     */
+    public UrlCanonicalizer removeTrailingSlash(boolean remove) {
+        this.removeTrailingSlash = remove;
+        return this;
+    }
+
+    /**
+     * Задает сортировать ли параметры запроса по имени, порядок параметров с одинаковым именем сохраняется
+     *
+     * @param sort - true, чтобы ?b=1&amp;a=2 и ?a=2&amp;b=1 считались одной ссылкой
+     * @return этот же объект, для цепочки вызовов
+     */
+    public UrlCanonicalizer sortQuery(boolean sort) {
+        this.sortQuery = sort;
+        return this;
+    }
+
+    /**
+     * Добавляет параметры запроса, которые удаляются из ссылок
+     *
+     * @param names - имена параметров, имя с маской (utm_*) задает начало имени
+     * @return этот же объект, для цепочки вызовов
+     */
+    public UrlCanonicalizer removeParameters(String... names) {
+        for (String name : names) {
+            removedParameters.add(name.toLowerCase(Locale.ROOT));
+        }
+        return this;
+    }
+
+    /**
+     * Отключает удаление параметров запроса, в том числе параметров отслеживания по умолчанию
+     *
+     * @return этот же объект, для цепочки вызовов
+     */
+    public UrlCanonicalizer keepParameters() {
+        removedParameters.clear();
+        return this;
+    }
+
+    /**
+     * Возвращает канонический вид ссылки
+     *
+     * @param link - абсолютная ссылка
+     * @return канонический вид или сама ссылка, если ее не удалось разобрать
+     */
+    public String canonicalize(String link) {
+        URI uri;
+        try {
+            uri = new URI(link.trim());
+        } catch (URISyntaxException e) {
+            return link;
+        }
+        if (uri.isOpaque() || uri.getScheme() == null || uri.getHost() == null) {
+            return link;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder result = new StringBuilder(link.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            result.append(uri.getRawUserInfo()).append('@');
+        }
+        result.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            result.append(':').append(port);
+        }
+        result.append(path(uri.getRawPath()));
+        String query = query(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        if (!removeFragments && uri.getRawFragment() != null) {
+            result.append('#').append(uri.getRawFragment());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Возвращает область сайта, которая обходится при старте с данной страницы: ссылки внутри области начинаются
+     * с нее. Область заканчивается слэшем, поэтому http://x.com не захватывает http://x.com.evil.org
+     *
+     * @param start - стартовая страница в каноническом виде
+     * @return адрес папки стартовой страницы
+     */
+    public String scope(String start) {
+        int pathStart = start.indexOf('/', start.indexOf("://") + 3);
+        if (pathStart == -1) {
+            return start + "/";
+        }
+        int end = start.length();
+        for (char stop : new char[]{'?', '#'}) {
+            int index = start.indexOf(stop, pathStart);
+            if (index != -1) {
+                end = Math.min(end, index);
+            }
+        }
+        return start.substring(0, start.lastIndexOf('/', end - 1) + 1);
+    }
+
+    private String path(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String path = removeDotSegments(upperCaseEscapes(rawPath));
+        if (removeTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Удаляет сегменты "." и ".." по правилам RFC 3986
+     *
+     * @param path - абсолютный путь
+     * @return путь без сегментов "." и ".."
+     */
+    private String removeDotSegments(String path) {
+        if (!path.contains("/.")) {
+            return path;
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+            if (part.equals("..")) {
+                segments.pollLast();
+                if (last) {
+                    segments.addLast("");
+                }
+            } else if (part.equals(".")) {
+                if (last) {
+                    segments.addLast("");
+                }
+            } else {
+                segments.addLast(part);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    /**
+     * Приводит шестнадцатеричные цифры в %-последовательностях к верхнему регистру (%2f и %2F - одно и то же)
+     */
+    private String upperCaseEscapes(String value) {
+        int percent = value.indexOf('%');
+        if (percent == -1) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        for (int i = percent; i < chars.length - 2; i++) {
+            if (chars[i] == '%') {
+                chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+                chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+                i += 2;
+            }
+        }
+        return new String(chars);
+    }
+
+    private String query(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (!parameter.isEmpty() && !isRemoved(name(parameter))) {
+                parameters.add(upperCaseEscapes(parameter));
+            }
+        }
+        if (sortQuery) {
+            parameters.sort(Comparator.comparing(this::name));
+        }
+        return String.join("&", parameters);
+    }
+
+    private String name(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals == -1 ? parameter : parameter.substring(0, equals);
+    }
+
+    private boolean isRemoved(String name) {
+        if (removedParameters.isEmpty()) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (removedParameters.contains(lower)) {
+            return true;
+        }
+        for (String removed : removedParameters) {
+            if (removed.endsWith("*") && lower.startsWith(removed.substring(0, removed.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
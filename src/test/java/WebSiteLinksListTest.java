@@ -0,0 +1,165 @@
+import com.kotolex.engines.ForkJoinCrawlEngine;
+import com.kotolex.interfaces.CrawlListener;
+import com.kotolex.pages.RetryPolicy;
+import com.kotolex.parsers.ParsingMode;
+import com.kotolex.services.HostScheduler;
+import com.kotolex.services.TestSite;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты проверки сайта целиком на локальном тестовом сайте
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class WebSiteLinksListTest {
+    /**
+     * Страница, ссылки которой создаются только скриптом
+     */
+    private static final String SCRIPTED_PAGE = "<html><head><title>app</title></head><body><div id=\"app\"></div>"
+            + "<script>var app = document.getElementById('app');"
+            + "['one', 'two'].forEach(function (name) {"
+            + "  var link = document.createElement('a');"
+            + "  link.href = '/js/' + name + '.html';"
+            + "  link.appendChild(document.createTextNode(name));"
+            + "  app.appendChild(link);"
+            + "});</script></body></html>";
+
+    @Test
+    void hybridModeFindsLinksCreatedByScript() throws Exception {
+        try (TestSite site = new TestSite()) {
+            site.html("/index.html", SCRIPTED_PAGE)
+                    .html("/js/one.html", "<html><body>one</body></html>")
+                    .html("/js/two.html", "<html><body>two</body></html>");
+            WebSiteLinksList list = new WebSiteLinksList(site.url("/index.html"), ParsingMode.HYBRID);
+            list.checkLinks();
+            assertTrue(list.checkedLinks().contains(site.url("/js/one.html")), list.checkedLinks().toString());
+            assertTrue(list.checkedLinks().contains(site.url("/js/two.html")), list.checkedLinks().toString());
+            assertEquals(0, list.brokenLinksCount());
+            assertTrue(list.escalatedPagesCount() >= 1);
+        }
+    }
+
+    @Test
+    void countsSavedFetchOncePerNewSpelling() throws Exception {
+        try (TestSite site = new TestSite()) {
+            site.html("/index.html", page("/a.html", "/p1.html", "/p2.html", "/p3.html"))
+                    .html("/a.html", page())
+                    .html("/a.html?utm_source=x", page());
+            for (String path : new String[]{"/p1.html", "/p2.html", "/p3.html"}) {
+                site.html(path, page("/a.html?utm_source=x", "/a.html#top"));
+            }
+            WebSiteLinksList list = new WebSiteLinksList(site.url("/index.html"), true);
+            list.checkLinks();
+            assertEquals(2, list.canonicalDuplicatesCount());
+            assertEquals(0, site.requests("/a.html?utm_source=x"));
+            assertEquals(0, list.brokenLinksCount());
+        }
+    }
+
+    @Test
+    void countsNoSavedFetchesForDistinctLinks() throws Exception {
+        try (TestSite site = new TestSite()) {
+            site.html("/index.html", page("/a.html", "/b.html"))
+                    .html("/a.html", page("/b.html", "/index.html"))
+                    .html("/b.html", page("/a.html"));
+            WebSiteLinksList list = new WebSiteLinksList(site.url("/index.html"), true);
+            list.checkLinks();
+            assertEquals(0, list.canonicalDuplicatesCount());
+        }
+    }
+
+    @Test
+    void asyncCheckRejectsSettingsItWouldIgnore() {
+        List<Consumer<WebSiteLinksList>> settings = Arrays.asList(
+                (list) -> list.setCheckpoint(Paths.get("checkpoint")),
+                (list) -> list.setIncremental(Paths.get("recrawl.cache")),
+                (list) -> list.setHostScheduler(new HostScheduler()),
+                (list) -> list.setRetryPolicy(new RetryPolicy()),
+                (list) -> list.setBootstrap(true));
+        for (Consumer<WebSiteLinksList> setting : settings) {
+            WebSiteLinksList list = new WebSiteLinksList("http://127.0.0.1:1/index.html", true);
+            setting.accept(list);
+            assertThrows(IllegalStateException.class, list::checkLinksAsync);
+        }
+    }
+
+    @Test
+    void reportsLinksDisallowedByRobots() throws Exception {
+        try (TestSite site = new TestSite()) {
+            site.page("/robots.txt", "text/plain", "User-agent: *\nDisallow: /private/\n".getBytes(StandardCharsets.UTF_8))
+                    .html("/index.html", page("/a.html", "/private/b.html"))
+                    .html("/a.html", page("/private/b.html"))
+                    .html("/private/b.html", page());
+            List<String> disallowed = new CopyOnWriteArrayList<>();
+            List<String> checked = new CopyOnWriteArrayList<>();
+            WebSiteLinksList list = new WebSiteLinksList(site.url("/index.html"), true);
+            list.setBootstrap(true);
+            list.setCrawlListener(new CrawlListener() {
+                @Override
+                public void onChecked(String link, boolean available) {
+                    checked.add(link);
+                }
+
+                @Override
+                public void onDisallowed(String link) {
+                    disallowed.add(link);
+                }
+            });
+            list.checkLinks();
+            assertEquals(Collections.singletonList(site.url("/private/b.html")), disallowed);
+            assertFalse(checked.contains(site.url("/private/b.html")));
+            assertEquals(0, site.requests("/private/b.html"));
+        }
+    }
+
+    @Test
+    void seedsLargeSitemapWithinWindow() throws Exception {
+        int links = 3000;
+        try (TestSite site = new TestSite()) {
+            StringBuilder sitemap = new StringBuilder();
+            for (int i = 0; i < links; i++) {
+                sitemap.append(site.url("/missing" + i + ".html")).append('\n');
+            }
+            site.html("/index.html", page())
+                    .page("/robots.txt", "text/plain", ("Sitemap: " + site.url("/pages.txt")).getBytes(StandardCharsets.UTF_8))
+                    .page("/pages.txt", "text/plain", sitemap.toString().getBytes(StandardCharsets.UTF_8));
+            ForkJoinCrawlEngine engine = new ForkJoinCrawlEngine(2);
+            AtomicInteger maxPending = new AtomicInteger();
+            WebSiteLinksList list = new WebSiteLinksList(site.url("/index.html"), true, engine);
+            list.setBootstrap(true);
+            list.setCrawlListener(new CrawlListener() {
+                @Override
+                public void onLinkFound(String link, String referrer) {
+                    maxPending.accumulateAndGet(engine.pendingTasks(), Math::max);
+                }
+            });
+            list.checkLinks();
+            engine.shutdown();
+            assertEquals(links, list.brokenLinksCount());
+            assertTrue(maxPending.get() <= 1024 + 16, "pending tasks " + maxPending.get());
+        }
+    }
+
+    private static String page(String... links) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (String link : links) {
+            html.append("<a href=\"").append(link).append("\">link</a>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
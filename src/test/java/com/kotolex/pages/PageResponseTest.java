@@ -0,0 +1,110 @@
+package com.kotolex.pages;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты ответа: распаковка тела, счетчики байт и освобождение распаковщика и соединения при закрытии
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class PageResponseTest {
+    private static final String HTML = "<html><body><a href=\"/a\">a</a></body></html>";
+
+    @Test
+    void decodesGzipAndCountsBytes() throws IOException {
+        byte[] body = gzip(bytes(HTML));
+        try (PageResponse response = response("gzip", body, new AtomicBoolean(), new ByteArrayInputStream(body))) {
+            assertEquals(HTML, String.join(" ", response.content()));
+            assertEquals(body.length, response.wireBytes());
+            assertEquals(HTML.length(), response.decodedBytes());
+        }
+    }
+
+    @Test
+    void decodesZlibAndRawDeflate() throws IOException {
+        for (boolean raw : new boolean[]{false, true}) {
+            byte[] body = deflate(bytes(HTML), raw);
+            try (PageResponse response = response("deflate", body, new AtomicBoolean(), new ByteArrayInputStream(body))) {
+                assertEquals(HTML, String.join(" ", response.content()));
+            }
+        }
+    }
+
+    @Test
+    void closeEndsDecoderBeforeReleasingConnection() throws IOException {
+        for (String encoding : Arrays.asList("gzip", "deflate")) {
+            byte[] body = encoding.equals("gzip") ? gzip(bytes(HTML)) : deflate(bytes(HTML), false);
+            AtomicBoolean wireClosed = new AtomicBoolean();
+            InputStream wire = new ByteArrayInputStream(body) {
+                @Override
+                public void close() {
+                    wireClosed.set(true);
+                }
+            };
+            AtomicBoolean released = new AtomicBoolean();
+            PageResponse response = response(encoding, body, released, wire);
+            InputStream stream = response.stream(1024);
+            assertTrue(stream.read() >= 0);
+            response.close();
+            assertThrows(IOException.class, stream::read, encoding);
+            assertTrue(released.get());
+            assertFalse(wireClosed.get(), "body must be released by the connection only");
+        }
+    }
+
+    @Test
+    void closeWithoutBodyReleasesConnection() {
+        AtomicBoolean released = new AtomicBoolean();
+        PageResponse response = response("gzip", new byte[0], released, new ByteArrayInputStream(new byte[0]));
+        response.close();
+        assertTrue(released.get());
+        assertEquals(0, response.decodedBytes());
+    }
+
+    private static PageResponse response(String encoding, byte[] body, AtomicBoolean released, InputStream wire) {
+        Map<String, List<String>> headers = Map.of("Content-Encoding", Collections.singletonList(encoding),
+                "Content-Type", Collections.singletonList("text/html; charset=utf-8"),
+                "Content-Length", Collections.singletonList(String.valueOf(body.length)));
+        return new PageResponse("http://x.com/", 200, headers, () -> wire, () -> released.set(true));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(data);
+        }
+        return out.toByteArray();
+    }
+}
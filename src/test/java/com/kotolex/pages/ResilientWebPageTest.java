@@ -0,0 +1,76 @@
+package com.kotolex.pages;
+
+import com.kotolex.interfaces.InternetPage;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тесты повторов: временные ошибки сети повторяются, неверные ссылки - нет
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class ResilientWebPageTest {
+    private static final int RETRIES = 3;
+
+    @Test
+    void doesNotRetryInvalidLinks() {
+        for (String link : Arrays.asList("htp//no-scheme", "foo://example.com/a", "http://exa mple.com/",
+                "http://no-such-host.invalid/a")) {
+            AtomicInteger attempts = new AtomicInteger();
+            int status = page(link, attempts).responseCode();
+            assertEquals(PageResponse.INVALID_LINK, status, link);
+            assertEquals(1, attempts.get(), link);
+        }
+    }
+
+    @Test
+    void retriesRefusedConnection() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        int status = page("http://127.0.0.1:" + port + "/a", attempts).responseCode();
+        assertEquals(0, status);
+        assertEquals(RETRIES + 1, attempts.get());
+    }
+
+    private static InternetPage page(String link, AtomicInteger attempts) {
+        WebPage webPage = new WebPage(link, "HEAD", new Timeouts(Duration.ofSeconds(2), Duration.ofSeconds(2)));
+        InternetPage counted = new InternetPage() {
+            @Override
+            public int responseCode() {
+                try (PageResponse response = fetch()) {
+                    return response.status();
+                }
+            }
+
+            @Override
+            public boolean available() {
+                return responseCode() == 200;
+            }
+
+            @Override
+            public List<String> content() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public PageResponse fetch() {
+                attempts.getAndIncrement();
+                return webPage.fetch();
+            }
+        };
+        return new ResilientWebPage(link, counted, new RetryPolicy(RETRIES, Duration.ofMillis(1)));
+    }
+}
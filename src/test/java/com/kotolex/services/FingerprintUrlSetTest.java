@@ -0,0 +1,114 @@
+package com.kotolex.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты компактного множества ссылок: единственный победитель claim, увеличение сегментов и очистка
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class FingerprintUrlSetTest {
+    /**
+     * Больше, чем помещается во все сегменты до первого увеличения (64 * 1024 * 0.7)
+     */
+    private static final int MANY = 200_000;
+
+    @Test
+    void claimsLinkOnlyOnce() {
+        FingerprintUrlSet set = new FingerprintUrlSet();
+        assertFalse(set.contains("http://x.com/a"));
+        assertTrue(set.claim("http://x.com/a"));
+        assertFalse(set.claim("http://x.com/a"));
+        assertTrue(set.contains("http://x.com/a"));
+        assertFalse(set.contains("http://x.com/b"));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void keepsAllLinksWhenSegmentsGrow() {
+        FingerprintUrlSet set = new FingerprintUrlSet();
+        for (int i = 0; i < MANY; i++) {
+            assertTrue(set.claim(link(i)), "first claim of " + link(i));
+        }
+        assertEquals(MANY, set.size());
+        for (int i = 0; i < MANY; i++) {
+            assertTrue(set.contains(link(i)), "lost after resize " + link(i));
+            assertFalse(set.claim(link(i)), "claimed twice " + link(i));
+        }
+        assertEquals(MANY, set.size());
+    }
+
+    @Test
+    void clearForgetsLinks() {
+        FingerprintUrlSet set = new FingerprintUrlSet();
+        for (int i = 0; i < MANY; i++) {
+            set.claim(link(i));
+        }
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(link(0)));
+        assertTrue(set.claim(link(0)));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void concurrentClaimsHaveExactlyOneWinner() throws Exception {
+        int threads = 8;
+        int links = 100_000;
+        FingerprintUrlSet set = new FingerprintUrlSet();
+        AtomicIntegerArray winners = new AtomicIntegerArray(links);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * (links / threads);
+                futures.add(pool.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < links; i++) {
+                        int index = (i + offset) % links;
+                        if (set.claim(link(index))) {
+                            winners.incrementAndGet(index);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        for (int i = 0; i < links; i++) {
+            assertEquals(1, winners.get(i), "winners of " + link(i));
+        }
+        assertEquals(links, set.size());
+    }
+
+    @Test
+    void doesNotKeepLinks() {
+        FingerprintUrlSet set = new FingerprintUrlSet();
+        set.claim("http://x.com/a");
+        assertThrows(UnsupportedOperationException.class, set::urls);
+    }
+
+    private static String link(int index) {
+        return "http://example.com/page/" + index;
+    }
+}
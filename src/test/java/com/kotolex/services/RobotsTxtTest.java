@@ -0,0 +1,119 @@
+package com.kotolex.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты правил robots.txt: выбор группы, приоритет Allow и Disallow, шаблоны и Crawl-delay
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class RobotsTxtTest {
+    private static final String ORIGIN = "http://example.com";
+
+    @Test
+    void longestMatchWinsAndAllowWinsTie() {
+        RobotsTxt robots = robots("User-agent: *\n"
+                + "Disallow: /private/\n"
+                + "Allow: /private/public/\n"
+                + "Disallow: /same\n"
+                + "Allow: /same\n");
+        assertFalse(robots.isAllowed(ORIGIN + "/private/a.html"));
+        assertTrue(robots.isAllowed(ORIGIN + "/private/public/a.html"));
+        assertTrue(robots.isAllowed(ORIGIN + "/same/a.html"));
+        assertTrue(robots.isAllowed(ORIGIN + "/other.html"));
+    }
+
+    @Test
+    void dollarAnchorsEndOfPath() {
+        RobotsTxt robots = robots("User-agent: *\nDisallow: /*.pdf$\nDisallow: /exact$\n");
+        assertFalse(robots.isAllowed(ORIGIN + "/docs/file.pdf"));
+        assertTrue(robots.isAllowed(ORIGIN + "/docs/file.pdf?download=1"));
+        assertTrue(robots.isAllowed(ORIGIN + "/docs/file.pdf.html"));
+        assertFalse(robots.isAllowed(ORIGIN + "/exact"));
+        assertTrue(robots.isAllowed(ORIGIN + "/exact/more"));
+    }
+
+    @Test
+    void wildcardMatchesAnySequence() {
+        RobotsTxt robots = robots("User-agent: *\nDisallow: /*/tmp/*.html\nDisallow: /*?session=\n");
+        assertFalse(robots.isAllowed(ORIGIN + "/a/b/tmp/c.html"));
+        assertFalse(robots.isAllowed(ORIGIN + "/a/tmp/.html"));
+        assertTrue(robots.isAllowed(ORIGIN + "/a/tmp/c.htm"));
+        assertFalse(robots.isAllowed(ORIGIN + "/page?session=1"));
+        assertFalse(robots.isAllowed(ORIGIN + "?session=1"));
+        assertTrue(robots.isAllowed(ORIGIN + "/page?id=1"));
+    }
+
+    @Test
+    void manyWildcardsMatchInLinearTime() {
+        StringBuilder pattern = new StringBuilder("/");
+        for (int i = 0; i < 30; i++) {
+            pattern.append("*a");
+        }
+        char[] path = new char[20_000];
+        Arrays.fill(path, 'a');
+        RobotsTxt robots = robots("User-agent: *\nDisallow: " + pattern + "b\n");
+        String link = ORIGIN + "/" + new String(path);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertTrue(robots.isAllowed(link)));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertFalse(robots.isAllowed(link + "b")));
+    }
+
+    @Test
+    void usesOwnGroupInsteadOfAnyAgent() {
+        RobotsTxt robots = robots("User-agent: *\nDisallow: /\nCrawl-delay: 10\n\n"
+                + "User-agent: googlebot\nUser-agent: JLink\nDisallow: /admin\nCrawl-delay: 0.5\n");
+        assertTrue(robots.isAllowed(ORIGIN + "/page.html"));
+        assertFalse(robots.isAllowed(ORIGIN + "/admin/users"));
+        assertEquals(Optional.of(Duration.ofMillis(500)), robots.crawlDelay());
+    }
+
+    @Test
+    void fallsBackToAnyAgentGroup() {
+        RobotsTxt robots = robots("User-agent: otherbot\nDisallow: /\n\nUser-agent: *\nDisallow: /tmp # comment\n"
+                + "Crawl-delay: 2\n");
+        assertTrue(robots.isAllowed(ORIGIN + "/page.html"));
+        assertFalse(robots.isAllowed(ORIGIN + "/tmp/a"));
+        assertEquals(Optional.of(Duration.ofSeconds(2)), robots.crawlDelay());
+    }
+
+    @Test
+    void ignoresInvalidCrawlDelay() {
+        assertFalse(robots("User-agent: *\nCrawl-delay: soon\n").crawlDelay().isPresent());
+        assertFalse(robots("User-agent: *\nCrawl-delay: -1\n").crawlDelay().isPresent());
+    }
+
+    @Test
+    void collectsSitemapsOutsideGroups() {
+        RobotsTxt robots = robots("Sitemap: http://example.com/a.xml\nUser-agent: *\nDisallow:\n"
+                + "Sitemap: http://example.com/b.xml.gz\n");
+        assertEquals(Arrays.asList("http://example.com/a.xml", "http://example.com/b.xml.gz"), robots.sitemaps());
+        assertTrue(robots.isAllowed(ORIGIN + "/anything"));
+    }
+
+    @Test
+    void rulesApplyOnlyToOwnSite() {
+        RobotsTxt robots = robots("User-agent: *\nDisallow: /\n");
+        assertFalse(robots.isAllowed(ORIGIN));
+        assertFalse(robots.isAllowed("HTTP://EXAMPLE.COM/page"));
+        assertTrue(robots.isAllowed("http://example.com.evil.org/page"));
+        assertTrue(robots.isAllowed("http://other.com/page"));
+        assertEquals(Collections.emptyList(), RobotsTxt.allowAll(ORIGIN).sitemaps());
+        assertTrue(RobotsTxt.allowAll(ORIGIN).isAllowed(ORIGIN + "/page"));
+    }
+
+    private static RobotsTxt robots(String content) {
+        return new RobotsTxt(ORIGIN, new StringReader(content), RobotsTxt.DEFAULT_AGENT);
+    }
+}
@@ -0,0 +1,107 @@
+package com.kotolex.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тесты узла распределенной проверки: повторно доставленный пакет принимается один раз
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class ShardNodeTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final Map<String, String> accepted = new ConcurrentHashMap<>();
+    private ShardNode node;
+
+    @AfterEach
+    void close() {
+        if (node != null) {
+            node.close();
+        }
+    }
+
+    @Test
+    void acceptsRedeliveredBatchOnce() throws Exception {
+        List<String> nodes = Arrays.asList("127.0.0.1:" + freePort(), "127.0.0.1:" + freePort());
+        node = new ShardNode(0, nodes);
+        node.start(worker());
+        String body = "http://x.com/a\thttp://x.com/\nhttp://x.com/b\thttp://x.com/";
+        assertEquals(204, post(nodes.get(0), "1:1", body));
+        assertEquals(204, post(nodes.get(0), "1:1", body));
+        assertEquals(2, node.receivedCount());
+        assertEquals(204, post(nodes.get(0), "1:2", "http://x.com/c\thttp://x.com/"));
+        assertEquals(3, node.receivedCount());
+        assertEquals(3, accepted.size());
+    }
+
+    @Test
+    void rejectsBatchWithoutId() throws Exception {
+        List<String> nodes = Collections.singletonList("127.0.0.1:" + freePort());
+        node = new ShardNode(0, nodes);
+        node.start(worker());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + nodes.get(0) + ShardNode.LINKS))
+                .POST(HttpRequest.BodyPublishers.ofString("http://x.com/a\thttp://x.com/")).build();
+        assertEquals(400, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        assertEquals(0, node.receivedCount());
+    }
+
+    private int post(String address, String batch, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + address + ShardNode.LINKS))
+                .header(ShardNode.BATCH, batch)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private ShardNode.Worker worker() {
+        return new ShardNode.Worker() {
+            @Override
+            public void accept(String link, String referrer) {
+                accepted.merge(link, referrer, (a, b) -> {
+                    throw new AssertionError(link + " accepted twice");
+                });
+            }
+
+            @Override
+            public boolean isIdle() {
+                return true;
+            }
+
+            @Override
+            public int checkedCount() {
+                return accepted.size();
+            }
+
+            @Override
+            public int visitedCount() {
+                return 0;
+            }
+
+            @Override
+            public Map<String, String> brokenLinks() {
+                return Collections.emptyMap();
+            }
+        };
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.kotolex.services;
+
+import com.kotolex.pages.WebPage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тесты чтения карт сайта: вложенные индексы, сжатые и текстовые карты, ограничения количества карт, адресов и
+ * размера после распаковки
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class SitemapReaderTest {
+    private static final String XML = "application/xml";
+
+    @Test
+    void readsNestedIndexOnce() throws Exception {
+        try (TestSite site = new TestSite()) {
+            site.page("/sitemap.xml", XML, bytes(index(site.url("/a.xml"), site.url("/b.xml.gz"))))
+                    .page("/a.xml", XML, bytes(urlset(site.url("/1.html"), site.url("/2.html"))))
+                    .page("/b.xml.gz", "application/gzip", gzip(bytes(index(site.url("/a.xml"), site.url("/c.txt")))))
+                    .page("/c.txt", "text/plain", bytes("# pages\n" + site.url("/3.html") + "\n  \nmailto:x@y.z\n"));
+            List<String> found = new ArrayList<>();
+            List<String> sources = new ArrayList<>();
+            SitemapReader reader = new SitemapReader(WebPage::new);
+            long count = reader.read(Collections.singletonList(site.url("/sitemap.xml")), (url, sitemap) -> {
+                found.add(url);
+                sources.add(sitemap);
+            });
+            assertEquals(Arrays.asList(site.url("/1.html"), site.url("/2.html"), site.url("/3.html")), found);
+            assertEquals(Arrays.asList(site.url("/a.xml"), site.url("/a.xml"), site.url("/c.txt")), sources);
+            assertEquals(3, count);
+            assertEquals(4, reader.sitemapsRead());
+            assertEquals(1, site.requests("/a.xml"));
+        }
+    }
+
+    @Test
+    void stopsAtSitemapLimit() throws Exception {
+        try (TestSite site = new TestSite()) {
+            List<String> children = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String path = "/child" + i + ".xml";
+                children.add(site.url(path));
+                site.page(path, XML, bytes(urlset(site.url("/page" + i + ".html"))));
+            }
+            site.page("/sitemap.xml", XML, bytes(index(children.toArray(new String[0]))));
+            SitemapReader reader = new SitemapReader(WebPage::new).maxSitemaps(3);
+            long count = reader.read(Collections.singletonList(site.url("/sitemap.xml")), (url, sitemap) -> {
+            });
+            assertEquals(3, reader.sitemapsRead());
+            assertEquals(2, count);
+            assertEquals(0, site.requests("/child2.xml"));
+        }
+    }
+
+    @Test
+    void takesAtMostProtocolLimitOfUrlsFromOneSitemap() throws Exception {
+        try (TestSite site = new TestSite()) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 60_000; i++) {
+                text.append("http://example.com/p").append(i).append('\n');
+            }
+            site.page("/big.txt.gz", "application/gzip", gzip(bytes(text.toString())));
+            SitemapReader reader = new SitemapReader(WebPage::new);
+            long count = reader.read(Collections.singletonList(site.url("/big.txt.gz")), (url, sitemap) -> {
+            });
+            assertEquals(50_000, count);
+        }
+    }
+
+    @Test
+    void limitsDecompressedSize() throws Exception {
+        try (TestSite site = new TestSite()) {
+            ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bomb)) {
+                gzip.write(bytes("<urlset><url><loc>http://example.com/first</loc></url>"));
+                byte[] spaces = new byte[1024 * 1024];
+                Arrays.fill(spaces, (byte) ' ');
+                for (int i = 0; i < 70; i++) {
+                    gzip.write(spaces);
+                }
+                gzip.write(bytes("<url><loc>http://example.com/hidden</loc></url></urlset>"));
+            }
+            site.page("/bomb.xml.gz", "application/gzip", bomb.toByteArray());
+            List<String> found = new ArrayList<>();
+            new SitemapReader(WebPage::new).read(Collections.singletonList(site.url("/bomb.xml.gz")),
+                    (url, sitemap) -> found.add(url));
+            assertEquals(Collections.singletonList("http://example.com/first"), found);
+        }
+    }
+
+    @Test
+    void skipsMissingSitemap() throws Exception {
+        try (TestSite site = new TestSite()) {
+            SitemapReader reader = new SitemapReader(WebPage::new);
+            long count = reader.read(Collections.singletonList(site.url("/sitemap.xml")), (url, sitemap) -> {
+            });
+            assertEquals(0, count);
+            assertEquals(1, reader.sitemapsRead());
+        }
+    }
+
+    private static String urlset(String... urls) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
+        for (String url : urls) {
+            xml.append("<url><loc> ").append(url).append(" </loc><lastmod>2024-01-01</lastmod></url>");
+        }
+        return xml.append("</urlset>").toString();
+    }
+
+    private static String index(String... sitemaps) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
+        for (String sitemap : sitemaps) {
+            xml.append("<sitemap><loc>").append(sitemap).append("</loc></sitemap>");
+        }
+        return xml.append("</sitemapindex>").toString();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
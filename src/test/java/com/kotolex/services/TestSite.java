@@ -0,0 +1,125 @@
+package com.kotolex.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Небольшой сайт для тестов на локальном HTTP-сервере: отдает заданные страницы, на остальные адреса - 404, и
+ * считает запросы каждого адреса
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+public final class TestSite implements AutoCloseable {
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    private static final class Page {
+        private final String contentType;
+        private final byte[] body;
+
+        private Page(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Запускает сервер на свободном порту
+     *
+     * @throws IOException если сервер не удалось запустить
+     */
+    public TestSite() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "test-site");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Добавляет html-страницу
+     *
+     * @param path - путь страницы вместе с запросом, например /a.html?x=1
+     * @param html - разметка
+     * @return этот же объект, для цепочки вызовов
+     */
+    public TestSite html(String path, String html) {
+        return page(path, "text/html; charset=utf-8", html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Добавляет страницу с произвольным содержимым
+     *
+     * @param path        - путь страницы вместе с запросом
+     * @param contentType - тип содержимого
+     * @param body        - тело ответа
+     * @return этот же объект, для цепочки вызовов
+     */
+    public TestSite page(String path, String contentType, byte[] body) {
+        pages.put(path, new Page(contentType, body));
+        return this;
+    }
+
+    /**
+     * @param path - путь страницы вместе с запросом
+     * @return полный адрес страницы
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @param path - путь страницы вместе с запросом
+     * @return сколько раз страница была запрошена
+     */
+    public int requests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                path += "?" + query;
+            }
+            requests.computeIfAbsent(path, (key) -> new AtomicInteger()).getAndIncrement();
+            Page page = pages.get(path);
+            if (page == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", page.contentType);
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            exchange.sendResponseHeaders(200, head ? -1 : page.body.length);
+            if (!head) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(page.body);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
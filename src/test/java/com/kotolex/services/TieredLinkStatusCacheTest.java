@@ -0,0 +1,50 @@
+package com.kotolex.services;
+
+import com.kotolex.pages.PageResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Тесты кэша кодов состояния: сбои соединения не кэшируются и не сохраняются в файл
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class TieredLinkStatusCacheTest {
+
+    @Test
+    void doesNotCacheConnectionFailures() {
+        TieredLinkStatusCache cache = new TieredLinkStatusCache();
+        cache.put("http://x.com/down", 0);
+        cache.put("http://x.com/missing", 404);
+        cache.put("http://x.com/bad", PageResponse.INVALID_LINK);
+        assertFalse(cache.status("http://x.com/down").isPresent());
+        assertEquals(OptionalInt.of(404), cache.status("http://x.com/missing"));
+        assertEquals(OptionalInt.of(PageResponse.INVALID_LINK), cache.status("http://x.com/bad"));
+    }
+
+    @Test
+    void doesNotPersistConnectionFailures(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("status.cache");
+        long expiresAt = System.currentTimeMillis() + Duration.ofHours(1).toMillis();
+        Files.write(file, ("0\t" + expiresAt + "\thttp://x.com/old\n").getBytes(StandardCharsets.UTF_8));
+        TieredLinkStatusCache cache = new TieredLinkStatusCache(10, Duration.ofDays(1), Duration.ofHours(1), file);
+        assertFalse(cache.status("http://x.com/old").isPresent());
+        cache.put("http://x.com/down", 0);
+        cache.put("http://x.com/ok", 200);
+        cache.save();
+        TieredLinkStatusCache reloaded = new TieredLinkStatusCache(10, Duration.ofDays(1), Duration.ofHours(1), file);
+        assertFalse(reloaded.status("http://x.com/down").isPresent());
+        assertEquals(OptionalInt.of(200), reloaded.status("http://x.com/ok"));
+    }
+}
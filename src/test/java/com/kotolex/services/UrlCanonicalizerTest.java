@@ -0,0 +1,117 @@
+package com.kotolex.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тесты канонического вида ссылок и области обхода
+ *
+ * @author kotolex
+ * @version 1.0
+ */
+class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+
+    @Test
+    void lowerCasesSchemeAndHostOnly() {
+        assertEquals("http://example.com/Docs/A", canonicalizer.canonicalize("HTTP://Example.COM/Docs/A"));
+        assertEquals("http://User@example.com/", canonicalizer.canonicalize("http://User@Example.com/"));
+    }
+
+    @Test
+    void removesDefaultPortsOnly() {
+        assertEquals("http://x.com/", canonicalizer.canonicalize("http://x.com:80/"));
+        assertEquals("https://x.com/", canonicalizer.canonicalize("https://x.com:443"));
+        assertEquals("http://x.com:443/", canonicalizer.canonicalize("http://x.com:443/"));
+        assertEquals("http://x.com:8080/a", canonicalizer.canonicalize("http://x.com:8080/a"));
+    }
+
+    @Test
+    void emptyPathBecomesRoot() {
+        assertEquals("http://x.com/", canonicalizer.canonicalize("http://x.com"));
+        assertEquals("http://x.com/?a=1", canonicalizer.canonicalize("http://x.com?a=1"));
+    }
+
+    @Test
+    void removesDotSegments() {
+        assertEquals("http://x.com/a/c", canonicalizer.canonicalize("http://x.com/a/./b/../c"));
+        assertEquals("http://x.com/c", canonicalizer.canonicalize("http://x.com/a/b/../../../c"));
+        assertEquals("http://x.com/a/", canonicalizer.canonicalize("http://x.com/a/b/.."));
+        assertEquals("http://x.com/a/", canonicalizer.canonicalize("http://x.com/a/."));
+    }
+
+    @Test
+    void upperCasesPercentEscapes() {
+        assertEquals("http://x.com/a%2Fb?q=%7E", canonicalizer.canonicalize("http://x.com/a%2fb?q=%7e"));
+    }
+
+    @Test
+    void removesFragmentUnlessAsked() {
+        assertEquals("http://x.com/a", canonicalizer.canonicalize("http://x.com/a#top"));
+        assertEquals("http://x.com/a#Top",
+                new UrlCanonicalizer().removeFragments(false).canonicalize("http://x.com/a#Top"));
+    }
+
+    @Test
+    void sortsQueryKeepingOrderOfSameNames() {
+        assertEquals("http://x.com/?a=1&b=2&b=1", canonicalizer.canonicalize("http://x.com/?b=2&a=1&b=1"));
+        assertEquals("http://x.com/?b=2&a=1",
+                new UrlCanonicalizer().sortQuery(false).canonicalize("http://x.com/?b=2&a=1"));
+    }
+
+    @Test
+    void dropsTrackingParameters() {
+        assertEquals("http://x.com/?id=7", canonicalizer.canonicalize("http://x.com/?UTM_Source=a&id=7&gclid=b&&"));
+        assertEquals("http://x.com/", canonicalizer.canonicalize("http://x.com/?utm_medium=a&fbclid=b"));
+        assertEquals("http://x.com/?id=7",
+                new UrlCanonicalizer().removeParameters("SessionId").canonicalize("http://x.com/?SESSIONID=1&id=7"));
+        assertEquals("http://x.com/?utm_source=a",
+                new UrlCanonicalizer().keepParameters().canonicalize("http://x.com/?utm_source=a"));
+    }
+
+    @Test
+    void ignoresDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("http://wiki.io/?id=7", canonicalizer.canonicalize("HTTP://WIKI.IO/?FBCLID=a&id=7"));
+            assertEquals("http://x.com/",
+                    new UrlCanonicalizer().removeParameters("ID").canonicalize("http://x.com/?id=7"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void removesTrailingSlashExceptRootWhenAsked() {
+        assertEquals("http://x.com/a/", canonicalizer.canonicalize("http://x.com/a/"));
+        UrlCanonicalizer noSlash = new UrlCanonicalizer().removeTrailingSlash(true);
+        assertEquals("http://x.com/a", noSlash.canonicalize("http://x.com/a/"));
+        assertEquals("http://x.com/", noSlash.canonicalize("http://x.com/"));
+    }
+
+    @Test
+    void leavesLinksWithoutHostOrUnparsableAsIs() {
+        assertEquals("mailto:a@b.com", canonicalizer.canonicalize("mailto:a@b.com"));
+        assertEquals("javascript:void(0)", canonicalizer.canonicalize("javascript:void(0)"));
+        assertEquals("/relative/path", canonicalizer.canonicalize("/relative/path"));
+        assertEquals("http://x.com/a b", canonicalizer.canonicalize("http://x.com/a b"));
+    }
+
+    @Test
+    void trimsSurroundingSpaces() {
+        assertEquals("http://x.com/a", canonicalizer.canonicalize("  http://x.com/a \n"));
+    }
+
+    @Test
+    void scopeIsFolderOfStartPage() {
+        assertEquals("http://x.com/", canonicalizer.scope("http://x.com"));
+        assertEquals("http://x.com/", canonicalizer.scope("http://x.com/"));
+        assertEquals("http://x.com/docs/", canonicalizer.scope("http://x.com/docs/"));
+        assertEquals("http://x.com/docs/", canonicalizer.scope("http://x.com/docs/index.html?next=/a/b"));
+        assertEquals("http://x.com/docs/", canonicalizer.scope("http://x.com/docs/page#part/x"));
+    }
+}